@@ -0,0 +1,249 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.gradle;
+
+import gg.saki.izon.analysis.ReachabilityAnalyzer;
+import gg.saki.izon.analysis.ReachabilityReport;
+import gg.saki.izon.libraries.Library;
+import gg.saki.izon.libraries.LibraryManifest;
+import gg.saki.izon.libraries.Relocation;
+import gg.saki.izon.libraries.Repository;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.ArtifactCollection;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the {@code izon} configuration and writes every artifact, with its SHA-256, to a {@link LibraryManifest}.
+ * Version ranges are written as the version Gradle resolved them to, snapshots are rejected.
+ */
+public abstract class GenerateManifestTask extends DefaultTask {
+
+    private ArtifactCollection artifacts;
+
+    @Internal
+    public ArtifactCollection getArtifacts() {
+        return this.artifacts;
+    }
+
+    public void setArtifacts(@NotNull ArtifactCollection artifacts) {
+        this.artifacts = artifacts;
+    }
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    public FileCollection getArtifactFiles() {
+        return this.artifacts.getArtifactFiles();
+    }
+
+    @Input
+    public abstract ListProperty<String> getRepositories();
+
+    @Input
+    public abstract ListProperty<RelocationSpec> getRelocations();
+
+    @Input
+    public abstract Property<String> getResourcePath();
+
+    @InputFiles
+    @Classpath
+    public abstract ConfigurableFileCollection getRoots();
+
+    @Input
+    public abstract ListProperty<String> getKeep();
+
+    @Input
+    public abstract Property<Boolean> getSkipUnreachable();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+
+    @OutputFile
+    @Optional
+    public abstract RegularFileProperty getReportFile();
+
+    @TaskAction
+    public void generate() throws IOException {
+        List<Repository> repositories = new ArrayList<>();
+        for (String url : this.getRepositories().get()) {
+            repositories.add(Repository.builder().url(url).build());
+        }
+
+        if (repositories.isEmpty()) {
+            repositories.add(Repository.MAVEN_CENTRAL);
+        }
+
+        List<Relocation> relocations = new ArrayList<>();
+        for (RelocationSpec spec : this.getRelocations().get()) {
+            relocations.add(spec.toRelocation());
+        }
+
+        Map<Library, Path> libraries = new LinkedHashMap<>();
+        for (ResolvedArtifactResult artifact : this.artifacts.getArtifacts()) {
+            ComponentIdentifier id = artifact.getId().getComponentIdentifier();
+            if (!(id instanceof ModuleComponentIdentifier)) {
+                throw new GradleException("Only external modules can be downloaded by Izon, got " + id.getDisplayName());
+            }
+
+            ModuleComponentIdentifier module = (ModuleComponentIdentifier) id;
+            File file = artifact.getFile();
+
+            // manifests pin a checksum and are never version resolved at runtime, so a snapshot would stop matching
+            if (module.getVersion().endsWith("-SNAPSHOT")) {
+                throw new GradleException("Snapshots cannot be written to an Izon manifest, got " + module.getDisplayName());
+            }
+
+            Library.Builder builder = Library.builder()
+                    .repository(repositories.get(0))
+                    .groupId(module.getGroup())
+                    .artifactId(module.getModule())
+                    .version(module.getVersion())
+                    .checksum(sha256(file.toPath()));
+
+            for (int i = 1; i < repositories.size(); i++) {
+                builder.fallback(repositories.get(i));
+            }
+
+            String classifier = classifier(file.getName(), module);
+            if (classifier != null) {
+                builder.classifier(classifier);
+            }
+
+            if (!relocations.isEmpty()) {
+                builder.relocations(new ArrayList<>(relocations));
+            }
+
+            libraries.put(builder.build(), file.toPath());
+        }
+
+        List<Library> included = new ArrayList<>(libraries.keySet());
+        if (!this.getRoots().isEmpty()) {
+            ReachabilityReport report = this.analyze(libraries);
+
+            if (this.getSkipUnreachable().get()) {
+                included = report.getReachable();
+            }
+        }
+
+        Path output = this.getOutputDirectory().get().getAsFile().toPath().resolve(this.getResourcePath().get());
+        Files.createDirectories(output.getParent());
+
+        try (OutputStream out = Files.newOutputStream(output)) {
+            new LibraryManifest(included).write(out);
+        }
+    }
+
+    private ReachabilityReport analyze(Map<Library, Path> libraries) throws IOException {
+        ReachabilityAnalyzer.Builder builder = ReachabilityAnalyzer.builder();
+
+        for (File root : this.getRoots()) {
+            if (root.exists()) builder.root(root.toPath());
+        }
+
+        libraries.forEach(builder::library);
+        this.getKeep().get().forEach(builder::keep);
+
+        ReachabilityReport report = builder.build().analyze();
+
+        Path reportFile = this.getReportFile().get().getAsFile().toPath();
+        Files.createDirectories(reportFile.getParent());
+
+        List<String> lines = new ArrayList<>();
+        for (Library library : libraries.keySet()) {
+            String state = report.isReachable(library) ? "reachable" : "unreachable";
+            lines.add(library.getGroupId() + ':' + library.getArtifactId() + ':' + library.getVersion() + ' ' + state + ' ' + report.getReachedClasses(library) + '/' + report.getTotalClasses(library) + " classes");
+        }
+
+        Files.write(reportFile, lines, StandardCharsets.UTF_8);
+
+        List<Library> unreachable = report.getUnreachable();
+        if (!unreachable.isEmpty()) {
+            this.getLogger().lifecycle("Izon: {} of {} libraries are unreachable, see {}", unreachable.size(), libraries.size(), reportFile);
+        }
+
+        return report;
+    }
+
+    /**
+     * Recovers the classifier from the resolved file name, {@code <artifact>-<version>[-<classifier>].jar}.
+     */
+    private static String classifier(String fileName, ModuleComponentIdentifier module) {
+        String prefix = module.getModule() + '-' + module.getVersion() + '-';
+        if (!fileName.startsWith(prefix) || !fileName.endsWith(".jar")) {
+            return null;
+        }
+
+        return fileName.substring(prefix.length(), fileName.length() - 4);
+    }
+
+    private static byte[] sha256(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, length);
+            }
+
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new GradleException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.gradle;
+
+import gg.saki.izon.libraries.LibraryManifest;
+import org.gradle.api.Action;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The {@code izon { }} block.
+ */
+public abstract class IzonExtension {
+
+    public IzonExtension() {
+        this.getResourcePath().convention(LibraryManifest.DEFAULT_RESOURCE);
+        this.getSkipUnreachable().convention(false);
+    }
+
+    /**
+     * The repositories every library is downloaded from, tried in order.
+     * Maven Central is used when none are declared.
+     */
+    public abstract ListProperty<String> getRepositories();
+
+    public abstract ListProperty<RelocationSpec> getRelocations();
+
+    /**
+     * Where the manifest is placed inside the resources, {@link LibraryManifest#DEFAULT_RESOURCE} by default.
+     */
+    public abstract Property<String> getResourcePath();
+
+    /**
+     * The application's classes (e.g. {@code sourceSets.main.output}). When set, the manifest task analyzes which
+     * libraries these classes can reach and writes a report to {@code build/reports/izon/reachability.txt}.
+     */
+    public abstract ConfigurableFileCollection getReachabilityRoots();
+
+    /**
+     * Classes only loaded reflectively, by binary name, that the reachability analysis should treat as entry points.
+     */
+    public abstract ListProperty<String> getKeep();
+
+    /**
+     * Leaves the libraries the reachability analysis found unreachable out of the manifest, so they are never downloaded.
+     */
+    public abstract Property<Boolean> getSkipUnreachable();
+
+    public void repository(@NotNull String url) {
+        this.getRepositories().add(url);
+    }
+
+    public void relocate(@NotNull String pattern, @NotNull String relocatedPattern) {
+        this.relocate(pattern, relocatedPattern, spec -> {});
+    }
+
+    public void relocate(@NotNull String pattern, @NotNull String relocatedPattern, @NotNull Action<? super RelocationSpec> action) {
+        RelocationSpec spec = new RelocationSpec(pattern, relocatedPattern);
+        action.execute(spec);
+
+        this.getRelocations().add(spec);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.TaskProvider;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Adds an {@code izon} configuration whose dependencies are resolved at build time, transitive ones included,
+ * and written to a {@link gg.saki.izon.libraries.LibraryManifest} bundled with the project's resources.
+ * Exclude transitive dependencies the application does not need the usual Gradle way.
+ */
+public class IzonPlugin implements Plugin<Project> {
+
+    public static final String CONFIGURATION_NAME = "izon";
+    public static final String TASK_NAME = "generateIzonManifest";
+
+    @Override
+    public void apply(@NotNull Project project) {
+        IzonExtension extension = project.getExtensions().create("izon", IzonExtension.class);
+
+        Configuration configuration = project.getConfigurations().create(CONFIGURATION_NAME, config -> {
+            config.setDescription("Libraries downloaded by Izon at runtime");
+            config.setCanBeConsumed(false);
+            config.setCanBeResolved(true);
+        });
+
+        TaskProvider<GenerateManifestTask> task = project.getTasks().register(TASK_NAME, GenerateManifestTask.class, generate -> {
+            generate.setGroup("build");
+            generate.setDescription("Generates the Izon library manifest from the izon configuration.");
+
+            generate.setArtifacts(configuration.getIncoming().getArtifacts());
+            generate.getRepositories().set(extension.getRepositories());
+            generate.getRelocations().set(extension.getRelocations());
+            generate.getResourcePath().set(extension.getResourcePath());
+            generate.getRoots().from(extension.getReachabilityRoots());
+            generate.getKeep().set(extension.getKeep());
+            generate.getSkipUnreachable().set(extension.getSkipUnreachable());
+            generate.getReportFile().set(project.getLayout().getBuildDirectory().file("reports/izon/reachability.txt"));
+            generate.getOutputDirectory().set(project.getLayout().getBuildDirectory().dir("generated/izon"));
+        });
+
+        project.getPlugins().withType(JavaPlugin.class, java -> {
+            SourceSet main = project.getExtensions().getByType(JavaPluginExtension.class).getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+            main.getResources().srcDir(task.flatMap(GenerateManifestTask::getOutputDirectory));
+        });
+    }
+}
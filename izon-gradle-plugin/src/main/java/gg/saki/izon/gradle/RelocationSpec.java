@@ -0,0 +1,77 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.gradle;
+
+import gg.saki.izon.libraries.Relocation;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A relocation declared in the build script, applied to every library of the manifest.
+ */
+public class RelocationSpec implements Serializable {
+
+    private static final long serialVersionUID = 4283675617453020135L;
+
+    private final @NotNull String pattern;
+    private final @NotNull String relocatedPattern;
+
+    private final @NotNull List<String> includes = new ArrayList<>();
+    private final @NotNull List<String> excludes = new ArrayList<>();
+
+    public RelocationSpec(@NotNull String pattern, @NotNull String relocatedPattern) {
+        this.pattern = pattern;
+        this.relocatedPattern = relocatedPattern;
+    }
+
+    public void include(@NotNull String include) {
+        this.includes.add(include);
+    }
+
+    public void exclude(@NotNull String exclude) {
+        this.excludes.add(exclude);
+    }
+
+    public @NotNull Relocation toRelocation() {
+        return new Relocation(this.pattern, this.relocatedPattern, this.includes.isEmpty() ? null : new ArrayList<>(this.includes), this.excludes.isEmpty() ? null : new ArrayList<>(this.excludes));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RelocationSpec that = (RelocationSpec) o;
+        return this.pattern.equals(that.pattern) && this.relocatedPattern.equals(that.relocatedPattern) && this.includes.equals(that.includes) && this.excludes.equals(that.excludes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.pattern, this.relocatedPattern, this.includes, this.excludes);
+    }
+}
@@ -24,46 +24,123 @@
 
 package gg.saki.izon;
 
+import gg.saki.izon.analysis.LibraryShrinker;
+import gg.saki.izon.analysis.ReachabilityAnalyzer;
+import gg.saki.izon.analysis.ReachabilityReport;
 import gg.saki.izon.classloaders.IzonClassLoader;
+import gg.saki.izon.classloaders.LibraryRegistry;
+import gg.saki.izon.classloaders.LoadedClasses;
+import gg.saki.izon.classloaders.impl.RelocatingClassLoader;
+import gg.saki.izon.classloaders.url.IndexedJarSource;
+import gg.saki.izon.classloaders.url.IzonURLHandler;
+import gg.saki.izon.classloaders.url.LazyJarSource;
+import gg.saki.izon.classloaders.url.MemoryJar;
+import gg.saki.izon.classloaders.url.RelocatingJarSource;
+import gg.saki.izon.download.Artifact;
+import gg.saki.izon.download.ChecksumAlgorithm;
+import gg.saki.izon.download.ChecksumException;
+import gg.saki.izon.download.DownloadScheduler;
+import gg.saki.izon.download.LibraryDownloader;
+import gg.saki.izon.download.MetadataCache;
+import gg.saki.izon.download.VersionResolver;
 import gg.saki.izon.libraries.Library;
+import gg.saki.izon.libraries.LibraryManifest;
+import gg.saki.izon.libraries.Repository;
+import gg.saki.izon.libraries.VersionRange;
+import gg.saki.izon.relocation.JarRelocator;
+import gg.saki.izon.relocation.RelocationMatcher;
+import gg.saki.izon.server.RepositoryServer;
+import gg.saki.izon.store.JarIndex;
+import gg.saki.izon.store.JarRepacker;
+import gg.saki.izon.store.LibraryStore;
+import gg.saki.izon.store.NativeLibrary;
+import gg.saki.izon.store.StoreCollector;
+import gg.saki.izon.store.StoreLock;
 import gg.saki.izon.utils.DownloadSettings;
 import gg.saki.izon.utils.IzonException;
+import gg.saki.izon.utils.IzonThreadFactory;
+import gg.saki.izon.utils.LoadSettings;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
 
 /**
  *
  */
 public class Izon {
 
+    // stored versions tried as the base of a delta, each miss costs a request
+    private static final int MAX_DELTA_BASES = 2;
+
+    // set while a load runs as part of loadLibraries, see commitLoad
+    private static final ThreadLocal<Cancellation> CANCELLATION = new ThreadLocal<>();
+
     private final @NotNull Path saveDirectory;
+    private final @NotNull LibraryStore store;
 
     private final @NotNull IzonClassLoader classLoader;
     private final @Nullable IzonClassLoader isolatedClassLoader;
 
+    private final @NotNull LibraryDownloader downloader;
+    private final @NotNull VersionResolver versionResolver;
+    private final @NotNull LibraryShrinker shrinker;
+    private final @NotNull JarRepacker repacker;
+
+    private final @NotNull Map<Library, URL> sourceLibraries = new ConcurrentHashMap<>();
+
+    private final @NotNull Map<Library, CompletableFuture<Library.Status>> readiness = new ConcurrentHashMap<>();
+    private final @NotNull List<Runnable> deferred = new ArrayList<>();
+    private @Nullable Executor deferredExecutor;
+
+    private final @NotNull Set<String> usedFiles = ConcurrentHashMap.newKeySet();
+    private final @NotNull Map<IzonClassLoader, IndexedJarSource> indexedSources = new ConcurrentHashMap<>();
+    private @Nullable ScheduledExecutorService maintenance;
+
 
     public Izon(@NotNull Path saveDirectory, @NotNull ClassLoader classLoader) {
         this.saveDirectory = saveDirectory;
+        this.store = new LibraryStore(saveDirectory);
+        this.downloader = new LibraryDownloader(this.store.getNegativeCache());
+        this.versionResolver = new VersionResolver(new MetadataCache(this.store.getDataDirectory().resolve("metadata"), this.downloader));
+        this.shrinker = new LibraryShrinker(this.store);
+        this.repacker = new JarRepacker(this.store);
 
-        if (!(classLoader instanceof URLClassLoader)) {
-            throw new IzonException("ClassLoader must be an instance of URLClassLoader");
-        }
-
-        this.classLoader = IzonClassLoader.create((URLClassLoader) classLoader);
+        this.classLoader = IzonClassLoader.create(classLoader, this.store.getDataDirectory().resolve("batches"));
 
         ClassLoader parent = ClassLoader.getSystemClassLoader().getParent();
         this.isolatedClassLoader = parent instanceof URLClassLoader ? IzonClassLoader.create((URLClassLoader) parent) : null;
@@ -91,73 +168,1076 @@ public class Izon {
 
 
     public Library.Status loadLibrary(@NotNull Library library, boolean isolated, @Nullable DownloadSettings settings) throws IzonException {
-        Path file = this.saveDirectory.resolve(library.getFriendlyPath());
+        return this.loadLibrary(library, isolated, settings, null);
+    }
 
-        if (Files.exists(file)) {
-            return Library.Status.ALREADY_EXISTS;
+    public Library.Status loadLibrary(@NotNull Library library, boolean isolated, @Nullable DownloadSettings settings, @Nullable LoadSettings loadSettings) throws IzonException {
+        if (settings == null) {
+            settings = DownloadSettings.DEFAULT;
+        }
+
+        if (loadSettings == null) {
+            loadSettings = LoadSettings.DEFAULT;
+        }
+
+        // lazy libraries resolve their version on first use
+        if (!loadSettings.isLazy()) {
+            library = this.resolveVersion(library, settings);
+        }
+
+        IzonClassLoader classLoader = this.getClassLoader(library, isolated);
+
+        Library.Status registered = LibraryRegistry.claim(classLoader, library);
+        if (registered != null) {
+            return registered;
+        }
+
+        Library.Status status = Library.Status.LOAD_FAILED;
+        try {
+            status = this.loadLibrary(library, classLoader, settings, loadSettings);
+            return status;
+        } finally {
+            LibraryRegistry.complete(classLoader, library, status);
+        }
+    }
+
+    private Library.Status loadLibrary(Library library, IzonClassLoader classLoader, DownloadSettings settings, LoadSettings loadSettings) throws IzonException {
+        if (loadSettings.isLazy()) {
+            return this.registerLazy(library, classLoader, settings, loadSettings);
+        }
+
+        if (library.hasRelocations() && loadSettings.isRelocateOnDefine()) {
+            return this.loadRelocatingOnDefine(library, classLoader, settings, loadSettings);
+        }
+
+        Path file = this.getLoadFile(library);
+
+        if (loadSettings.isInMemory() && !Files.exists(file)) {
+            return this.loadInMemory(library, classLoader, settings);
+        }
+
+        if (loadSettings.isIndexed()) {
+            return this.loadIndexed(library, classLoader, settings, loadSettings);
+        }
+
+        if (loadSettings.isEager()) {
+            return this.loadEager(library, classLoader, settings, loadSettings);
+        }
+
+        // stored by an earlier run, it still has to be added to the class loader
+        boolean existed = Files.exists(file);
+        Path target = this.prepareLibrary(library, settings, loadSettings);
+
+        // load it
+        this.loadLibrary(library, target, classLoader);
+        return existed ? Library.Status.ALREADY_EXISTS : Library.Status.SUCCESS;
+    }
+
+    /**
+     * Loads a batch of libraries in parallel, giving up on whatever is still pending once the time budget runs out.
+     * Loads that are already adding their library to the class loader by then are waited for.
+     *
+     * @return the status of every library, {@link Library.Status#CANCELLED} for the ones that were given up on,
+     * which never reach their class loader
+     */
+    public @NotNull Map<Library, Library.Status> loadLibraries(@NotNull Collection<Library> libraries, boolean isolated, @Nullable DownloadSettings settings, @Nullable LoadSettings loadSettings, long timeout, @NotNull TimeUnit unit) throws IzonException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        ThreadPoolExecutor executor = IzonThreadFactory.newPool("batch", Math.max(1, Math.min(libraries.size(), 8)));
+        Map<Library, Future<Library.Status>> futures = new LinkedHashMap<>();
+        Map<Library, Cancellation> cancellations = new HashMap<>();
+
+        try {
+            for (Library library : libraries) {
+                Cancellation cancellation = new Cancellation();
+                cancellations.put(library, cancellation);
+
+                futures.put(library, executor.submit(() -> {
+                    CANCELLATION.set(cancellation);
+
+                    try {
+                        return this.loadLibrary(library, isolated, settings, loadSettings);
+                    } finally {
+                        CANCELLATION.remove();
+                    }
+                }));
+            }
+
+            Map<Library, Library.Status> results = new LinkedHashMap<>();
+            for (Map.Entry<Library, Future<Library.Status>> entry : futures.entrySet()) {
+                Future<Library.Status> future = entry.getValue();
+
+                try {
+                    results.put(entry.getKey(), await(future, cancellations.get(entry.getKey()), deadline));
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+
+                    if (cause instanceof IzonException && ((IzonException) cause).hasStatus()) {
+                        results.put(entry.getKey(), ((IzonException) cause).getStatus());
+                    } else {
+                        results.put(entry.getKey(), Library.Status.LOAD_FAILED);
+                    }
+                }
+            }
+
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IzonException("Interrupted while loading libraries", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a load of a batch until the deadline, then gives up on it unless it already started adding to its class loader.
+     * Such a load is left to finish, so the status reported is always the real one.
+     */
+    private static Library.Status await(Future<Library.Status> future, Cancellation cancellation, long deadline) throws InterruptedException, ExecutionException {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (!cancellation.cancel()) {
+                return future.get();
+            }
+
+            future.cancel(true);
+            return Library.Status.CANCELLED;
+        }
+    }
+
+    /**
+     * Called right before a load changes its class loader. Fails if the batch running the load has given up on it.
+     */
+    private static void commitLoad(Library library) {
+        Cancellation cancellation = CANCELLATION.get();
+
+        if (cancellation != null && !cancellation.commit()) {
+            throw new IzonException("Loading was cancelled", library, Library.Status.CANCELLED);
+        }
+    }
+
+    public @NotNull Map<Library, Library.Status> loadManifest(@NotNull LibraryManifest manifest) throws IzonException {
+        return this.loadManifest(manifest, false, null, null);
+    }
+
+    /**
+     * Loads every library of a precomputed manifest, in the order it was generated.
+     * <p>
+     * Stored jars are all added to the class loader in one {@link IzonClassLoader#addURLs(Collection) batch},
+     * after being opened and validated in parallel if loading {@link LoadSettings#isEager() eagerly}.
+     * Every library is loaded right away and their {@link Library.Priority} is ignored, pass them to
+     * {@link #scheduleLibrary(Library, boolean, DownloadSettings, LoadSettings)} instead to honour it.
+     * Versions are used as written, manifests are expected to hold release versions only.
+     */
+    public @NotNull Map<Library, Library.Status> loadManifest(@NotNull LibraryManifest manifest, boolean isolated, @Nullable DownloadSettings settings, @Nullable LoadSettings loadSettings) throws IzonException {
+        Map<Library, Library.Status> results = new LinkedHashMap<>();
+
+        if (loadSettings != null && (loadSettings.isLazy() || loadSettings.isInMemory() || loadSettings.isRelocateOnDefine())) {
+            for (Library library : manifest.getLibraries()) {
+                results.put(library, this.loadLibrary(library, isolated, settings, loadSettings));
+            }
+
+            return results;
         }
 
         if (settings == null) {
             settings = DownloadSettings.DEFAULT;
         }
 
+        Map<Library, Path> pending = new LinkedHashMap<>();
+        List<JarFile> opened = new ArrayList<>();
+        IzonClassLoader classLoader = null;
+        boolean added = false;
 
-        // download it
         try {
-            byte[] data = downloadLibrary(library, settings);
+            for (Library library : manifest.getLibraries()) {
+                classLoader = this.getClassLoader(library, isolated);
+
+                Library.Status registered = LibraryRegistry.claim(classLoader, library);
+                if (registered != null) {
+                    results.put(library, registered);
+                    continue;
+                }
+
+                pending.put(library, null);
+
+                Path file = this.getLoadFile(library);
+                results.put(library, Files.exists(file) ? Library.Status.ALREADY_EXISTS : Library.Status.SUCCESS);
+                pending.put(library, this.prepareLibrary(library, settings, loadSettings));
+            }
+
+            if (!pending.isEmpty()) {
+                List<URL> urls;
+                if (loadSettings != null && loadSettings.isEager()) {
+                    urls = this.openEagerly(pending, results, opened);
+                } else {
+                    urls = new ArrayList<>(pending.size());
+                    for (Path file : pending.values()) {
+                        urls.add(file.toUri().toURL());
+                    }
+                }
+
+                classLoader.addURLs(urls);
+                pending.values().forEach(this::markUsed);
+
+                if (!opened.isEmpty()) {
+                    openInLoader(classLoader);
+                }
+            }
+
+            added = true;
+        } catch (MalformedURLException e) {
+            throw new IzonException("Failed to add libraries to class loader", e);
+        } finally {
+            closeJars(opened);
+
+            for (Library library : pending.keySet()) {
+                LibraryRegistry.complete(classLoader, library, added ? results.get(library) : Library.Status.LOAD_FAILED);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Loads slimmed variants of the libraries that only contain the classes reachable from the application's roots,
+     * see {@link LibraryShrinker}. Libraries that are not reachable at all are {@link Library.Status#SKIPPED skipped}.
+     * <p>
+     * The slimmed jars are cached in the store, so the analysis only runs again when a library, a root or the keep rules change.
+     *
+     * @param roots the application's own jars or classes directories
+     * @param keep classes only loaded reflectively, see {@link ReachabilityAnalyzer.Builder#keep(String)}
+     */
+    public @NotNull Map<Library, Library.Status> loadShrunk(@NotNull Collection<Library> libraries, @NotNull Collection<Path> roots, @NotNull Collection<String> keep, boolean isolated, @Nullable DownloadSettings settings) throws IzonException {
+        if (settings == null) {
+            settings = DownloadSettings.DEFAULT;
+        }
+
+        Map<Library, Library.Status> results = new LinkedHashMap<>();
+        Map<Library, Path> pending = new LinkedHashMap<>();
+        Map<Library, Library> resolved = new LinkedHashMap<>();
+        IzonClassLoader classLoader = this.getClassLoader(null, isolated);
+        boolean added = false;
+
+        try {
+            for (Library library : libraries) {
+                Library resolvedLibrary = this.resolveVersion(library, settings);
+
+                Library.Status registered = LibraryRegistry.claim(classLoader, resolvedLibrary);
+                if (registered != null) {
+                    results.put(library, registered);
+                    continue;
+                }
+
+                resolved.put(library, resolvedLibrary);
+                pending.put(library, this.prepareLibrary(resolvedLibrary, settings));
+            }
+
+            Map<Library, Path> shrunk = this.shrinker.shrink(pending, roots, keep);
+
+            List<URL> urls = new ArrayList<>(shrunk.size());
+            for (Library library : pending.keySet()) {
+                Path file = shrunk.get(library);
+                if (file == null) {
+                    results.put(library, Library.Status.SKIPPED);
+                    continue;
+                }
+
+                urls.add(file.toUri().toURL());
+                results.put(library, Library.Status.SUCCESS);
+            }
+
+            classLoader.addURLs(urls);
+            shrunk.values().forEach(this::markUsed);
+
+            added = true;
+        } catch (IOException e) {
+            throw new IzonException("Failed to shrink libraries", e);
+        } finally {
+            for (Map.Entry<Library, Library> entry : resolved.entrySet()) {
+                LibraryRegistry.complete(classLoader, entry.getValue(), added ? results.get(entry.getKey()) : Library.Status.LOAD_FAILED);
+            }
+        }
+
+        return results;
+    }
+
+    public @NotNull CompletableFuture<Library.Status> scheduleLibrary(@NotNull Library library) throws IzonException {
+        return this.scheduleLibrary(library, false, null, null);
+    }
+
+    /**
+     * Loads a library according to its {@link Library.Priority}.
+     * <p>
+     * {@link Library.Priority#CRITICAL critical} libraries are loaded synchronously, while {@link Library.Priority#DEFERRED deferred}
+     * libraries are queued until {@link #startDeferred()} is called and then loaded in the background.
+     *
+     * @return a readiness handle that completes once the library has been loaded
+     */
+    public @NotNull CompletableFuture<Library.Status> scheduleLibrary(@NotNull Library library, boolean isolated, @Nullable DownloadSettings settings, @Nullable LoadSettings loadSettings) throws IzonException {
+        CompletableFuture<Library.Status> future = new CompletableFuture<>();
+
+        CompletableFuture<Library.Status> existing = this.readiness.putIfAbsent(library, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (library.getPriority() == Library.Priority.CRITICAL) {
+            try {
+                future.complete(this.loadLibrary(library, isolated, settings, loadSettings));
+            } catch (Throwable t) {
+                // anything else (e.g. a LinkageError) would leave getReadiness() waiting forever
+                future.completeExceptionally(t);
+                throw t;
+            }
+
+            return future;
+        }
+
+        Runnable task = () -> {
+            try {
+                future.complete(this.loadLibrary(library, isolated, settings, loadSettings));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        };
+
+        Executor executor;
+        synchronized (this.deferred) {
+            executor = this.deferredExecutor;
+
+            if (executor == null) {
+                this.deferred.add(task);
+                return future;
+            }
+        }
+
+        executor.execute(task);
+        return future;
+    }
+
+    public void startDeferred() {
+        this.startDeferred(IzonThreadFactory.newPool("deferred", Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+
+    /**
+     * Starts prefetching every deferred library, including ones scheduled after this call.
+     */
+    public void startDeferred(@NotNull Executor executor) {
+        List<Runnable> tasks;
+
+        synchronized (this.deferred) {
+            if (this.deferredExecutor != null) return;
+
+            this.deferredExecutor = executor;
+            tasks = new ArrayList<>(this.deferred);
+            this.deferred.clear();
+        }
+
+        tasks.forEach(executor::execute);
+    }
+
+    public @Nullable CompletableFuture<Library.Status> getReadiness(@NotNull Library library) {
+        return this.readiness.get(library);
+    }
+
+    /**
+     * @return a handle that completes once every library of the given tier scheduled so far has been loaded
+     */
+    public @NotNull CompletableFuture<Void> getReadiness(@NotNull Library.Priority priority) {
+        return CompletableFuture.allOf(this.readiness.entrySet().stream()
+                .filter(entry -> entry.getKey().getPriority() == priority)
+                .map(Map.Entry::getValue)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    private Library resolveVersion(Library library, DownloadSettings settings) throws IzonException {
+        if (!library.needsResolution()) {
+            return library;
+        }
+
+        try {
+            return this.versionResolver.resolve(library, settings);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IzonException("Failed to resolve version " + library.getVersion(), e, library, Library.Status.DOWNLOAD_FAILED);
+        }
+    }
+
+    private Artifact fetchLibrary(Library library, DownloadSettings settings) throws IzonException {
+        try {
+            Artifact artifact = settings.isDeltas() ? this.downloadDelta(library, settings) : null;
+            if (artifact == null) {
+                artifact = downloadLibrary(library, settings);
+            }
 
             // check sha256
-            if (library.hasChecksum() && !checkHash(library, data)) {
+            if (library.hasChecksum() && !checkHash(library, artifact.getData())) {
                 throw new IzonException("SHA-256 checksum failed", library, Library.Status.CHECKSUM_MISMATCH);
             }
 
+            return artifact;
+        } catch (ChecksumException e) {
+            throw new IzonException("Remote checksum failed", e, library, Library.Status.CHECKSUM_MISMATCH);
+        } catch (IOException e) {
+            throw new IzonException("Failed to download library", e, library, Library.Status.DOWNLOAD_FAILED);
+        }
+    }
+
+    /**
+     * Tries to rebuild the library from a delta against the closest other version in the store, older versions first.
+     *
+     * @return the rebuilt artifact, or null if it has to be downloaded in full
+     */
+    private @Nullable Artifact downloadDelta(Library library, DownloadSettings settings) throws IOException {
+        Map<String, Path> versions = this.store.findVersions(library);
+        if (versions.isEmpty()) return null;
+
+        List<String> older = new ArrayList<>();
+        List<String> newer = new ArrayList<>();
+        for (String version : versions.keySet()) {
+            (VersionRange.compareVersions(version, library.getVersion()) < 0 ? older : newer).add(version);
+        }
+
+        older.sort(VersionRange.VERSION_ORDER.reversed());
+        newer.sort(VersionRange.VERSION_ORDER);
+        older.addAll(newer);
+
+        for (String version : older.subList(0, Math.min(older.size(), MAX_DELTA_BASES))) {
+            byte[] base;
+            try {
+                base = Files.readAllBytes(versions.get(version));
+            } catch (IOException e) {
+                // evicted in the meantime
+                continue;
+            }
+
+            Artifact artifact = this.downloader.downloadDelta(library, version, base, settings);
+            if (artifact != null) return artifact;
+        }
+
+        return null;
+    }
+
+    private void storeLibrary(Library library, Path file, DownloadSettings settings) throws IzonException {
+        Artifact artifact = this.fetchLibrary(library, settings);
+
+        try {
+            StoreLock lock = this.store.getLock();
+            lock.lockShared();
 
-            // create temp file
-            Path out = Files.createTempFile(this.saveDirectory, library.getFriendlyPath(), ".tmplib");
-            out.toFile().deleteOnExit();
+            try {
+                // create temp file
+                Path out = Files.createTempFile(this.saveDirectory, library.getFriendlyPath(), LibraryStore.TEMP_SUFFIX);
 
-            // write and move
-            Files.write(out, data);
-            Files.move(out, file);
+                // write and move
+                try {
+                    Files.write(out, artifact.getData());
+                    Files.move(out, file);
+                } finally {
+                    Files.deleteIfExists(out);
+                }
+            } finally {
+                lock.unlockShared();
+            }
+
+            Map<String, byte[]> digests = new HashMap<>(artifact.getDigests());
+            if (library.hasChecksum()) {
+                digests.put(ChecksumAlgorithm.SHA256.getName(), library.getSha256());
+            }
+
+            this.store.recordDigests(library.getFriendlyPath(), digests);
+            this.store.recordCoordinates(library);
         } catch (IOException e) {
             throw new IzonException("Failed to download library", e, library, Library.Status.DOWNLOAD_FAILED);
         }
+    }
+
+    /**
+     * @return the file the library is loaded from, i.e. the relocated jar if it has relocations
+     */
+    private Path getLoadFile(Library library) {
+        return this.saveDirectory.resolve(library.hasRelocations() ? library.getRelocatedFriendlyPath() : library.getFriendlyPath());
+    }
 
-        // TODO: relocate it
+    /**
+     * Makes sure the library is downloaded and, if needed, relocated.
+     *
+     * @return the file to load the library from
+     */
+    private Path prepareLibrary(Library library, DownloadSettings settings) throws IzonException {
+        Path file = this.saveDirectory.resolve(library.getFriendlyPath());
+        Path target = this.getLoadFile(library);
 
+        if (!Files.exists(file)) {
+            this.storeLibrary(library, file, settings);
+        }
 
-        // load it
+        if (library.hasRelocations() && !Files.exists(target)) {
+            this.relocateLibrary(library, file, target);
+        }
 
-        if (isolated) {
-            // its isolated, was the isolated class loader successfully created?
-            if (this.isolatedClassLoader == null) {
-                throw new IzonException("Isolated class loader could not be created (parent is not a URLClassLoader?)", library, Library.Status.LOAD_FAILED);
+        return target;
+    }
+
+    /**
+     * Same as {@link #prepareLibrary(Library, DownloadSettings)}, but loads from the uncompressed copy if the load settings ask for it.
+     */
+    private Path prepareLibrary(Library library, DownloadSettings settings, @Nullable LoadSettings loadSettings) throws IzonException {
+        Path file = this.prepareLibrary(library, settings);
+        if (loadSettings == null || !loadSettings.isStored()) {
+            return file;
+        }
+
+        try {
+            StoreLock lock = this.store.getLock();
+            lock.lockShared();
+
+            try {
+                return this.repacker.repack(file);
+            } finally {
+                lock.unlockShared();
+            }
+        } catch (IOException e) {
+            throw new IzonException("Failed to repack library", e, library, Library.Status.LOAD_FAILED);
+        }
+    }
+
+    private void relocateLibrary(Library library, Path file, Path target) throws IzonException {
+        JarRelocator relocator = new JarRelocator(RelocationMatcher.of(library.getRelocations()));
+
+        try {
+            StoreLock lock = this.store.getLock();
+            lock.lockShared();
+
+            try {
+                Path out = Files.createTempFile(this.saveDirectory, library.getRelocatedFriendlyPath(), LibraryStore.TEMP_SUFFIX);
+
+                try {
+                    relocator.relocate(file, out);
+                    Files.move(out, target);
+                } finally {
+                    Files.deleteIfExists(out);
+                }
+            } finally {
+                lock.unlockShared();
             }
+        } catch (IOException e) {
+            throw new IzonException("Failed to relocate library", e, library, Library.Status.RELOCATION_FAILED);
+        }
+    }
+
+    private Library.Status loadIndexed(Library library, IzonClassLoader classLoader, DownloadSettings settings, LoadSettings loadSettings) {
+        boolean existed = Files.exists(this.getLoadFile(library));
+        Path file = this.prepareLibrary(library, settings, loadSettings);
 
-            return loadLibrary(library, file, this.isolatedClassLoader);
+        JarIndex index;
+        try {
+            index = this.store.getIndex(file);
+        } catch (IOException e) {
+            throw new IzonException("Failed to index library", e, library, Library.Status.LOAD_FAILED);
         }
 
-        return loadLibrary(library, file, this.classLoader);
+        commitLoad(library);
+
+        IndexedJarSource source = this.indexedSources.computeIfAbsent(classLoader, loader -> {
+            IndexedJarSource indexed = new IndexedJarSource();
+            loader.addURL(IzonURLHandler.register(indexed, loader.getActualLoader()));
+            return indexed;
+        });
+
+        source.add(file, index.getPackages(), index.getServices());
+        this.markUsed(file);
+
+        return existed ? Library.Status.ALREADY_EXISTS : Library.Status.SUCCESS;
     }
 
-    private byte[] downloadLibrary(Library library, DownloadSettings settings) throws IOException {
-        URLConnection connection = new URL(library.getRepository().getUrl() + library.getPath()).openConnection();
+    private Library.Status loadEager(Library library, IzonClassLoader classLoader, DownloadSettings settings, LoadSettings loadSettings) {
+        boolean existed = Files.exists(this.getLoadFile(library));
+        Path file = this.prepareLibrary(library, settings, loadSettings);
 
-        connection.setConnectTimeout(settings.getConnectionTimeout());
-        connection.setReadTimeout(settings.getReadTimeout());
-        connection.setRequestProperty("User-Agent", settings.getUserAgent());
+        JarFile jar = this.openJar(library, file);
 
-        try (InputStream in = connection.getInputStream()) {
-            int length;
-            byte[] buffer = new byte[settings.getBufferSize()];
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            this.loadLibrary(library, file, classLoader);
+            openInLoader(classLoader);
+        } finally {
+            closeJars(Collections.singletonList(jar));
+        }
+
+        return existed ? Library.Status.ALREADY_EXISTS : Library.Status.SUCCESS;
+    }
+
+    /**
+     * Opens the jars of a batch in parallel. Libraries whose jar is corrupt are marked as failed and left out.
+     *
+     * @param opened receives the opened jars, which the caller must close
+     * @return the URLs of the jars that opened, in batch order
+     */
+    private List<URL> openEagerly(Map<Library, Path> pending, Map<Library, Library.Status> results, List<JarFile> opened) throws MalformedURLException {
+        ThreadPoolExecutor executor = IzonThreadFactory.newPool("open", Math.max(1, Math.min(pending.size(), Runtime.getRuntime().availableProcessors())));
+        Map<Library, Future<JarFile>> futures = new LinkedHashMap<>();
+
+        try {
+            pending.forEach((library, file) -> futures.put(library, executor.submit(() -> this.openJar(library, file))));
+
+            List<URL> urls = new ArrayList<>(futures.size());
+            for (Map.Entry<Library, Future<JarFile>> entry : futures.entrySet()) {
+                Library library = entry.getKey();
+
+                try {
+                    opened.add(entry.getValue().get());
+                    urls.add(pending.get(library).toUri().toURL());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    results.put(library, cause instanceof IzonException && ((IzonException) cause).hasStatus() ? ((IzonException) cause).getStatus() : Library.Status.LOAD_FAILED);
+                }
+            }
+
+            return urls;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IzonException("Interrupted while opening libraries", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Opens a stored jar, which parses and validates its central directory.
+     * <p>
+     * The JDK shares the parsed central directory between every open {@link JarFile} of the same file, so keeping this
+     * handle open until {@link #openInLoader(IzonClassLoader)} means the class loader's own open of the jar reuses it
+     * instead of parsing the jar again.
+     */
+    private JarFile openJar(Library library, Path file) {
+        try {
+            return new JarFile(file.toFile());
+        } catch (IOException e) {
+            throw new IzonException("Library is not a valid jar", e, library, Library.Status.LOAD_FAILED);
+        }
+    }
+
+    /**
+     * Makes the class loader open every jar it was given, which it otherwise does on the first lookup that reaches them.
+     */
+    private static void openInLoader(IzonClassLoader classLoader) {
+        try {
+            // a resource nearly every jar has, so the lookup visits (and opens) all of them
+            Enumeration<URL> manifests = classLoader.getLoader().getResources(JarFile.MANIFEST_NAME);
+            while (manifests.hasMoreElements()) {
+                manifests.nextElement();
+            }
+        } catch (IOException ignored) {
+            // the loader opens them on demand instead, parsing them again
+        }
+    }
+
+    /**
+     * Closes the handles from {@link #openJar(Library, Path)}, so they don't keep stored jars open
+     * (which on Windows keeps {@link StoreCollector} from deleting them once they are unused).
+     */
+    private static void closeJars(List<JarFile> jars) {
+        for (JarFile jar : jars) {
+            try {
+                jar.close();
+            } catch (IOException ignored) {
+                // nothing was written
+            }
+        }
+    }
+
+    private Library.Status loadInMemory(Library library, IzonClassLoader classLoader, DownloadSettings settings) {
+        if (this.sourceLibraries.containsKey(library)) {
+            return Library.Status.ALREADY_EXISTS;
+        }
+
+        MemoryJar jar = this.openInMemory(library, settings);
+        commitLoad(library);
+
+        URL url = IzonURLHandler.register(jar, classLoader.getActualLoader());
+        if (this.sourceLibraries.putIfAbsent(library, url) != null) {
+            IzonURLHandler.unregister(url);
+            return Library.Status.ALREADY_EXISTS;
+        }
+
+        classLoader.addURL(url);
+        return Library.Status.SUCCESS;
+    }
+
+    private Library.Status loadRelocatingOnDefine(Library library, IzonClassLoader classLoader, DownloadSettings settings, LoadSettings loadSettings) {
+        if (this.sourceLibraries.containsKey(library)) {
+            return Library.Status.ALREADY_EXISTS;
+        }
+
+        RelocatingClassLoader relocating = new RelocatingClassLoader(classLoader, new JarRelocator(RelocationMatcher.of(library.getRelocations())), loadSettings.getRelocationCacheSize());
+
+        MemoryJar jar = this.openOriginal(library, settings, loadSettings);
+        commitLoad(library);
+
+        URL url = relocating.wrap(jar);
+        if (this.sourceLibraries.putIfAbsent(library, url) != null) {
+            IzonURLHandler.unregister(url);
+            return Library.Status.ALREADY_EXISTS;
+        }
+
+        classLoader.addURL(url);
+        return Library.Status.SUCCESS;
+    }
+
+    /**
+     * Opens the library's jar without relocating it, keeping it off disk when loading in memory.
+     */
+    private MemoryJar openOriginal(Library library, DownloadSettings settings, LoadSettings loadSettings) {
+        Path file = this.saveDirectory.resolve(library.getFriendlyPath());
+
+        if (loadSettings.isInMemory() && !Files.exists(file)) {
+            return this.openInMemory(library, settings, false);
+        }
+
+        if (!Files.exists(file)) {
+            this.storeLibrary(library, file, settings);
+        }
+
+        return this.openMapped(library, file);
+    }
+
+    private MemoryJar openInMemory(Library library, DownloadSettings settings) {
+        return this.openInMemory(library, settings, library.hasRelocations());
+    }
+
+    private MemoryJar openInMemory(Library library, DownloadSettings settings, boolean relocate) {
+        byte[] data = this.fetchLibrary(library, settings).getData();
+
+        if (relocate) {
+            try {
+                data = new JarRelocator(RelocationMatcher.of(library.getRelocations())).relocate(data);
+            } catch (IOException e) {
+                throw new IzonException("Failed to relocate library", e, library, Library.Status.RELOCATION_FAILED);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+
+        try {
+            return new MemoryJar(buffer);
+        } catch (IOException e) {
+            throw new IzonException("Downloaded library is not a valid jar", e, library, Library.Status.LOAD_FAILED);
+        }
+    }
+
+    private Library.Status registerLazy(Library library, IzonClassLoader classLoader, DownloadSettings settings, LoadSettings loadSettings) {
+        if (!library.hasPackages()) {
+            throw new IzonException("Lazy libraries must declare the packages they provide", library, Library.Status.LOAD_FAILED);
+        }
+
+        if (this.sourceLibraries.containsKey(library)) {
+            return Library.Status.ALREADY_EXISTS;
+        }
+
+        LazyJarSource source = new LazyJarSource(library.getPackages(), () -> {
+            Library resolved = this.resolveVersion(library, settings);
+
+            if (resolved.hasRelocations() && loadSettings.isRelocateOnDefine()) {
+                JarRelocator relocator = new JarRelocator(RelocationMatcher.of(resolved.getRelocations()));
+                return new RelocatingJarSource(this.openOriginal(resolved, settings, loadSettings), relocator, loadSettings.getRelocationCacheSize());
+            }
+
+            if (loadSettings.isInMemory() && !Files.exists(this.getLoadFile(resolved))) {
+                return this.openInMemory(resolved, settings);
+            }
+
+            return this.openMapped(resolved, this.prepareLibrary(resolved, settings, loadSettings));
+        });
+
+        commitLoad(library);
+
+        URL url = IzonURLHandler.register(source, classLoader.getActualLoader());
+        if (this.sourceLibraries.putIfAbsent(library, url) != null) {
+            IzonURLHandler.unregister(url);
+            return Library.Status.ALREADY_EXISTS;
+        }
+
+        classLoader.addURL(url);
+        return Library.Status.REGISTERED;
+    }
+
+    private MemoryJar openMapped(Library library, Path file) {
+        this.markUsed(file);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MemoryJar(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new IzonException("Failed to open library", e, library, Library.Status.LOAD_FAILED);
+        }
+    }
+
+    /**
+     * Downloads the libraries and computes which of them the given entry points can actually reach.
+     * <p>
+     * Meant to be run ahead of time (e.g. in development), so production can load only {@link ReachabilityReport#getReachable()}.
+     *
+     * @param roots the application's own jars or classes directories
+     * @see ReachabilityAnalyzer
+     */
+    public @NotNull ReachabilityReport analyzeReachability(@NotNull Collection<Library> libraries, @NotNull Collection<Path> roots, @Nullable DownloadSettings settings) throws IzonException {
+        if (settings == null) {
+            settings = DownloadSettings.DEFAULT;
+        }
+
+        ReachabilityAnalyzer.Builder builder = ReachabilityAnalyzer.builder().roots(roots);
+        for (Library library : libraries) {
+            // reported under the declared library, so callers can look it up again
+            builder.library(library, this.prepareLibrary(this.resolveVersion(library, settings), settings));
+        }
+
+        try {
+            return builder.build().analyze();
+        } catch (IOException e) {
+            throw new IzonException("Failed to analyze library reachability", e);
+        }
+    }
+
+    public @NotNull NativeLibrary extractNatives(@NotNull Library library) throws IzonException {
+        return this.extractNatives(library, null);
+    }
+
+    /**
+     * Stores a library with native binaries (e.g. a {@code linux-x86_64} classifier) and extracts them once into the store,
+     * so later runs reuse the extracted files instead of unpacking them again.
+     * <p>
+     * This does not add the library to a class loader, load it as usual if it also contains classes.
+     */
+    public @NotNull NativeLibrary extractNatives(@NotNull Library library, @Nullable DownloadSettings settings) throws IzonException {
+        if (settings == null) {
+            settings = DownloadSettings.DEFAULT;
+        }
+
+        library = this.resolveVersion(library, settings);
+        Path file = this.saveDirectory.resolve(library.getFriendlyPath());
+
+        if (!Files.exists(file)) {
+            this.storeLibrary(library, file, settings);
+        }
+
+        this.markUsed(file);
+
+        try {
+            byte[] sha256 = this.store.getDigest(library.getFriendlyPath(), ChecksumAlgorithm.SHA256.getName());
+            if (sha256 == null) {
+                sha256 = ChecksumAlgorithm.SHA256.digest(Files.readAllBytes(file));
+            }
+
+            StoreLock lock = this.store.getLock();
+            lock.lockShared();
+
+            try {
+                return this.store.getNatives().extract(file, sha256);
+            } finally {
+                lock.unlockShared();
+            }
+        } catch (IOException e) {
+            throw new IzonException("Failed to extract native library", e, library, Library.Status.LOAD_FAILED);
+        }
+    }
+
+    /**
+     * Evicts unused jars and orphaned temp files from the store. Jars used by this instance are always kept.
+     */
+    public @NotNull StoreCollector.Result collectGarbage(@NotNull StoreCollector collector) throws IzonException {
+        try {
+            return collector.collect(this.usedFiles);
+        } catch (IOException e) {
+            throw new IzonException("Failed to collect store garbage", e);
+        }
+    }
+
+    /**
+     * Periodically runs {@link #collectGarbage(StoreCollector)} on a background daemon thread until {@link #stopMaintenance()} is called.
+     */
+    public synchronized void startMaintenance(@NotNull StoreCollector collector, long period, @NotNull TimeUnit unit) {
+        if (this.maintenance != null) {
+            throw new IzonException("Store maintenance is already running");
+        }
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(new IzonThreadFactory("maintenance"));
+        this.maintenance.scheduleWithFixedDelay(() -> {
+            try {
+                this.collectGarbage(collector);
+            } catch (RuntimeException ignored) {
+                // the store may be busy, unavailable or changed underneath, try again next period
+                // (an escaping exception would cancel every future run)
+            }
+        }, period, period, unit);
+    }
+
+    public synchronized void stopMaintenance() {
+        if (this.maintenance != null) {
+            this.maintenance.shutdownNow();
+            this.maintenance = null;
+        }
+    }
+
+    /**
+     * Records which classes from this instance's stored libraries the main class loader has loaded so far,
+     * so a later run can {@link #preloadWarmup(String) preload} them. Call it once the application finished starting.
+     * <p>
+     * Libraries that were only loaded in memory are not recorded. Classes are recorded in the order of their jars'
+     * entries, not in the order they were loaded in.
+     * <p>
+     * Without the agent, Java 16 and later don't allow inspecting the loaded classes unless {@code java.lang} is opened
+     * to Izon (see {@link LoadedClasses}). Nothing is recorded then, and an earlier list of the profile is kept.
+     *
+     * @return the number of classes recorded, or -1 if the loaded classes could not be inspected
+     * @see LoadedClasses
+     */
+    public int recordWarmup(@NotNull String profile) throws IzonException {
+        if (!LoadedClasses.isSupported()) {
+            return -1;
+        }
+
+        List<String> candidates = new ArrayList<>();
+
+        for (String fileName : this.usedFiles) {
+            Path file = this.saveDirectory.resolve(fileName);
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MemoryJar jar = new MemoryJar(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+
+                for (String name : jar.getNames()) {
+                    if (!name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class")) continue;
+
+                    candidates.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+                }
+            } catch (IOException ignored) {
+                // evicted or replaced since it was loaded
+            }
+        }
+
+        Set<String> loaded = LoadedClasses.filter(this.classLoader.getLoader(), candidates);
+
+        try {
+            this.store.writeWarmup(profile, loaded);
+        } catch (IOException e) {
+            throw new IzonException("Failed to save warm-up list", e);
+        }
 
-            while ((length = in.read(buffer)) != -1) {
-                out.write(buffer, 0, length);
+        return loaded.size();
+    }
+
+    public @NotNull CompletableFuture<Integer> preloadWarmup(@NotNull String profile) throws IzonException {
+        return this.preloadWarmup(profile, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Loads and links the classes recorded by {@link #recordWarmup(String)} on background threads,
+     * so the first requests that need them don't pay for it. Classes are not initialized.
+     * <p>
+     * Call it after the profile's libraries were loaded. Classes that no longer exist are skipped.
+     *
+     * @return a future completed with the number of classes preloaded
+     */
+    public @NotNull CompletableFuture<Integer> preloadWarmup(@NotNull String profile, int threads) throws IzonException {
+        List<String> classNames;
+        try {
+            classNames = this.store.readWarmup(profile);
+        } catch (IOException e) {
+            throw new IzonException("Failed to read warm-up list", e);
+        }
+
+        if (classNames.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        ClassLoader loader = this.classLoader.getLoader();
+        AtomicInteger cursor = new AtomicInteger();
+        AtomicInteger preloaded = new AtomicInteger();
+
+        Runnable worker = () -> {
+            int i;
+            while ((i = cursor.getAndIncrement()) < classNames.size()) {
+                try {
+                    // reflecting on the constructors makes HotSpot link (and verify) the class
+                    Class.forName(classNames.get(i), false, loader).getDeclaredConstructors();
+                    preloaded.incrementAndGet();
+                } catch (ClassNotFoundException | LinkageError ignored) {
+                    // the list is from an earlier run, the library may have changed since
+                }
             }
+        };
+
+        threads = Math.max(1, Math.min(threads, classNames.size()));
+        ThreadPoolExecutor executor = IzonThreadFactory.newPool("warmup", threads);
 
-            return out.toByteArray();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[threads];
+        for (int i = 0; i < threads; i++) {
+            futures[i] = CompletableFuture.runAsync(worker, executor);
         }
+
+        executor.shutdown();
+        return CompletableFuture.allOf(futures).thenApply(ignored -> preloaded.get());
+    }
+
+    private void markUsed(Path file) {
+        String name = file.getFileName().toString();
+        if (!this.usedFiles.add(name)) return;
+
+        try {
+            this.store.recordUse(Collections.singleton(name));
+        } catch (IOException ignored) {
+            // usage only guides eviction order, the library itself loaded fine
+        }
+    }
+
+    /**
+     * Serves this instance's save directory as a Maven repository, so other nodes can download from it
+     * (e.g. as a {@link Repository#getMirrors() mirror}) instead of from the public repositories.
+     *
+     * @see RepositoryServer
+     */
+    public @NotNull RepositoryServer serveRepository(@NotNull InetSocketAddress address) throws IzonException {
+        try {
+            return RepositoryServer.start(this.store, address, 8);
+        } catch (IOException e) {
+            throw new IzonException("Failed to start repository server", e);
+        }
+    }
+
+    /**
+     * @return the class loader non-isolated libraries are added to, load their classes through {@link IzonClassLoader#getActualLoader()}
+     */
+    public @NotNull IzonClassLoader getClassLoader() {
+        return this.classLoader;
+    }
+
+    public @NotNull LibraryStore getStore() {
+        return this.store;
+    }
+
+    public @NotNull DownloadScheduler getScheduler() {
+        return this.downloader.getScheduler();
+    }
+
+    public void setScheduler(@NotNull DownloadScheduler scheduler) {
+        this.downloader.setScheduler(scheduler);
+    }
+
+    private IzonClassLoader getClassLoader(Library library, boolean isolated) {
+        if (!isolated) {
+            return this.classLoader;
+        }
+
+        // its isolated, was the isolated class loader successfully created?
+        if (this.isolatedClassLoader == null) {
+            throw new IzonException("Isolated class loader could not be created (parent is not a URLClassLoader?)", library, Library.Status.LOAD_FAILED);
+        }
+
+        return this.isolatedClassLoader;
+    }
+
+    private Artifact downloadLibrary(Library library, DownloadSettings settings) throws IOException {
+        return this.downloader.download(library, settings);
     }
 
     private boolean checkHash(Library library, byte[] data) {
@@ -172,12 +1252,36 @@ public class Izon {
     }
 
     private Library.Status loadLibrary(Library library, Path file, IzonClassLoader classLoader) {
+        commitLoad(library);
+
         try {
             classLoader.addPath(file);
         } catch (MalformedURLException e) {
             throw new IzonException("Failed to add library to class loader", e, library, Library.Status.LOAD_FAILED);
         }
 
+        this.markUsed(file);
+
         return Library.Status.SUCCESS;
     }
+
+    /**
+     * Lets a batch give up on a load only until the load starts changing its class loader.
+     */
+    private static final class Cancellation {
+
+        private static final int RUNNING = 0;
+        private static final int COMMITTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+        private boolean commit() {
+            return this.state.compareAndSet(RUNNING, COMMITTED) || this.state.get() == COMMITTED;
+        }
+
+        private boolean cancel() {
+            return this.state.compareAndSet(RUNNING, CANCELLED);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,170 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.agent;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * A Java agent that hands its {@link Instrumentation} to Izon.
+ * <p>
+ * It can be started with {@code -javaagent}, as the {@code Launcher-Agent-Class} of an executable jar,
+ * or attached at runtime with {@link #attach()}. Agents are always loaded by the system class loader, so when Izon
+ * itself is loaded by another class loader the instance is read from the system class loader's copy of this class.
+ */
+public final class IzonAgent {
+
+    private static volatile @Nullable Instrumentation instrumentation;
+    private static boolean attachAttempted;
+
+    private IzonAgent() {
+        // seal class to prevent instantiation
+    }
+
+    public static void premain(String arguments, Instrumentation instrumentation) {
+        install(instrumentation);
+    }
+
+    public static void agentmain(String arguments, Instrumentation instrumentation) {
+        install(instrumentation);
+    }
+
+    private static void install(Instrumentation instrumentation) {
+        IzonAgent.instrumentation = instrumentation;
+    }
+
+    public static @Nullable Instrumentation getInstrumentation() {
+        Instrumentation instrumentation = IzonAgent.instrumentation;
+        if (instrumentation != null) return instrumentation;
+
+        return systemInstrumentation();
+    }
+
+    private static @Nullable Instrumentation systemInstrumentation() {
+        try {
+            Class<?> agent = Class.forName(IzonAgent.class.getName(), false, ClassLoader.getSystemClassLoader());
+            if (agent == IzonAgent.class) return null;
+
+            Field field = agent.getDeclaredField("instrumentation");
+            field.setAccessible(true);
+
+            Object shared = field.get(null);
+            return shared instanceof Instrumentation ? (Instrumentation) shared : null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the agent was never loaded by the system class loader
+            return null;
+        }
+    }
+
+    /**
+     * Attaches the agent to the running JVM, once.
+     * <p>
+     * Needs the {@code jdk.attach} module, and on Java 9+ the JVM must be started with {@code -Djdk.attach.allowAttachSelf=true}.
+     *
+     * @return the instrumentation, or null if the agent could not be attached
+     */
+    public static synchronized @Nullable Instrumentation attach() {
+        Instrumentation current = getInstrumentation();
+        if (current != null || attachAttempted) return current;
+
+        attachAttempted = true;
+
+        try {
+            Path jar = writeAgentJar();
+
+            Class<?> virtualMachine = Class.forName("com.sun.tools.attach.VirtualMachine");
+            Object vm = virtualMachine.getMethod("attach", String.class).invoke(null, currentPid());
+
+            try {
+                virtualMachine.getMethod("loadAgent", String.class).invoke(vm, jar.toAbsolutePath().toString());
+            } finally {
+                virtualMachine.getMethod("detach").invoke(vm);
+            }
+        } catch (Throwable ignored) {
+            // no attach api, or self-attach is disabled
+            return null;
+        }
+
+        return getInstrumentation();
+    }
+
+    private static String currentPid() {
+        try {
+            // Java 9+
+            Class<?> processHandle = Class.forName("java.lang.ProcessHandle");
+            Object current = processHandle.getMethod("current").invoke(null);
+            Method pid = processHandle.getMethod("pid");
+            return String.valueOf(pid.invoke(current));
+        } catch (ReflectiveOperationException e) {
+            String name = ManagementFactory.getRuntimeMXBean().getName();
+            return name.substring(0, name.indexOf('@'));
+        }
+    }
+
+    /**
+     * The attach mechanism needs a jar, so write one containing only this class.
+     */
+    private static Path writeAgentJar() throws IOException {
+        Path jar = Files.createTempFile("izon-agent", ".jar");
+        jar.toFile().deleteOnExit();
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(new Attributes.Name("Agent-Class"), IzonAgent.class.getName());
+
+        String entry = IzonAgent.class.getName().replace('.', '/') + ".class";
+
+        try (OutputStream file = Files.newOutputStream(jar); JarOutputStream out = new JarOutputStream(file, manifest); InputStream in = IzonAgent.class.getResourceAsStream("/" + entry)) {
+            if (in == null) {
+                throw new IOException("Could not find " + entry);
+            }
+
+            out.putNextEntry(new JarEntry(entry));
+
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+
+            out.closeEntry();
+        }
+
+        return jar;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.analysis;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the classes a class file may refer to, from the UTF-8 entries of its constant pool.
+ * <p>
+ * Class references, descriptors and signatures all end up as UTF-8 entries. String constants that look like class
+ * names are included as well, so classes loaded reflectively by a literal name are not missed. The result is an
+ * over-approximation, callers are expected to match it against the classes they know about.
+ */
+public final class ClassReferences {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    // Lcom/example/Foo; in descriptors, Lcom/example/Foo<...>; in signatures
+    private static final Pattern DESCRIPTOR = Pattern.compile("L([\\p{javaJavaIdentifierPart}/]+)[;<]");
+    // com/example/Foo in class entries, com.example.Foo in strings
+    private static final Pattern NAME = Pattern.compile("\\p{javaJavaIdentifierPart}+(?:[./]\\p{javaJavaIdentifierPart}+)+");
+
+    private ClassReferences() {
+        // seal class to prevent instantiation
+    }
+
+    /**
+     * @return the internal names (e.g. {@code com/example/Foo}) the class may refer to
+     */
+    public static @NotNull Set<String> of(byte @NotNull [] classFile) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+
+        in.readInt(); // minor and major version
+
+        Set<String> references = new LinkedHashSet<>();
+
+        int count = in.readUnsignedShort();
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+
+            switch (tag) {
+                case UTF8:
+                    collect(in.readUTF(), references);
+                    break;
+                case CLASS:
+                case STRING:
+                case METHOD_TYPE:
+                case MODULE:
+                case PACKAGE:
+                    in.skipBytes(2);
+                    break;
+                case METHOD_HANDLE:
+                    in.skipBytes(3);
+                    break;
+                case INTEGER:
+                case FLOAT:
+                case FIELD_REF:
+                case METHOD_REF:
+                case INTERFACE_METHOD_REF:
+                case NAME_AND_TYPE:
+                case DYNAMIC:
+                case INVOKE_DYNAMIC:
+                    in.skipBytes(4);
+                    break;
+                case LONG:
+                case DOUBLE:
+                    in.skipBytes(8);
+
+                    // 8 byte constants take up two slots
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag + " at index " + i);
+            }
+        }
+
+        return references;
+    }
+
+    private static void collect(String value, Set<String> references) {
+        if (value.indexOf('/') == -1 && value.indexOf('.') == -1) return;
+
+        Matcher descriptor = DESCRIPTOR.matcher(value);
+        while (descriptor.find()) {
+            references.add(descriptor.group(1));
+        }
+
+        Matcher name = NAME.matcher(value);
+        while (name.find()) {
+            references.add(name.group().replace('.', '/'));
+        }
+    }
+}
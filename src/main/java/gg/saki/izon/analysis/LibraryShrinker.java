@@ -0,0 +1,311 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.analysis;
+
+import gg.saki.izon.download.ChecksumAlgorithm;
+import gg.saki.izon.libraries.Library;
+import gg.saki.izon.relocation.JarRelocator;
+import gg.saki.izon.store.LibraryStore;
+import gg.saki.izon.store.StoreFile;
+import gg.saki.izon.store.StoreLock;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes slimmed variants of stored jars that only contain the classes reachable from the application.
+ * <p>
+ * Resources are kept, service files only list the implementations that were kept. Results are cached in the store,
+ * keyed by the checksums of the input jars, the size and modification time of the roots plus the keep rules, so the
+ * analysis only runs again once one of them changes.
+ */
+public class LibraryShrinker {
+
+    private static final String SERVICES = "META-INF/services/";
+    private static final String VERSIONS = "META-INF/versions/";
+
+    private final @NotNull LibraryStore store;
+    private final @NotNull StoreFile record;
+
+    public LibraryShrinker(@NotNull LibraryStore store) {
+        this.store = store;
+        this.record = new StoreFile(store.getDataDirectory().resolve("shrink.properties"));
+    }
+
+    /**
+     * @param libraries the libraries with their stored (and relocated, if configured) jars
+     * @param roots the application's own jars or classes directories
+     * @param keep extra entry points, see {@link ReachabilityAnalyzer.Builder#keep(String)}
+     * @return the slimmed jar of every reachable library, unreachable libraries are left out
+     */
+    public @NotNull Map<Library, Path> shrink(@NotNull Map<Library, Path> libraries, @NotNull Collection<Path> roots, @NotNull Collection<String> keep) throws IOException {
+        String key = this.key(libraries.values(), roots, keep);
+
+        Map<Library, Path> cached = this.cached(libraries, key);
+        if (cached != null) return cached;
+
+        ReachabilityAnalyzer.Builder builder = ReachabilityAnalyzer.builder().roots(roots).keep(keep).keepServices(true);
+        libraries.forEach(builder::library);
+
+        ReachabilityReport report = builder.build().analyze();
+
+        Map<Library, Path> shrunk = new LinkedHashMap<>();
+        Map<String, String> outputs = new LinkedHashMap<>();
+
+        StoreLock lock = this.store.getLock();
+        lock.lockShared();
+
+        try {
+            this.write(libraries, report, key, shrunk, outputs);
+        } finally {
+            lock.unlockShared();
+        }
+
+        this.record.update(properties -> properties.putAll(outputs));
+        return shrunk;
+    }
+
+    private void write(Map<Library, Path> libraries, ReachabilityReport report, String key, Map<Library, Path> shrunk, Map<String, String> outputs) throws IOException {
+        for (Map.Entry<Library, Path> entry : libraries.entrySet()) {
+            Library library = entry.getKey();
+            String fileName = entry.getValue().getFileName().toString();
+
+            if (!report.isReachable(library)) {
+                outputs.put(fileName, key + ':');
+                continue;
+            }
+
+            String baseName = fileName.endsWith(".jar") ? fileName.substring(0, fileName.length() - 4) : fileName;
+            Path output = this.store.getDirectory().resolve(baseName + "-shrunk-" + key.substring(0, 12) + ".jar");
+
+            if (!Files.exists(output)) {
+                Path temp = Files.createTempFile(this.store.getDirectory(), output.getFileName().toString(), LibraryStore.TEMP_SUFFIX);
+
+                try {
+                    try (InputStream in = Files.newInputStream(entry.getValue()); OutputStream out = Files.newOutputStream(temp)) {
+                        shrink(in, out, report.getReachedClassNames(library));
+                    }
+
+                    Files.move(temp, output);
+                } catch (IOException e) {
+                    // another process may have written the same output first
+                    if (!Files.exists(output)) throw e;
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+
+            shrunk.put(library, output);
+            outputs.put(fileName, key + ':' + output.getFileName());
+        }
+    }
+
+    private Map<Library, Path> cached(Map<Library, Path> libraries, String key) throws IOException {
+        Properties properties = this.record.read();
+        Map<Library, Path> shrunk = new LinkedHashMap<>();
+
+        for (Map.Entry<Library, Path> entry : libraries.entrySet()) {
+            String value = properties.getProperty(entry.getValue().getFileName().toString());
+            if (value == null || !value.startsWith(key + ':')) return null;
+
+            String outputName = value.substring(key.length() + 1);
+            if (outputName.isEmpty()) continue; // unreachable
+
+            Path output = this.store.getDirectory().resolve(outputName);
+            if (!Files.exists(output)) return null;
+
+            shrunk.put(entry.getKey(), output);
+        }
+
+        return shrunk;
+    }
+
+    /**
+     * Copies a jar, dropping every class not in the given set.
+     *
+     * @param classes the internal names of the classes to keep
+     */
+    public static void shrink(@NotNull InputStream input, @NotNull OutputStream output, @NotNull Set<String> classes) throws IOException {
+        ZipInputStream in = new ZipInputStream(input);
+        ZipOutputStream out = new ZipOutputStream(output);
+
+        ZipEntry entry;
+        while ((entry = in.getNextEntry()) != null) {
+            String name = entry.getName();
+
+            // signatures no longer match once entries are removed
+            if (JarRelocator.isSignature(name)) continue;
+
+            if (name.endsWith(".class") && !name.endsWith("module-info.class") && !classes.contains(className(name))) continue;
+
+            byte[] data = entry.isDirectory() ? new byte[0] : readAll(in);
+
+            if (name.startsWith(SERVICES) && !entry.isDirectory()) {
+                data = filterServices(data, classes);
+                if (data.length == 0) continue;
+            }
+
+            ZipEntry target = new ZipEntry(name);
+            target.setTime(entry.getTime());
+
+            out.putNextEntry(target);
+            out.write(data);
+            out.closeEntry();
+        }
+
+        out.finish();
+    }
+
+    private static String className(String entryName) {
+        String name = entryName.substring(0, entryName.length() - ".class".length());
+
+        // multi-release variants follow their base class
+        if (name.startsWith(VERSIONS)) {
+            int slash = name.indexOf('/', VERSIONS.length());
+            if (slash != -1) return name.substring(slash + 1);
+        }
+
+        return name;
+    }
+
+    private static byte[] filterServices(byte[] data, Set<String> classes) throws IOException {
+        StringBuilder kept = new StringBuilder();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                String implementation = (comment == -1 ? line : line.substring(0, comment)).trim();
+
+                if (!implementation.isEmpty() && classes.contains(implementation.replace('.', '/'))) {
+                    kept.append(implementation).append('\n');
+                }
+            }
+        }
+
+        return kept.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Keyed on the digests the store recorded for the jars, and on the size and modification time of the roots,
+     * so finding a cached result doesn't read every input.
+     */
+    private String key(Collection<Path> jars, Collection<Path> roots, Collection<String> keep) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not find SHA-256 algorithm", e);
+        }
+
+        for (Path jar : jars) {
+            digest.update(this.digest(jar));
+        }
+
+        for (Path root : roots) {
+            if (!Files.isDirectory(root)) {
+                digest.update(root.toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                update(digest, root);
+                continue;
+            }
+
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> stream = Files.walk(root)) {
+                stream.filter(Files::isRegularFile).sorted().forEach(files::add);
+            }
+
+            for (Path file : files) {
+                digest.update(root.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                update(digest, file);
+            }
+        }
+
+        for (String pattern : new TreeSet<>(keep)) {
+            digest.update(pattern.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        return ChecksumAlgorithm.toHex(digest.digest());
+    }
+
+    private byte[] digest(Path jar) throws IOException {
+        String fileName = jar.getFileName().toString();
+
+        byte[] sha256 = this.store.getDigest(fileName, ChecksumAlgorithm.SHA256.getName());
+        if (sha256 == null) {
+            // relocated jars are never verified, hash them once and remember it
+            sha256 = ChecksumAlgorithm.SHA256.digest(Files.readAllBytes(jar));
+            this.store.recordDigests(fileName, Collections.singletonMap(ChecksumAlgorithm.SHA256.getName(), sha256));
+        }
+
+        return sha256;
+    }
+
+    private static void update(MessageDigest digest, Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+        digest.update(ByteBuffer.allocate(16).putLong(attributes.size()).putLong(attributes.lastModifiedTime().toMillis()).array());
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.analysis;
+
+import gg.saki.izon.classloaders.url.MemoryJar;
+import gg.saki.izon.libraries.Library;
+import gg.saki.izon.relocation.Glob;
+import gg.saki.izon.relocation.RelocationMatcher;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Computes which libraries are reachable from a set of entry points, by following class references through the
+ * constant pools of the entry points and of every library class they reach.
+ * <p>
+ * Every class of a root (usually the application's own jar or classes directory) is an entry point. Implementations
+ * registered in {@code META-INF/services} are followed once their service interface is reached.
+ * Classes only loaded by names computed at runtime cannot be seen, {@link Builder#keep(String) keep} those explicitly.
+ */
+public class ReachabilityAnalyzer {
+
+    private static final String SERVICES = "META-INF/services/";
+
+    private final @NotNull List<Path> roots;
+    private final @NotNull Map<Library, Path> libraries;
+    private final @NotNull Set<String> keep;
+    private final boolean keepServices;
+
+    public ReachabilityAnalyzer(@NotNull List<Path> roots, @NotNull Map<Library, Path> libraries, @NotNull Set<String> keep, boolean keepServices) {
+        this.roots = roots;
+        this.libraries = libraries;
+        this.keep = keep;
+        this.keepServices = keepServices;
+    }
+
+    public @NotNull ReachabilityReport analyze() throws IOException {
+        Map<String, Location> classes = new HashMap<>();
+        Map<String, List<String>> services = new HashMap<>();
+        Map<Library, Integer> totals = new LinkedHashMap<>();
+
+        Deque<String> queue = new ArrayDeque<>();
+        Set<String> visited = new HashSet<>();
+
+        for (Path root : this.roots) {
+            for (Location location : locations(root, null)) {
+                if (location.isService()) {
+                    // implementations the application registers itself are entry points
+                    queue.addAll(location.readServices());
+                } else {
+                    classes.put(location.className(), location);
+                    queue.add(location.className());
+                }
+            }
+        }
+
+        for (Map.Entry<Library, Path> entry : this.libraries.entrySet()) {
+            Library library = entry.getKey();
+            RelocationMatcher matcher = library.hasRelocations() ? RelocationMatcher.of(library.getRelocations()) : null;
+
+            int total = 0;
+            for (Location location : locations(entry.getValue(), library)) {
+                if (location.isService()) {
+                    services.computeIfAbsent(location.serviceName(), name -> new ArrayList<>()).addAll(location.readServices());
+                    continue;
+                }
+
+                String name = location.className();
+                classes.putIfAbsent(name, location);
+                total++;
+
+                // the application refers to relocated names, the jar may still use the original ones
+                if (matcher != null) {
+                    classes.putIfAbsent(matcher.remap(name), location);
+                }
+            }
+
+            totals.put(library, total);
+        }
+
+        for (String pattern : this.keep) {
+            Glob glob = Glob.compile(pattern);
+            for (String name : classes.keySet()) {
+                if (glob.matches(name)) queue.add(name);
+            }
+        }
+
+        if (this.keepServices) {
+            services.values().forEach(queue::addAll);
+        }
+
+        Map<Library, Set<String>> reached = new LinkedHashMap<>();
+
+        // resource or native only jars can't be judged by their classes
+        totals.forEach((library, total) -> {
+            if (total == 0) reached.put(library, new HashSet<>());
+        });
+
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            if (!visited.add(name)) continue;
+
+            // service interfaces are often outside of every library (e.g. java/sql/Driver)
+            List<String> implementations = services.get(name);
+            if (implementations != null) {
+                queue.addAll(implementations);
+            }
+
+            Location location = classes.get(name);
+            if (location == null) continue;
+
+            if (location.library != null) {
+                reached.computeIfAbsent(location.library, library -> new HashSet<>()).add(location.className());
+            }
+
+            for (String reference : ClassReferences.of(location.read())) {
+                if (!visited.contains(reference) && (classes.containsKey(reference) || services.containsKey(reference))) {
+                    queue.add(reference);
+                }
+            }
+        }
+
+        return new ReachabilityReport(totals, reached);
+    }
+
+    private static List<Location> locations(Path path, @Nullable Library library) throws IOException {
+        List<Location> locations = new ArrayList<>();
+
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> stream = Files.walk(path)) {
+                for (Path file : (Iterable<Path>) stream.filter(Files::isRegularFile)::iterator) {
+                    String name = path.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                    if (isRelevant(name)) locations.add(new Location(name, library, file, null));
+                }
+            }
+
+            return locations;
+        }
+
+        MemoryJar jar;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            jar = new MemoryJar(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+
+        for (String name : jar.getNames()) {
+            if (isRelevant(name)) locations.add(new Location(name, library, null, jar));
+        }
+
+        return locations;
+    }
+
+    private static boolean isRelevant(String name) {
+        if (name.startsWith(SERVICES)) {
+            return name.length() > SERVICES.length() && !name.endsWith("/");
+        }
+
+        return name.endsWith(".class") && !name.startsWith("META-INF/") && !name.endsWith("module-info.class");
+    }
+
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    private static class Location {
+
+        private final @NotNull String entryName;
+        private final @Nullable Library library;
+        private final @Nullable Path file;
+        private final @Nullable MemoryJar jar;
+
+        private Location(@NotNull String entryName, @Nullable Library library, @Nullable Path file, @Nullable MemoryJar jar) {
+            this.entryName = entryName;
+            this.library = library;
+            this.file = file;
+            this.jar = jar;
+        }
+
+        private boolean isService() {
+            return this.entryName.startsWith(SERVICES);
+        }
+
+        private String className() {
+            return this.entryName.substring(0, this.entryName.length() - ".class".length());
+        }
+
+        private String serviceName() {
+            return this.entryName.substring(SERVICES.length()).replace('.', '/');
+        }
+
+        private byte[] read() throws IOException {
+            if (this.file != null) {
+                return Files.readAllBytes(this.file);
+            }
+
+            return this.jar.getEntry(this.entryName).readAllBytes();
+        }
+
+        private List<String> readServices() throws IOException {
+            List<String> implementations = new ArrayList<>();
+
+            InputStream in = this.file != null ? Files.newInputStream(this.file) : this.jar.getEntry(this.entryName).open();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    String implementation = (comment == -1 ? line : line.substring(0, comment)).trim();
+
+                    if (!implementation.isEmpty()) {
+                        implementations.add(implementation.replace('.', '/'));
+                    }
+                }
+            }
+
+            return implementations;
+        }
+    }
+
+    public static class Builder {
+
+        private final List<Path> roots = new ArrayList<>();
+        private final Map<Library, Path> libraries = new LinkedHashMap<>();
+        private final Set<String> keep = new HashSet<>();
+        private boolean keepServices;
+
+        /**
+         * Adds a jar or classes directory whose classes are all entry points.
+         */
+        public Builder root(@NotNull Path root) {
+            this.roots.add(root);
+            return this;
+        }
+
+        public Builder roots(@NotNull Collection<Path> roots) {
+            this.roots.addAll(roots);
+            return this;
+        }
+
+        /**
+         * Adds a library to analyze, along with its jar.
+         */
+        public Builder library(@NotNull Library library, @NotNull Path jar) {
+            this.libraries.put(library, jar);
+            return this;
+        }
+
+        /**
+         * Adds entry points for classes only loaded reflectively, by binary name (e.g. {@code com.example.Foo})
+         * or as a {@link Glob} (e.g. {@code com.example.**}).
+         */
+        public Builder keep(@NotNull String pattern) {
+            this.keep.add(pattern);
+            return this;
+        }
+
+        public Builder keep(@NotNull Collection<String> patterns) {
+            this.keep.addAll(patterns);
+            return this;
+        }
+
+        /**
+         * Makes every implementation registered in a library's {@code META-INF/services} an entry point,
+         * not just the ones whose service interface is reached.
+         */
+        public Builder keepServices(boolean keepServices) {
+            this.keepServices = keepServices;
+            return this;
+        }
+
+        public ReachabilityAnalyzer build() {
+            return new ReachabilityAnalyzer(Collections.unmodifiableList(new ArrayList<>(this.roots)), Collections.unmodifiableMap(new LinkedHashMap<>(this.libraries)), Collections.unmodifiableSet(new HashSet<>(this.keep)), this.keepServices);
+        }
+    }
+}
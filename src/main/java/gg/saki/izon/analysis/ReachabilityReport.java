@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.analysis;
+
+import gg.saki.izon.libraries.Library;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The outcome of a {@link ReachabilityAnalyzer} run.
+ */
+public class ReachabilityReport {
+
+    private final @NotNull Map<Library, Integer> totals;
+    private final @NotNull Map<Library, Set<String>> reached;
+
+    public ReachabilityReport(@NotNull Map<Library, Integer> totals, @NotNull Map<Library, Set<String>> reached) {
+        this.totals = Collections.unmodifiableMap(totals);
+        this.reached = Collections.unmodifiableMap(reached);
+    }
+
+    public boolean isReachable(@NotNull Library library) {
+        return this.reached.containsKey(library);
+    }
+
+    /**
+     * @return the reachable libraries, in the order they were analyzed
+     */
+    public @NotNull List<Library> getReachable() {
+        List<Library> reachable = new ArrayList<>();
+        for (Library library : this.totals.keySet()) {
+            if (this.isReachable(library)) reachable.add(library);
+        }
+
+        return reachable;
+    }
+
+    /**
+     * @return the libraries none of whose classes can be reached, which do not need to be downloaded.
+     * Libraries without any classes are always considered reachable
+     */
+    public @NotNull List<Library> getUnreachable() {
+        List<Library> unreachable = new ArrayList<>();
+        for (Library library : this.totals.keySet()) {
+            if (!this.isReachable(library)) unreachable.add(library);
+        }
+
+        return unreachable;
+    }
+
+    public int getReachedClasses(@NotNull Library library) {
+        return this.getReachedClassNames(library).size();
+    }
+
+    /**
+     * @return the internal names (e.g. {@code com/example/Foo}) of the library's reachable classes, as named inside its jar
+     */
+    public @NotNull Set<String> getReachedClassNames(@NotNull Library library) {
+        Set<String> names = this.reached.get(library);
+        return names == null ? Collections.emptySet() : Collections.unmodifiableSet(names);
+    }
+
+    public int getTotalClasses(@NotNull Library library) {
+        return this.totals.getOrDefault(library, 0);
+    }
+}
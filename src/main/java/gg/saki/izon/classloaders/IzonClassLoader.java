@@ -24,6 +24,7 @@
 
 package gg.saki.izon.classloaders;
 
+import gg.saki.izon.classloaders.impl.InstrumentationClassLoader;
 import gg.saki.izon.classloaders.impl.ReflectionClassLoader;
 import gg.saki.izon.classloaders.impl.UnsafeClassLoader;
 import gg.saki.izon.utils.IzonException;
@@ -33,23 +34,49 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Objects;
 
 public abstract class IzonClassLoader {
 
-    private final @NotNull URLClassLoader actualLoader;
+    private final @NotNull ClassLoader actualLoader;
 
     public IzonClassLoader(@NotNull URLClassLoader actualLoader) {
         this.actualLoader = actualLoader;
     }
 
+    /**
+     * For implementations that append to a class loader that is not a {@link URLClassLoader},
+     * they have to override {@link #getActualLoader()}.
+     */
+    protected IzonClassLoader(@NotNull ClassLoader loader) {
+        this.actualLoader = loader;
+    }
+
     public abstract void addURL(@NotNull URL url) throws IzonException;
 
+    /**
+     * Adds several URLs at once. Implementations that can mutate the class path in one step override this.
+     */
+    public void addURLs(@NotNull Collection<URL> urls) throws IzonException {
+        for (URL url : urls) {
+            this.addURL(url);
+        }
+    }
+
     public void addPath(@NotNull Path path) throws MalformedURLException {
         this.addURL(path.toUri().toURL());
     }
 
     public @NotNull URLClassLoader getActualLoader() {
+        return (URLClassLoader) this.actualLoader;
+    }
+
+    /**
+     * @return the class loader libraries are appended to, which is not a {@link URLClassLoader} for every
+     * implementation (e.g. the Java 9+ application class loader)
+     */
+    public @NotNull ClassLoader getLoader() {
         return this.actualLoader;
     }
 
@@ -79,4 +106,21 @@ public abstract class IzonClassLoader {
 
         throw new IzonException("Could not find a supported class loader");
     }
+
+    /**
+     * Also supports the Java 9+ application class loader, which is not a {@link URLClassLoader}, through instrumentation.
+     *
+     * @param workDirectory where the instrumentation backend writes the jars it appends batches through
+     */
+    public static IzonClassLoader create(@NotNull ClassLoader actualLoader, @NotNull Path workDirectory) {
+        if (actualLoader instanceof URLClassLoader) {
+            return create((URLClassLoader) actualLoader);
+        }
+
+        if (actualLoader == ClassLoader.getSystemClassLoader() && InstrumentationClassLoader.isSupported()) {
+            return new InstrumentationClassLoader(actualLoader, workDirectory);
+        }
+
+        throw new IzonException("ClassLoader must be an instance of URLClassLoader, or the system class loader with instrumentation available");
+    }
 }
@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders;
+
+import gg.saki.izon.libraries.Library;
+import gg.saki.izon.libraries.Relocation;
+import gg.saki.izon.utils.IzonException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tracks which libraries have been added to which class loader, across every {@link gg.saki.izon.Izon} instance in the JVM.
+ * <p>
+ * Libraries are identified by their coordinates without the version (group, artifact and classifier), so loading the
+ * same version twice is a no-op, while loading a different version (or the same version with another checksum or
+ * other relocations) is a conflict. Load differently relocated copies of an artifact into isolated class loaders.
+ * Class loaders are held weakly, so unloading one also forgets what was loaded into it.
+ */
+public final class LibraryRegistry {
+
+    private static final Map<ClassLoader, Map<Key, Record>> LOADED = new WeakHashMap<>();
+
+    private LibraryRegistry() {
+        // seal class to prevent instantiation
+    }
+
+    /**
+     * Claims a library for a class loader. If another thread is loading the same library, waits for it to finish first.
+     *
+     * @return null if the caller now owns the claim and must load the library, then call {@link #complete},
+     * or {@link Library.Status#ALREADY_LOADED} if the same library is already loaded
+     * @throws IzonException with {@link Library.Status#VERSION_CONFLICT} if another version of it is loaded
+     */
+    public static @Nullable Library.Status claim(@NotNull IzonClassLoader classLoader, @NotNull Library library) throws IzonException {
+        Key key = new Key(library);
+
+        while (true) {
+            Record record = new Record(library);
+            Record existing;
+
+            synchronized (LOADED) {
+                existing = LOADED.computeIfAbsent(classLoader.getLoader(), loader -> new HashMap<>()).putIfAbsent(key, record);
+            }
+
+            if (existing == null) {
+                return null;
+            }
+
+            if (!existing.matches(library)) {
+                throw new IzonException(library.getGroupId() + ':' + library.getArtifactId() + ':' + existing.version + " is already loaded, "
+                        + (existing.version.equals(Record.version(library)) ? "with another checksum or relocations" : "cannot also load " + Record.version(library)),
+                        library, Library.Status.VERSION_CONFLICT);
+            }
+
+            // a failed load drops its record, so the next attempt claims it again
+            if (existing.result.join().isSuccess()) {
+                return Library.Status.ALREADY_LOADED;
+            }
+        }
+    }
+
+    /**
+     * Releases a claim taken with {@link #claim}. Failed loads are forgotten so they can be retried.
+     */
+    public static void complete(@NotNull IzonClassLoader classLoader, @NotNull Library library, @NotNull Library.Status status) {
+        Key key = new Key(library);
+        Record record;
+
+        synchronized (LOADED) {
+            Map<Key, Record> loaded = LOADED.get(classLoader.getLoader());
+            record = loaded == null ? null : loaded.get(key);
+
+            if (record != null && !status.isSuccess()) {
+                loaded.remove(key);
+            }
+        }
+
+        if (record != null) {
+            record.result.complete(status);
+        }
+    }
+
+    /**
+     * @return the version of the library loaded into the class loader, or null if none is
+     */
+    public static @Nullable String getLoadedVersion(@NotNull IzonClassLoader classLoader, @NotNull Library library) {
+        synchronized (LOADED) {
+            Map<Key, Record> loaded = LOADED.get(classLoader.getLoader());
+            Record record = loaded == null ? null : loaded.get(new Key(library));
+
+            return record == null ? null : record.version;
+        }
+    }
+
+    private static final class Key {
+
+        private final String groupId;
+        private final String artifactId;
+        private final @Nullable String classifier;
+
+        private Key(Library library) {
+            this.groupId = library.getGroupId();
+            this.artifactId = library.getArtifactId();
+            this.classifier = library.getClassifier();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            return this.groupId.equals(that.groupId) && this.artifactId.equals(that.artifactId) && Objects.equals(this.classifier, that.classifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.groupId, this.artifactId, this.classifier);
+        }
+    }
+
+    private static final class Record {
+
+        private final String version;
+        private final byte @Nullable [] sha256;
+        private final Set<Relocation> relocations;
+        private final CompletableFuture<Library.Status> result = new CompletableFuture<>();
+
+        private Record(Library library) {
+            this.version = version(library);
+            this.sha256 = library.getSha256();
+            this.relocations = relocations(library);
+        }
+
+        private boolean matches(Library library) {
+            if (!this.version.equals(version(library)) || !this.relocations.equals(relocations(library))) return false;
+
+            return this.sha256 == null || library.getSha256() == null || Arrays.equals(this.sha256, library.getSha256());
+        }
+
+        private static String version(Library library) {
+            return library.getSnapshotVersion() != null ? library.getSnapshotVersion() : library.getVersion();
+        }
+
+        private static Set<Relocation> relocations(Library library) {
+            return library.hasRelocations() ? new HashSet<>(library.getRelocations()) : Collections.emptySet();
+        }
+    }
+}
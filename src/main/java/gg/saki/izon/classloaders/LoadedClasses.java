@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders;
+
+import gg.saki.izon.agent.IzonAgent;
+import gg.saki.izon.utils.IzonException;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Finds out which classes a class loader has already loaded, without loading anything.
+ * <p>
+ * Uses instrumentation when {@link IzonAgent} is available, and falls back to {@code ClassLoader#findLoadedClass},
+ * which is only accessible on Java 8 to 15 or with {@code --add-opens java.base/java.lang=ALL-UNNAMED}. Elsewhere
+ * the reflective lookup fails once, quietly, and {@link #isSupported()} returns false.
+ */
+public final class LoadedClasses {
+
+    private static final Method FIND_LOADED_CLASS_METHOD;
+
+    static {
+        Method findLoadedClassMethod;
+
+        try {
+            findLoadedClassMethod = ClassLoader.class.getDeclaredMethod("findLoadedClass", String.class);
+            findLoadedClassMethod.setAccessible(true);
+        } catch (Throwable t) {
+            // InaccessibleObjectException on Java 16+ without java.lang opened
+            findLoadedClassMethod = null;
+        }
+
+        FIND_LOADED_CLASS_METHOD = findLoadedClassMethod;
+    }
+
+    private LoadedClasses() {
+        // seal class to prevent instantiation
+    }
+
+    /**
+     * @param names binary class names, e.g. {@code com.example.Foo}
+     * @return the given names that the class loader has loaded, in their original order
+     * @throws IzonException if loaded classes can't be inspected, check {@link #isSupported()} first
+     */
+    public static @NotNull Set<String> filter(@NotNull ClassLoader loader, @NotNull Collection<String> names) throws IzonException {
+        Set<String> loaded = new LinkedHashSet<>();
+
+        Instrumentation instrumentation = IzonAgent.getInstrumentation();
+        if (instrumentation != null) {
+            Set<String> initiated = new HashSet<>();
+            for (Class<?> clazz : instrumentation.getInitiatedClasses(loader)) {
+                initiated.add(clazz.getName());
+            }
+
+            for (String name : names) {
+                if (initiated.contains(name)) loaded.add(name);
+            }
+
+            return loaded;
+        }
+
+        if (FIND_LOADED_CLASS_METHOD == null) {
+            throw new IzonException("Could not inspect loaded classes, attach the Izon agent or open java.lang to Izon");
+        }
+
+        try {
+            for (String name : names) {
+                if (FIND_LOADED_CLASS_METHOD.invoke(loader, name) != null) loaded.add(name);
+            }
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IzonException(e);
+        }
+
+        return loaded;
+    }
+
+    public static boolean isSupported() {
+        return FIND_LOADED_CLASS_METHOD != null || IzonAgent.getInstrumentation() != null;
+    }
+}
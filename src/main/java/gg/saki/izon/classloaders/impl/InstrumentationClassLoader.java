@@ -0,0 +1,251 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders.impl;
+
+import gg.saki.izon.agent.IzonAgent;
+import gg.saki.izon.classloaders.IzonClassLoader;
+import gg.saki.izon.libraries.Library;
+import gg.saki.izon.utils.IzonException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.instrument.Instrumentation;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Appends jars to the system class loader through {@link Instrumentation}, which works on Java 9+ where the
+ * application class loader is no longer a {@link java.net.URLClassLoader}.
+ * <p>
+ * Instrumentation only accepts local {@link JarFile}s, so other URLs (the {@code izon://} sources of in-memory, lazy,
+ * relocated on define or indexed libraries) are added to a child of the system class loader instead, see {@link #getActualLoader()}.
+ * That child is shared by every instance, like the system class loader itself, so a library registered as loaded by
+ * one instance is visible through all of them.
+ */
+public class InstrumentationClassLoader extends IzonClassLoader {
+
+    private static final String BATCH_PREFIX = "batch-";
+    private static final String BATCH_MARKER = "META-INF/izon-batch/";
+
+    // batch jars left behind by a crashed process
+    private static final long STALE_BATCH_AGE = TimeUnit.DAYS.toMillis(1);
+
+    private static final SourceClassLoader SOURCE_LOADER = new SourceClassLoader(ClassLoader.getSystemClassLoader());
+
+    private final @NotNull Path batchDirectory;
+    private final @NotNull Queue<Path> undeletedBatches = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param batchDirectory where the jars that batches are appended through are written, each is deleted once appended
+     */
+    public InstrumentationClassLoader(@NotNull ClassLoader actualLoader, @NotNull Path batchDirectory) {
+        super(actualLoader);
+
+        if (actualLoader != ClassLoader.getSystemClassLoader()) {
+            throw new IzonException("Instrumentation can only append to the system class loader");
+        }
+
+        this.batchDirectory = batchDirectory;
+    }
+
+    /**
+     * The child of the system class loader that serves the URLs instrumentation cannot append. It also sees every
+     * appended jar, load classes through it to reach libraries that are not stored as local jars.
+     */
+    @Override
+    public @NotNull URLClassLoader getActualLoader() {
+        return SOURCE_LOADER;
+    }
+
+    @Override
+    public void addURL(@NotNull URL url) throws IzonException {
+        if (!"file".equals(url.getProtocol())) {
+            SOURCE_LOADER.addURL(url);
+            return;
+        }
+
+        try {
+            append(toFile(url));
+        } catch (IOException e) {
+            throw new IzonException("Failed to append " + url, e, null, Library.Status.LOAD_FAILED);
+        }
+    }
+
+    /**
+     * Appends the whole batch at once, through a single jar whose manifest {@code Class-Path} lists every local jar.
+     */
+    @Override
+    public void addURLs(@NotNull Collection<URL> urls) throws IzonException {
+        List<URL> files = new ArrayList<>(urls.size());
+        for (URL url : urls) {
+            if ("file".equals(url.getProtocol())) {
+                files.add(url);
+            } else {
+                SOURCE_LOADER.addURL(url);
+            }
+        }
+
+        if (files.size() <= 1) {
+            super.addURLs(files);
+            return;
+        }
+
+        StringBuilder classPath = new StringBuilder();
+        for (URL url : files) {
+            if (classPath.length() > 0) {
+                classPath.append(' ');
+            }
+
+            classPath.append(toFile(url).toURI());
+        }
+
+        try {
+            Files.createDirectories(this.batchDirectory);
+            this.deleteBatches();
+
+            Path batch = Files.createTempFile(this.batchDirectory, BATCH_PREFIX, ".jar");
+            String marker = BATCH_MARKER + batch.getFileName();
+
+            try {
+                Manifest manifest = new Manifest();
+                manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+                manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath.toString());
+
+                try (OutputStream out = Files.newOutputStream(batch); JarOutputStream jar = new JarOutputStream(out, manifest)) {
+                    jar.putNextEntry(new JarEntry(marker));
+                    jar.closeEntry();
+                }
+
+                append(batch.toFile());
+
+                // looking up the marker makes the class loader open the batch jar and read its Class-Path,
+                // after which the file itself is no longer needed
+                this.getLoader().getResource(marker);
+            } finally {
+                this.undeletedBatches.add(batch);
+                this.deleteBatches();
+            }
+        } catch (IOException e) {
+            throw new IzonException("Failed to append " + files.size() + " jars", e, null, Library.Status.LOAD_FAILED);
+        }
+    }
+
+    /**
+     * Deletes the batch jars that were appended, plus stale ones of crashed processes.
+     * Jars the system class loader still holds open (on Windows) are retried on the next batch.
+     */
+    private void deleteBatches() throws IOException {
+        for (int i = this.undeletedBatches.size(); i > 0; i--) {
+            Path batch = this.undeletedBatches.poll();
+            if (batch == null) break;
+
+            try {
+                Files.deleteIfExists(batch);
+            } catch (IOException e) {
+                this.undeletedBatches.add(batch);
+            }
+        }
+
+        long stale = System.currentTimeMillis() - STALE_BATCH_AGE;
+        try (DirectoryStream<Path> batches = Files.newDirectoryStream(this.batchDirectory, BATCH_PREFIX + "*.jar")) {
+            for (Path batch : batches) {
+                try {
+                    if (Files.getLastModifiedTime(batch).toMillis() < stale) {
+                        Files.delete(batch);
+                    }
+                } catch (IOException ignored) {
+                    // still open, or deleted by another process
+                }
+            }
+        }
+    }
+
+    /**
+     * Instrumentation only reads the name of the jar, so it is closed right away instead of holding a handle until GC.
+     */
+    private static void append(File file) throws IOException {
+        try (JarFile jar = new JarFile(file)) {
+            instrumentation().appendToSystemClassLoaderSearch(jar);
+        }
+    }
+
+    private static File toFile(URL url) {
+        try {
+            return Paths.get(url.toURI()).toFile();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IzonException("Invalid jar URL " + url, e, null, Library.Status.LOAD_FAILED);
+        }
+    }
+
+    private static Instrumentation instrumentation() {
+        Instrumentation instrumentation = IzonAgent.getInstrumentation();
+        if (instrumentation == null) {
+            throw new IzonException("Instrumentation is not available", null, Library.Status.LOAD_FAILED);
+        }
+
+        return instrumentation;
+    }
+
+    /**
+     * @return whether instrumentation is available, attaching the agent to this JVM if needed
+     */
+    public static boolean isSupported() {
+        return IzonAgent.getInstrumentation() != null || IzonAgent.attach() != null;
+    }
+
+    private static final class SourceClassLoader extends URLClassLoader {
+
+        static {
+            ClassLoader.registerAsParallelCapable();
+        }
+
+        private SourceClassLoader(ClassLoader parent) {
+            super(new URL[0], parent);
+        }
+
+        @Override
+        protected void addURL(URL url) {
+            super.addURL(url);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders.impl;
+
+import gg.saki.izon.classloaders.IzonClassLoader;
+import gg.saki.izon.classloaders.url.IzonURLHandler;
+import gg.saki.izon.classloaders.url.JarSource;
+import gg.saki.izon.classloaders.url.MemoryJar;
+import gg.saki.izon.classloaders.url.RelocatingJarSource;
+import gg.saki.izon.relocation.JarRelocator;
+import gg.saki.izon.utils.IzonException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Wraps another {@link IzonClassLoader} so the jars added through it are relocated lazily,
+ * one class at a time as they get defined, instead of being rewritten upfront.
+ */
+public class RelocatingClassLoader extends IzonClassLoader {
+
+    private final @NotNull IzonClassLoader delegate;
+    private final @NotNull JarRelocator relocator;
+    private final long cacheSize;
+
+    /**
+     * @param cacheSize the maximum number of remapped bytes each added jar keeps in memory
+     */
+    public RelocatingClassLoader(@NotNull IzonClassLoader delegate, @NotNull JarRelocator relocator, long cacheSize) {
+        super(delegate.getLoader());
+        this.delegate = delegate;
+        this.relocator = relocator;
+        this.cacheSize = cacheSize;
+    }
+
+    @Override
+    public @NotNull URLClassLoader getActualLoader() {
+        return this.delegate.getActualLoader();
+    }
+
+    @Override
+    public void addURL(@NotNull URL url) throws IzonException {
+        this.delegate.addURL(this.wrap(this.open(url)));
+    }
+
+    /**
+     * Registers a relocating view of the given jar without adding it to the class loader.
+     *
+     * @return the URL serving the relocated jar
+     */
+    public @NotNull URL wrap(@NotNull MemoryJar jar) {
+        return IzonURLHandler.register(new RelocatingJarSource(jar, this.relocator, this.cacheSize), this.getActualLoader());
+    }
+
+    public @NotNull IzonClassLoader getDelegate() {
+        return this.delegate;
+    }
+
+    /**
+     * Opens the jar behind a local file or in-memory {@code izon://} URL.
+     */
+    private MemoryJar open(URL url) {
+        JarSource source = IzonURLHandler.getSource(url);
+        if (source instanceof MemoryJar) {
+            return (MemoryJar) source;
+        }
+
+        if (!"file".equals(url.getProtocol())) {
+            throw new IzonException("Cannot relocate " + url);
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+            return new MemoryJar(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | URISyntaxException e) {
+            throw new IzonException("Failed to open " + url, e);
+        }
+    }
+}
@@ -85,6 +85,19 @@ public class UnsafeClassLoader extends IzonClassLoader {
         }
     }
 
+    @Override
+    public void addURLs(@NotNull Collection<URL> urls) throws IzonException {
+        if (this.unopenedURLs == null || this.pathURLs == null) {
+            throw new IzonException("Could not find unopenedUrls or path fields");
+        }
+
+        // one lock for the whole batch instead of one per url
+        synchronized (this.unopenedURLs) {
+            this.unopenedURLs.addAll(urls);
+            this.pathURLs.addAll(urls);
+        }
+    }
+
     private Object fetchField(Class<?> clazz, Object object, String name) throws NoSuchFieldException {
         Field field = clazz.getDeclaredField(name);
         long offset = UNSAFE.objectFieldOffset(field);
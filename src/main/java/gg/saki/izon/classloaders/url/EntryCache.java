@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders.url;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of entry contents, bounded by the total number of bytes it holds.
+ */
+final class EntryCache {
+
+    private final long capacity;
+    private final @NotNull LinkedHashMap<MemoryJar.Entry, byte[]> entries = new LinkedHashMap<>(16, 0.75F, true);
+
+    private long size;
+
+    EntryCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    synchronized byte @Nullable [] get(@NotNull MemoryJar.Entry entry) {
+        return this.entries.get(entry);
+    }
+
+    synchronized void put(@NotNull MemoryJar.Entry entry, byte @NotNull [] data) {
+        // never let a single oversized entry flush everything else
+        if (data.length > this.capacity) return;
+
+        byte[] previous = this.entries.put(entry, data);
+        if (previous != null) {
+            this.size -= previous.length;
+        }
+
+        this.size += data.length;
+
+        Iterator<Map.Entry<MemoryJar.Entry, byte[]>> iterator = this.entries.entrySet().iterator();
+        while (this.size > this.capacity && iterator.hasNext()) {
+            this.size -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    synchronized long size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders.url;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves many stored jars through a single {@code izon://} URL, dispatching each lookup by package.
+ * <p>
+ * A class loader probes its URLs one after another, so a miss normally costs a lookup in every jar.
+ * Here a lookup is one hash lookup for the package, followed only by the jars that actually contain it.
+ * Jars are memory-mapped the first time one of their packages is requested.
+ * <p>
+ * Since one URL can only serve one copy of an entry, the first jar added wins for duplicate resources,
+ * except for {@code META-INF/services} files, which are merged.
+ */
+public class IndexedJarSource implements JarSource {
+
+    private final @NotNull Map<String, List<Jar>> packages = new ConcurrentHashMap<>();
+    private final @NotNull Map<String, List<Jar>> services = new ConcurrentHashMap<>();
+
+    /**
+     * @param packages the directories holding the jar's entries, see {@link #packageOf(String)}
+     * @param services the names of the service files in the jar
+     */
+    public synchronized void add(@NotNull Path file, @NotNull Collection<String> packages, @NotNull Collection<String> services) {
+        Jar jar = new Jar(file);
+
+        for (String pkg : packages) {
+            append(this.packages, pkg, jar);
+        }
+
+        for (String service : services) {
+            append(this.services, service, jar);
+        }
+    }
+
+    @Override
+    public @Nullable MemoryJar.Entry getEntry(@NotNull String name) throws IOException {
+        List<Jar> providers = this.services.get(name);
+        if (providers != null && providers.size() > 1) {
+            return this.mergeServices(name, providers);
+        }
+
+        List<Jar> candidates = this.packages.get(packageOf(name));
+        if (candidates == null) return null;
+
+        for (Jar jar : candidates) {
+            MemoryJar.Entry entry = jar.open().getEntry(name);
+            if (entry != null) return entry;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the number of packages indexed
+     */
+    public int size() {
+        return this.packages.size();
+    }
+
+    private MemoryJar.Entry mergeServices(String name, List<Jar> providers) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (Jar jar : providers) {
+            MemoryJar.Entry entry = jar.open().getEntry(name);
+            if (entry == null) continue;
+
+            out.write(entry.readAllBytes());
+            out.write('\n');
+        }
+
+        return MemoryJar.Entry.of(name, out.toByteArray());
+    }
+
+    /**
+     * @return the directory part of an entry name, e.g. {@code com/example} for {@code com/example/Foo.class}
+     */
+    public static @NotNull String packageOf(@NotNull String name) {
+        int slash = name.lastIndexOf('/');
+        return slash == -1 ? "" : name.substring(0, slash);
+    }
+
+    private static void append(Map<String, List<Jar>> map, String key, Jar jar) {
+        // copy on write, lookups never lock
+        List<Jar> existing = map.get(key);
+        List<Jar> jars = new ArrayList<>(existing == null ? 1 : existing.size() + 1);
+        if (existing != null) {
+            jars.addAll(existing);
+        }
+
+        jars.add(jar);
+        map.put(key, Collections.unmodifiableList(jars));
+    }
+
+    private static final class Jar {
+
+        private final Path file;
+        private volatile MemoryJar jar;
+
+        private Jar(Path file) {
+            this.file = file;
+        }
+
+        private MemoryJar open() throws IOException {
+            MemoryJar jar = this.jar;
+            if (jar != null) return jar;
+
+            synchronized (this) {
+                if (this.jar == null) {
+                    try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+                        this.jar = new MemoryJar(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                    }
+                }
+
+                return this.jar;
+            }
+        }
+    }
+}
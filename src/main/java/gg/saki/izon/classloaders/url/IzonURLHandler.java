@@ -0,0 +1,237 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders.url;
+
+import gg.saki.izon.utils.IzonException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves {@link JarSource}s through {@code izon://<id>/} URLs.
+ * <p>
+ * The URLs end with a slash, so {@link java.net.URLClassLoader} treats them as plain resource
+ * roots and asks this handler for every entry directly instead of copying the jar to a temp file.
+ */
+public class IzonURLHandler extends URLStreamHandler {
+
+    public static final String PROTOCOL = "izon";
+
+    private static final IzonURLHandler INSTANCE = new IzonURLHandler();
+
+    private static final Map<String, JarSource> SOURCES = new ConcurrentHashMap<>();
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    // class loaders that own registered sources, enqueued once collected
+    private static final Set<Owner> OWNERS = ConcurrentHashMap.newKeySet();
+    private static final ReferenceQueue<ClassLoader> COLLECTED = new ReferenceQueue<>();
+
+    private IzonURLHandler() {
+        // seal class to prevent external instantiation
+    }
+
+    /**
+     * Registers a source until it is {@link #unregister(URL) unregistered}.
+     */
+    public static @NotNull URL register(@NotNull JarSource source) {
+        expungeCollected();
+
+        String id = Long.toString(COUNTER.incrementAndGet());
+
+        try {
+            URL url = new URL(PROTOCOL, id, -1, "/", INSTANCE);
+            SOURCES.put(id, source);
+            return url;
+        } catch (MalformedURLException e) {
+            throw new IzonException(e);
+        }
+    }
+
+    /**
+     * Registers a source that stays registered for as long as {@code owner}, the class loader its URL is added to,
+     * is reachable, so the sources (and buffers) of discarded class loaders are released along with them.
+     */
+    public static @NotNull URL register(@NotNull JarSource source, @NotNull ClassLoader owner) {
+        URL url = register(source);
+        OWNERS.add(new Owner(owner, url.getHost()));
+        return url;
+    }
+
+    public static void unregister(@NotNull URL url) {
+        if (PROTOCOL.equals(url.getProtocol())) {
+            String id = url.getHost();
+
+            SOURCES.remove(id);
+            OWNERS.removeIf(owner -> owner.id.equals(id));
+        }
+    }
+
+    private static void expungeCollected() {
+        for (Reference<? extends ClassLoader> reference; (reference = COLLECTED.poll()) != null; ) {
+            Owner owner = (Owner) reference;
+
+            OWNERS.remove(owner);
+            SOURCES.remove(owner.id);
+        }
+    }
+
+    public static @Nullable JarSource getSource(@NotNull URL url) {
+        return PROTOCOL.equals(url.getProtocol()) ? SOURCES.get(url.getHost()) : null;
+    }
+
+    @Override
+    protected URLConnection openConnection(URL url) throws IOException {
+        JarSource source = SOURCES.get(url.getHost());
+        if (source == null) {
+            throw new FileNotFoundException("No jar source registered for " + url);
+        }
+
+        String path = url.getPath();
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+
+        return new Connection(url, source, decode(path));
+    }
+
+    private static String decode(String path) throws MalformedURLException {
+        if (path.indexOf('%') == -1) return path;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+
+            if (c == '%') {
+                int high = i + 2 < path.length() ? Character.digit(path.charAt(i + 1), 16) : -1;
+                int low = high != -1 ? Character.digit(path.charAt(i + 2), 16) : -1;
+
+                if (low == -1) {
+                    throw new MalformedURLException("Invalid escape sequence in " + path);
+                }
+
+                out.write(high << 4 | low);
+                i += 2;
+            } else {
+                byte[] bytes = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static final class Owner extends WeakReference<ClassLoader> {
+
+        private final String id;
+
+        private Owner(ClassLoader owner, String id) {
+            super(owner, COLLECTED);
+            this.id = id;
+        }
+    }
+
+    private static class Connection extends URLConnection {
+
+        private final JarSource source;
+        private final String name;
+
+        private MemoryJar.Entry entry;
+
+        private Connection(URL url, JarSource source, String name) {
+            super(url);
+            this.source = source;
+            this.name = name;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (this.connected) return;
+
+            this.entry = this.name.isEmpty() ? null : this.source.getEntry(this.name);
+            if (this.entry == null) {
+                throw new MissingEntryException(this.url.toString());
+            }
+
+            this.connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            this.connect();
+            return this.entry.open();
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            try {
+                this.connect();
+            } catch (IOException e) {
+                return -1;
+            }
+
+            return this.entry.getSize();
+        }
+
+        @Override
+        public int getContentLength() {
+            long length = this.getContentLengthLong();
+            return length > Integer.MAX_VALUE ? -1 : (int) length;
+        }
+    }
+
+    /**
+     * Class loaders probe every class path entry and expect misses to be thrown,
+     * so skip filling in a stack trace nobody will look at.
+     */
+    private static class MissingEntryException extends FileNotFoundException {
+
+        private static final long serialVersionUID = 2791043659813350318L;
+
+        private MissingEntryException(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders.url;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A {@link JarSource} that only resolves its jar the first time an entry from one of its packages is requested.
+ * <p>
+ * Lookups outside of the declared packages are answered immediately without resolving anything.
+ */
+public class LazyJarSource implements JarSource {
+
+    private final @NotNull List<String> prefixes;
+    private final @NotNull Supplier<? extends JarSource> loader;
+
+    private volatile @Nullable JarSource delegate;
+    private volatile @Nullable RuntimeException failure;
+
+    public LazyJarSource(@NotNull Collection<String> packages, @NotNull Supplier<? extends JarSource> loader) {
+        List<String> prefixes = new ArrayList<>(packages.size());
+        for (String pkg : packages) {
+            String prefix = pkg.replace("{}", ".").replace('.', '/');
+            prefixes.add(prefix.endsWith("/") ? prefix : prefix + '/');
+        }
+
+        this.prefixes = Collections.unmodifiableList(prefixes);
+        this.loader = loader;
+    }
+
+    @Override
+    public @Nullable MemoryJar.Entry getEntry(@NotNull String name) throws IOException {
+        if (!this.provides(name)) {
+            return null;
+        }
+
+        return this.resolve().getEntry(name);
+    }
+
+    public boolean provides(@NotNull String name) {
+        for (String prefix : this.prefixes) {
+            if (name.startsWith(prefix)) return true;
+        }
+
+        return false;
+    }
+
+    public boolean isResolved() {
+        return this.delegate != null;
+    }
+
+    public @NotNull JarSource resolve() throws IOException {
+        JarSource delegate = this.delegate;
+        if (delegate != null) return delegate;
+
+        synchronized (this) {
+            if (this.delegate != null) return this.delegate;
+
+            // don't retry a failed download on every class lookup
+            if (this.failure != null) {
+                throw new IOException("Lazy library failed to load", this.failure);
+            }
+
+            try {
+                this.delegate = delegate = this.loader.get();
+            } catch (RuntimeException e) {
+                this.failure = e;
+                throw new IOException("Lazy library failed to load", e);
+            }
+
+            return delegate;
+        }
+    }
+
+    public @NotNull Collection<String> getPrefixes() {
+        return this.prefixes;
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders.url;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A jar backed by a {@link ByteBuffer} (usually direct or memory-mapped).
+ * <p>
+ * The central directory is parsed once into a hash index, so entry lookups are O(1)
+ * and entry data is read straight from the buffer without touching the disk.
+ */
+public class MemoryJar implements JarSource {
+
+    private static final int END_HEADER = 0x06054b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int LOCAL_HEADER = 0x04034b50;
+
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    // some VMs reserve header words in arrays
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final @NotNull ByteBuffer buffer;
+    private final @NotNull Map<String, Entry> entries;
+
+    public MemoryJar(@NotNull ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.entries = Collections.unmodifiableMap(this.readCentralDirectory());
+    }
+
+    @Override
+    public @Nullable Entry getEntry(@NotNull String name) {
+        return this.entries.get(name);
+    }
+
+    public @NotNull Collection<String> getNames() {
+        return this.entries.keySet();
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public @NotNull ByteBuffer getBuffer() {
+        return this.buffer.duplicate();
+    }
+
+    private Map<String, Entry> readCentralDirectory() throws IOException {
+        ByteBuffer buf = this.buffer;
+        int limit = buf.limit();
+
+        int end = -1;
+        for (int i = limit - END_HEADER_SIZE; i >= Math.max(0, limit - END_HEADER_SIZE - MAX_COMMENT_SIZE); i--) {
+            if (buf.getInt(i) == END_HEADER) {
+                end = i;
+                break;
+            }
+        }
+
+        if (end == -1) {
+            throw new ZipException("Could not find end of central directory");
+        }
+
+        int total = buf.getShort(end + 10) & 0xFFFF;
+        long offset = buf.getInt(end + 16) & 0xFFFFFFFFL;
+
+        if (total == 0xFFFF || offset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives are not supported");
+        }
+
+        if (offset > end) {
+            throw new ZipException("Invalid central directory offset " + offset);
+        }
+
+        Map<String, Entry> entries = new HashMap<>(total * 4 / 3 + 1);
+
+        int position = (int) offset;
+        for (int i = 0; i < total; i++) {
+            if (position + 46 > limit || buf.getInt(position) != CENTRAL_HEADER) {
+                throw new ZipException("Invalid central directory header at " + position);
+            }
+
+            int method = buf.getShort(position + 10) & 0xFFFF;
+            long compressedSize = buf.getInt(position + 20) & 0xFFFFFFFFL;
+            long size = buf.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = buf.getShort(position + 28) & 0xFFFF;
+            int extraLength = buf.getShort(position + 30) & 0xFFFF;
+            int commentLength = buf.getShort(position + 32) & 0xFFFF;
+            long localOffset = buf.getInt(position + 42) & 0xFFFFFFFFL;
+
+            if (method != STORED && method != DEFLATED) {
+                throw new ZipException("Unsupported compression method " + method);
+            }
+
+            // the name, extra field and comment must all lie within the buffer
+            long next = position + 46L + nameLength + extraLength + commentLength;
+            if (next > limit) {
+                throw new ZipException("Truncated central directory header at " + position);
+            }
+
+            byte[] nameBytes = new byte[nameLength];
+            ByteBuffer nameBuffer = buf.duplicate();
+            nameBuffer.position(position + 46);
+            nameBuffer.get(nameBytes);
+
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+            entries.put(name, new Entry(this, name, method, compressedSize, size, localOffset));
+
+            position = (int) next;
+        }
+
+        return entries;
+    }
+
+    private ByteBuffer data(Entry entry) throws IOException {
+        ByteBuffer buf = this.buffer;
+        if (entry.localOffset + 30 > buf.limit() || buf.getInt((int) entry.localOffset) != LOCAL_HEADER) {
+            throw new ZipException("Invalid local header for " + entry.name);
+        }
+
+        int offset = (int) entry.localOffset;
+        int start = offset + 30 + (buf.getShort(offset + 26) & 0xFFFF) + (buf.getShort(offset + 28) & 0xFFFF);
+        if (start + entry.compressedSize > buf.limit()) {
+            throw new ZipException("Truncated entry " + entry.name);
+        }
+
+        ByteBuffer data = buf.duplicate();
+        data.position(start);
+        data.limit(start + (int) entry.compressedSize);
+        return data.slice();
+    }
+
+    public static class Entry {
+
+        private final @Nullable MemoryJar jar;
+        private final @NotNull String name;
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long localOffset;
+
+        private final @Nullable ByteBuffer data;
+
+        private Entry(@NotNull MemoryJar jar, @NotNull String name, int method, long compressedSize, long size, long localOffset) {
+            this.jar = jar;
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localOffset = localOffset;
+            this.data = null;
+        }
+
+        private Entry(@NotNull String name, @NotNull ByteBuffer data) {
+            this.jar = null;
+            this.name = name;
+            this.method = STORED;
+            this.compressedSize = data.remaining();
+            this.size = data.remaining();
+            this.localOffset = -1;
+            this.data = data;
+        }
+
+        public @NotNull String getName() {
+            return this.name;
+        }
+
+        public long getSize() {
+            return this.size;
+        }
+
+        public boolean isCompressed() {
+            return this.method != STORED;
+        }
+
+        public @NotNull InputStream open() throws IOException {
+            ByteBuffer data = this.data != null ? this.data.duplicate() : this.jar.data(this);
+            InputStream in = new ByteBufferInputStream(data);
+
+            if (this.method == DEFLATED) {
+                return new EntryInflaterInputStream(in, (int) Math.min(Math.max(this.size, 64), 8192));
+            }
+
+            return in;
+        }
+
+        public byte @NotNull [] readAllBytes() throws IOException {
+            if (this.size > MAX_ARRAY_SIZE) {
+                throw new ZipException("Entry " + this.name + " is too large to read into memory (" + this.size + " bytes)");
+            }
+
+            byte[] bytes = new byte[(int) this.size];
+
+            try (InputStream in = this.open()) {
+                int read = 0;
+                while (read < bytes.length) {
+                    int length = in.read(bytes, read, bytes.length - read);
+                    if (length == -1) {
+                        throw new EOFException("Unexpected end of entry " + this.name);
+                    }
+
+                    read += length;
+                }
+
+                if (in.read() != -1) {
+                    throw new ZipException("Entry " + this.name + " is larger than its recorded size");
+                }
+            }
+
+            return bytes;
+        }
+
+        public static @NotNull Entry of(@NotNull String name, byte @NotNull [] bytes) {
+            return new Entry(name, ByteBuffer.wrap(bytes));
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!this.buffer.hasRemaining()) return -1;
+
+            int length = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, length);
+            return length;
+        }
+
+        @Override
+        public long skip(long n) {
+            int length = (int) Math.max(0, Math.min(n, this.buffer.remaining()));
+            this.buffer.position(this.buffer.position() + length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+    }
+
+    private static class EntryInflaterInputStream extends InflaterInputStream {
+
+        private boolean eof;
+        private boolean closed;
+
+        private EntryInflaterInputStream(InputStream in, int size) {
+            super(in, new Inflater(true), size);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (this.eof) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+
+            this.len = this.in.read(this.buf, 0, this.buf.length);
+            if (this.len == -1) {
+                // raw inflaters may need a trailing dummy byte to finish
+                this.buf[0] = 0;
+                this.len = 1;
+                this.eof = true;
+            }
+
+            this.inf.setInput(this.buf, 0, this.len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed) return;
+            this.closed = true;
+
+            this.inf.end();
+            super.close();
+        }
+    }
+}
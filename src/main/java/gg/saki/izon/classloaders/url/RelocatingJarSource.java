@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders.url;
+
+import gg.saki.izon.relocation.JarRelocator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serves a jar under its relocated names, relocating each class only when it is first requested.
+ * <p>
+ * Entries are remapped on demand instead of rewriting the whole jar upfront, so the relocation cost follows
+ * the classes that are actually loaded. Remapped classes are kept in a size-bounded LRU cache.
+ */
+public class RelocatingJarSource implements JarSource {
+
+    private final @NotNull MemoryJar jar;
+    private final @NotNull JarRelocator relocator;
+    private final @NotNull EntryCache cache;
+
+    private volatile @Nullable Map<String, String> names;
+
+    /**
+     * @param cacheSize the maximum number of remapped bytes to keep in memory
+     */
+    public RelocatingJarSource(@NotNull MemoryJar jar, @NotNull JarRelocator relocator, long cacheSize) {
+        this.jar = jar;
+        this.relocator = relocator;
+        this.cache = new EntryCache(cacheSize);
+    }
+
+    @Override
+    public @Nullable MemoryJar.Entry getEntry(@NotNull String name) throws IOException {
+        String original = this.names().get(name);
+        if (original == null) return null;
+
+        MemoryJar.Entry entry = this.jar.getEntry(original);
+        if (entry == null) return null;
+
+        if (!JarRelocator.isRemapped(original)) {
+            return entry;
+        }
+
+        byte[] data = this.cache.get(entry);
+        if (data == null) {
+            data = this.relocator.relocateEntry(original, entry.readAllBytes());
+            this.cache.put(entry, data);
+        }
+
+        return MemoryJar.Entry.of(name, data);
+    }
+
+    public @NotNull MemoryJar getJar() {
+        return this.jar;
+    }
+
+    /**
+     * @return the number of remapped bytes currently cached
+     */
+    public long getCachedSize() {
+        return this.cache.size();
+    }
+
+    private Map<String, String> names() {
+        Map<String, String> names = this.names;
+        if (names != null) return names;
+
+        synchronized (this) {
+            if (this.names != null) return this.names;
+
+            // only entry names are relocated upfront, which is cheap next to remapping the classes themselves
+            names = new HashMap<>(this.jar.size() * 4 / 3 + 1);
+            for (String name : this.jar.getNames()) {
+                if (JarRelocator.isSignature(name)) continue;
+
+                names.putIfAbsent(this.relocator.mapEntryName(name), name);
+            }
+
+            this.names = names;
+            return names;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.download;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+
+/**
+ * Binary deltas between two versions of an artifact, published next to the newer one as
+ * {@code foo-2.0.jar.from-1.0.izdelta}.
+ * <p>
+ * A delta starts with a header holding the SHA-256 of the base and of the target plus the target's length,
+ * followed by operations that either copy a range of the base or insert literal bytes. Jars of nearby versions
+ * share most of their compressed entries, so these ranges cover most of the target.
+ * <p>
+ * A target is never larger than its base and delta combined, so applying a delta never allocates more than that.
+ */
+public final class BinaryDelta {
+
+    public static final String EXTENSION = ".izdelta";
+
+    private static final int MAGIC = 0x495A4431; // IZD1
+    private static final int BLOCK = 16;
+    private static final int MULTIPLIER = 0x01000193;
+
+    private static final int END = 0;
+    private static final int COPY = 1;
+    private static final int INSERT = 2;
+
+    private BinaryDelta() {
+        // utility class
+    }
+
+    /**
+     * @return the path of the delta turning {@code baseVersion} into the artifact at {@code path}
+     */
+    public static @NotNull String path(@NotNull String path, @NotNull String baseVersion) {
+        return path + ".from-" + baseVersion + EXTENSION;
+    }
+
+    /**
+     * Computes the delta turning {@code base} into {@code target}.
+     */
+    public static byte @NotNull [] create(byte @NotNull [] base, byte @NotNull [] target) {
+        byte[] delta = encode(base, target, true);
+
+        // repeated base ranges can make the target outgrow base and delta, which apply() rejects
+        if (target.length > (long) base.length + delta.length) {
+            delta = encode(base, target, false);
+        }
+
+        return delta;
+    }
+
+    /**
+     * @param copy whether ranges found in the base are copied, otherwise the whole target is inserted
+     */
+    private static byte[] encode(byte[] base, byte[] target, boolean copy) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, target.length / 8));
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            out.writeInt(MAGIC);
+            out.write(ChecksumAlgorithm.SHA256.digest(base));
+            out.write(ChecksumAlgorithm.SHA256.digest(target));
+            out.writeInt(target.length);
+
+            // index the base by the hash of every aligned block, keeping the first occurrence
+            int[] table = new int[Integer.highestOneBit(Math.max(1, base.length / BLOCK) * 2) << 1];
+            int shift = 32 - Integer.numberOfTrailingZeros(table.length);
+
+            for (int position = 0; position + BLOCK <= base.length; position += BLOCK) {
+                int slot = slot(hash(base, position), shift);
+                if (table[slot] == 0) table[slot] = position + 1;
+            }
+
+            int power = 1;
+            for (int i = 1; i < BLOCK; i++) power *= MULTIPLIER;
+
+            int pending = 0;
+            int position = 0;
+            int hash = target.length >= BLOCK ? hash(target, 0) : 0;
+
+            while (copy && position + BLOCK <= target.length) {
+                int candidate = table[slot(hash, shift)] - 1;
+
+                if (candidate >= 0 && matches(base, candidate, target, position)) {
+                    // grow the match in both directions, backwards only into bytes not yet written
+                    int back = 0;
+                    while (position - back > pending && candidate - back > 0 && target[position - back - 1] == base[candidate - back - 1]) back++;
+
+                    int length = BLOCK;
+                    while (position + length < target.length && candidate + length < base.length && target[position + length] == base[candidate + length]) length++;
+
+                    insert(out, target, pending, position - back);
+
+                    out.writeByte(COPY);
+                    out.writeInt(candidate - back);
+                    out.writeInt(length + back);
+
+                    position += length;
+                    pending = position;
+
+                    if (position + BLOCK <= target.length) hash = hash(target, position);
+                    continue;
+                }
+
+                if (position + BLOCK < target.length) {
+                    hash = (hash - (target[position] & 0xFF) * power) * MULTIPLIER + (target[position + BLOCK] & 0xFF);
+                }
+
+                position++;
+            }
+
+            insert(out, target, pending, target.length);
+            out.writeByte(END);
+        } catch (IOException e) {
+            // a byte array stream doesn't throw
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Rebuilds the target of a delta.
+     *
+     * @throws ChecksumException if {@code base} is not the delta's base, or the result does not match the delta's target
+     */
+    public static byte @NotNull [] apply(byte @NotNull [] base, byte @NotNull [] delta) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta));
+
+        if (delta.length < 4 || in.readInt() != MAGIC) {
+            throw new IOException("Not a binary delta");
+        }
+
+        byte[] baseSha256 = new byte[32];
+        byte[] targetSha256 = new byte[32];
+        in.readFully(baseSha256);
+        in.readFully(targetSha256);
+
+        if (!MessageDigest.isEqual(baseSha256, ChecksumAlgorithm.SHA256.digest(base))) {
+            throw new ChecksumException("Delta was computed against a different base");
+        }
+
+        int length = in.readInt();
+        if (length < 0 || length > (long) base.length + delta.length) {
+            throw new IOException("Corrupt delta: invalid target length " + length);
+        }
+
+        byte[] target = new byte[length];
+        int position = 0;
+
+        try {
+            for (int op = in.readUnsignedByte(); op != END; op = in.readUnsignedByte()) {
+                if (op == COPY) {
+                    int offset = in.readInt();
+                    int size = in.readInt();
+
+                    if (offset < 0 || size < 0 || offset > base.length - size || size > length - position) {
+                        throw new IOException("Corrupt delta: copy out of bounds");
+                    }
+
+                    System.arraycopy(base, offset, target, position, size);
+                    position += size;
+                } else if (op == INSERT) {
+                    int size = in.readInt();
+
+                    if (size < 0 || size > length - position) {
+                        throw new IOException("Corrupt delta: insert out of bounds");
+                    }
+
+                    in.readFully(target, position, size);
+                    position += size;
+                } else {
+                    throw new IOException("Corrupt delta: unknown operation " + op);
+                }
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated delta", e);
+        }
+
+        if (position != length) {
+            throw new IOException("Corrupt delta: expected " + length + " bytes but got " + position);
+        }
+
+        if (!MessageDigest.isEqual(targetSha256, ChecksumAlgorithm.SHA256.digest(target))) {
+            throw new ChecksumException("Delta result does not match its SHA-256");
+        }
+
+        return target;
+    }
+
+    private static void insert(DataOutputStream out, byte[] target, int from, int to) throws IOException {
+        if (to <= from) return;
+
+        out.writeByte(INSERT);
+        out.writeInt(to - from);
+        out.write(target, from, to - from);
+    }
+
+    private static boolean matches(byte[] base, int baseOffset, byte[] target, int targetOffset) {
+        if (baseOffset + BLOCK > base.length) return false;
+
+        for (int i = 0; i < BLOCK; i++) {
+            if (base[baseOffset + i] != target[targetOffset + i]) return false;
+        }
+
+        return true;
+    }
+
+    private static int hash(byte[] data, int offset) {
+        int hash = 0;
+        for (int i = 0; i < BLOCK; i++) {
+            hash = hash * MULTIPLIER + (data[offset + i] & 0xFF);
+        }
+
+        return hash;
+    }
+
+    private static int slot(int hash, int shift) {
+        return (hash * 0x9E3779B9) >>> shift;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.download;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * A digest algorithm used to verify artifacts against the checksum sidecar files published next to them
+ * (e.g. {@code foo-1.0.jar.sha256}).
+ */
+public interface ChecksumAlgorithm {
+
+    ChecksumAlgorithm SHA512 = of("SHA-512", "sha512");
+    ChecksumAlgorithm SHA256 = of("SHA-256", "sha256");
+    ChecksumAlgorithm SHA1 = of("SHA-1", "sha1");
+
+    /**
+     * @return the algorithm's name, as recorded in the store's integrity metadata
+     */
+    @NotNull String getName();
+
+    /**
+     * @return the extension of the sidecar file, without the leading dot
+     */
+    @NotNull String getExtension();
+
+    byte @NotNull [] digest(byte @NotNull [] data);
+
+    /**
+     * Creates an algorithm backed by the {@link MessageDigest} of the given name.
+     */
+    static @NotNull ChecksumAlgorithm of(@NotNull String algorithm, @NotNull String extension) {
+        return new ChecksumAlgorithm() {
+            @Override
+            public @NotNull String getName() {
+                return algorithm;
+            }
+
+            @Override
+            public @NotNull String getExtension() {
+                return extension;
+            }
+
+            @Override
+            public byte @NotNull [] digest(byte @NotNull [] data) {
+                try {
+                    return MessageDigest.getInstance(algorithm).digest(data);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException("Could not find " + algorithm + " algorithm", e);
+                }
+            }
+
+            @Override
+            public String toString() {
+                return algorithm;
+            }
+        };
+    }
+
+    static @NotNull String toHex(byte @NotNull [] digest) {
+        StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return builder.toString();
+    }
+
+    static byte @NotNull [] fromHex(@NotNull String hex) {
+        String value = hex.trim().toLowerCase(Locale.ROOT);
+        if (value.length() % 2 != 0) {
+            throw new IllegalArgumentException("Invalid hex string: " + hex);
+        }
+
+        byte[] bytes = new byte[value.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(value.charAt(i * 2), 16);
+            int low = Character.digit(value.charAt(i * 2 + 1), 16);
+
+            if (high == -1 || low == -1) {
+                throw new IllegalArgumentException("Invalid hex string: " + hex);
+            }
+
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+
+        return bytes;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.download;
+
+import gg.saki.izon.libraries.Repository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates every download of an {@link gg.saki.izon.Izon} instance.
+ * <p>
+ * Limits the combined bandwidth of all downloads with a token bucket and caps how many downloads
+ * may run against the same repository at once. Share one scheduler between instances to apply the
+ * limits across all of them.
+ * <p>
+ * Checksum sidecars don't take a download slot, and hedged requests only go to a mirror with a free slot.
+ */
+public class DownloadScheduler {
+
+    private final long bytesPerSecond;
+    private final int maxConcurrentPerRepository;
+
+    private final @NotNull Map<String, Semaphore> repositoryPermits = new ConcurrentHashMap<>();
+
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    public DownloadScheduler(long bytesPerSecond, int maxConcurrentPerRepository) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.maxConcurrentPerRepository = maxConcurrentPerRepository;
+        this.tokens = bytesPerSecond;
+    }
+
+    public long getBytesPerSecond() {
+        return this.bytesPerSecond;
+    }
+
+    public int getMaxConcurrentPerRepository() {
+        return this.maxConcurrentPerRepository;
+    }
+
+    public boolean isThrottled() {
+        return this.bytesPerSecond > 0;
+    }
+
+    /**
+     * Waits for a download slot on the given repository.
+     *
+     * @return a permit that must be closed once the download has finished
+     */
+    public @NotNull Permit acquire(@NotNull Repository repository) throws InterruptedIOException {
+        return this.acquire(repository.getUrl());
+    }
+
+    /**
+     * Waits for a download slot on the repository (or mirror) at the given URL.
+     *
+     * @return a permit that must be closed once the download has finished
+     */
+    public @NotNull Permit acquire(@NotNull URL repositoryUrl) throws InterruptedIOException {
+        if (this.maxConcurrentPerRepository <= 0) {
+            return Permit.NONE;
+        }
+
+        Semaphore semaphore = this.semaphore(repositoryUrl);
+
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a download slot");
+        }
+
+        return semaphore::release;
+    }
+
+    /**
+     * Takes a download slot on the repository (or mirror) at the given URL if one is free.
+     *
+     * @return a permit that must be closed once the download has finished, or null if every slot is taken
+     */
+    public @Nullable Permit tryAcquire(@NotNull URL repositoryUrl) {
+        if (this.maxConcurrentPerRepository <= 0) {
+            return Permit.NONE;
+        }
+
+        Semaphore semaphore = this.semaphore(repositoryUrl);
+        return semaphore.tryAcquire() ? semaphore::release : null;
+    }
+
+    private Semaphore semaphore(URL repositoryUrl) {
+        return this.repositoryPermits.computeIfAbsent(repositoryUrl.toString(), url -> new Semaphore(this.maxConcurrentPerRepository, true));
+    }
+
+    /**
+     * Accounts for bytes that were just read, blocking until the bandwidth limit allows them.
+     */
+    public void consume(int bytes) throws InterruptedIOException {
+        if (!this.isThrottled()) return;
+
+        long waitNanos = this.reserve(bytes);
+        if (waitNanos <= 0) return;
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttling download");
+        }
+    }
+
+    private synchronized long reserve(int bytes) {
+        long now = System.nanoTime();
+
+        // refill, allowing at most one second of burst
+        this.tokens = Math.min(this.bytesPerSecond, this.tokens + (now - this.lastRefill) * this.bytesPerSecond / 1e9);
+        this.lastRefill = now;
+
+        // go into debt so later callers wait behind this one
+        this.tokens -= bytes;
+        return this.tokens >= 0 ? 0 : (long) (-this.tokens * 1e9 / this.bytesPerSecond);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DownloadScheduler that = (DownloadScheduler) o;
+        return this.bytesPerSecond == that.bytesPerSecond && this.maxConcurrentPerRepository == that.maxConcurrentPerRepository;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.bytesPerSecond, this.maxConcurrentPerRepository);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public interface Permit extends AutoCloseable {
+
+        Permit NONE = () -> {
+        };
+
+        @Override
+        void close();
+    }
+
+    public static class Builder {
+
+        private long bytesPerSecond = 0;
+        private int maxConcurrentPerRepository = 0;
+
+        private Builder() {
+            // seal class to prevent external instantiation
+        }
+
+        /**
+         * @param bytesPerSecond the combined bandwidth limit, or 0 for unlimited
+         */
+        public Builder bytesPerSecond(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * @param maxConcurrentPerRepository the maximum concurrent downloads per repository, or 0 for unlimited
+         */
+        public Builder maxConcurrentPerRepository(int maxConcurrentPerRepository) {
+            this.maxConcurrentPerRepository = maxConcurrentPerRepository;
+            return this;
+        }
+
+        public DownloadScheduler build() {
+            return new DownloadScheduler(this.bytesPerSecond, this.maxConcurrentPerRepository);
+        }
+    }
+}
@@ -0,0 +1,561 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.download;
+
+import gg.saki.izon.libraries.Library;
+import gg.saki.izon.libraries.Repository;
+import gg.saki.izon.store.NegativeCache;
+import gg.saki.izon.utils.DownloadSettings;
+import gg.saki.izon.utils.IzonThreadFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performs the actual HTTP transfers for an {@link gg.saki.izon.Izon} instance.
+ * <p>
+ * Every request goes through the {@link DownloadScheduler}, failed downloads are retried according to the
+ * {@link RetryPolicy} and slow downloads can be hedged with a second request to a mirror.
+ */
+public class LibraryDownloader {
+
+    private volatile @NotNull DownloadScheduler scheduler = DownloadScheduler.builder().build();
+
+    private final @Nullable NegativeCache negativeCache;
+
+    private final @NotNull LatencyTracker latencies = new LatencyTracker(128);
+    private final @NotNull ExecutorService executor = Executors.newCachedThreadPool(new IzonThreadFactory("download"));
+
+    public LibraryDownloader(@Nullable NegativeCache negativeCache) {
+        this.negativeCache = negativeCache;
+    }
+
+    public LibraryDownloader() {
+        this(null);
+    }
+
+    public @NotNull DownloadScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    public void setScheduler(@NotNull DownloadScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public @NotNull LatencyTracker getLatencies() {
+        return this.latencies;
+    }
+
+    /**
+     * Downloads a library's artifact, retrying and hedging according to the settings.
+     * <p>
+     * The library's repositories are tried in order, skipping the ones the negative cache knows don't have it.
+     * The configured checksum sidecars are requested in parallel with the artifact, and the first one the
+     * repository publishes is used to verify it. A sidecar that fails to download for another reason than being
+     * missing, or that can't be parsed, fails the repository rather than skipping verification.
+     *
+     * @throws ChecksumException if the artifact does not match its published checksum
+     */
+    public @NotNull Artifact download(@NotNull Library library, @NotNull DownloadSettings settings) throws IOException {
+        IOException failure = null;
+
+        for (Repository repository : library.getRepositories()) {
+            URL url = repository.getUrl();
+
+            if (this.negativeCache != null && this.negativeCache.isMissing(url, library.getPath(), settings.getNegativeCacheTtl())) {
+                continue;
+            }
+
+            try {
+                Artifact artifact = this.download(library, repository, settings);
+                this.forgetMiss(url, library.getPath());
+                return artifact;
+            } catch (FileNotFoundException e) {
+                if (this.negativeCache != null && settings.getNegativeCacheTtl() > 0) {
+                    this.negativeCache.recordMiss(url, library.getPath());
+                }
+
+                failure = e;
+            } catch (InterruptedIOException | ChecksumException e) {
+                throw e;
+            } catch (IOException e) {
+                // the next repository may still have it
+                failure = e;
+            }
+        }
+
+        if (failure == null) {
+            throw new FileNotFoundException(library.getPath() + " is missing from every repository (cached)");
+        }
+
+        throw failure;
+    }
+
+    /**
+     * Downloads a library as a {@link BinaryDelta} against another version of it and applies it, verifying the result
+     * against the delta's target SHA-256 and the first checksum sidecar the repository publishes for the library.
+     * <p>
+     * Deltas are optional, a repository that doesn't publish one (or publishes a broken one) is simply skipped.
+     *
+     * @param baseVersion the version of {@code base}
+     * @param base the jar of that version
+     * @return the rebuilt artifact, or null if no repository has a usable delta, so it has to be downloaded in full
+     */
+    public @Nullable Artifact downloadDelta(@NotNull Library library, @NotNull String baseVersion, byte @NotNull [] base, @NotNull DownloadSettings settings) throws InterruptedIOException {
+        String path = BinaryDelta.path(library.getPath(), baseVersion);
+
+        for (Repository repository : library.getRepositories()) {
+            URL url = repository.getUrl();
+            Map<ChecksumAlgorithm, Future<byte[]>> sidecars = new LinkedHashMap<>();
+
+            try {
+                if (this.negativeCache != null && this.negativeCache.isMissing(url, path, settings.getNegativeCacheTtl())) {
+                    continue;
+                }
+
+                byte[] data = BinaryDelta.apply(base, this.fetch(url, path, settings));
+
+                for (ChecksumAlgorithm algorithm : settings.getRemoteChecksums()) {
+                    sidecars.put(algorithm, this.executor.submit(() -> this.fetchSidecar(url, library.getPath() + '.' + algorithm.getExtension(), settings)));
+                }
+
+                Artifact artifact = new Artifact(data, verify(library, data, sidecars));
+                this.forgetMiss(url, path);
+                return artifact;
+            } catch (FileNotFoundException e) {
+                try {
+                    if (this.negativeCache != null && settings.getNegativeCacheTtl() > 0) {
+                        this.negativeCache.recordMiss(url, path);
+                    }
+                } catch (IOException ignored) {
+                    // only means asking again next time
+                }
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException ignored) {
+                // unreachable, corrupt or not matching the published checksum, the full download is verified on its own
+            } finally {
+                for (Future<byte[]> future : sidecars.values()) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Drops a miss recorded for an artifact that has now been found, e.g. one recorded with a longer TTL.
+     */
+    private void forgetMiss(URL repository, String path) {
+        if (this.negativeCache == null) return;
+
+        try {
+            this.negativeCache.clear(repository, path);
+        } catch (IOException ignored) {
+            // only means a stale entry stays around until it expires
+        }
+    }
+
+    private Artifact download(Library library, Repository repository, DownloadSettings settings) throws IOException {
+        Map<ChecksumAlgorithm, Future<byte[]>> sidecars = new LinkedHashMap<>();
+
+        try {
+            for (ChecksumAlgorithm algorithm : settings.getRemoteChecksums()) {
+                sidecars.put(algorithm, this.executor.submit(() -> this.fetchSidecar(repository.getUrl(), library.getPath() + '.' + algorithm.getExtension(), settings)));
+            }
+
+            byte[] data = this.downloadWithRetries(library, repository, settings);
+            return new Artifact(data, verify(library, data, sidecars));
+        } finally {
+            for (Future<byte[]> future : sidecars.values()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static Map<String, byte[]> verify(Library library, byte[] data, Map<ChecksumAlgorithm, Future<byte[]>> sidecars) throws IOException {
+        for (Map.Entry<ChecksumAlgorithm, Future<byte[]>> entry : sidecars.entrySet()) {
+            ChecksumAlgorithm algorithm = entry.getKey();
+
+            byte[] sidecar;
+            try {
+                sidecar = result(entry.getValue());
+            } catch (FileNotFoundException e) {
+                // not published, try the next algorithm
+                continue;
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                // skipping it would let a flaky or hostile repository turn verification off, try the next repository instead
+                throw new IOException("Could not fetch the " + algorithm.getName() + " checksum of " + library.getPath(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while fetching checksums for " + library.getPath());
+            }
+
+            // sidecars contain the hex digest, optionally followed by the file name
+            String[] parts = new String(sidecar, StandardCharsets.US_ASCII).trim().split("\\s+");
+            byte[] expected;
+
+            try {
+                expected = ChecksumAlgorithm.fromHex(parts[0]);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed " + algorithm.getName() + " checksum for " + library.getPath(), e);
+            }
+
+            byte[] actual = algorithm.digest(data);
+            if (expected.length != actual.length) {
+                throw new IOException("Malformed " + algorithm.getName() + " checksum for " + library.getPath());
+            }
+
+            if (!MessageDigest.isEqual(expected, actual)) {
+                throw new ChecksumException(algorithm.getName() + " checksum mismatch for " + library.getPath() + ": expected " + parts[0] + " but got " + ChecksumAlgorithm.toHex(actual));
+            }
+
+            return Collections.singletonMap(algorithm.getName(), actual);
+        }
+
+        return Collections.emptyMap();
+    }
+
+    private byte[] downloadWithRetries(Library library, Repository repository, DownloadSettings settings) throws IOException {
+        RetryPolicy policy = settings.getRetryPolicy();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return this.attempt(library, repository, settings);
+            } catch (IOException e) {
+                long delay = retryDelay(policy, attempt, e);
+                if (delay < 0) {
+                    throw e;
+                }
+
+                sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * @return how long to wait before the next attempt, or -1 to give up
+     */
+    private static long retryDelay(RetryPolicy policy, int attempt, IOException failure) {
+        if (attempt >= policy.getMaxAttempts() || !policy.isRetryable(failure)) {
+            return -1;
+        }
+
+        long delay = policy.getDelay(attempt);
+        if (failure instanceof HttpStatusException) {
+            long retryAfter = ((HttpStatusException) failure).getRetryAfter();
+
+            // asked to wait longer than the policy allows, leave it to the next repository
+            if (retryAfter > policy.getMaxDelay()) {
+                return -1;
+            }
+
+            delay = Math.max(delay, retryAfter);
+        }
+
+        return delay;
+    }
+
+    private byte[] attempt(Library library, Repository repository, DownloadSettings settings) throws IOException {
+        URL primary = repository.getUrl();
+        URL secondary = findMirror(repository);
+        long threshold = settings.isHedged() && secondary != null ? this.latencies.percentile(settings.getHedgePercentile()) : -1;
+
+        if (threshold < 0) {
+            return this.timedFetch(primary, library.getPath(), settings, this.scheduler.acquire(primary));
+        }
+
+        CompletionService<byte[]> race = new ExecutorCompletionService<>(this.executor);
+        List<Future<byte[]>> futures = new ArrayList<>(2);
+
+        try {
+            futures.add(race.submit(() -> this.timedFetch(primary, library.getPath(), settings, this.scheduler.acquire(primary))));
+
+            Future<byte[]> done = race.poll(threshold, TimeUnit.MILLISECONDS);
+            if (done != null) {
+                return result(done);
+            }
+
+            // the primary is slower than we'd expect, race it against the mirror if the mirror has a free slot
+            DownloadScheduler.Permit permit = this.scheduler.tryAcquire(secondary);
+            if (permit == null) {
+                return result(race.take());
+            }
+
+            futures.add(race.submit(() -> this.timedFetch(secondary, library.getPath(), settings, permit)));
+
+            IOException failure = null;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    return result(race.take());
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading " + library.getPath());
+        } finally {
+            for (Future<byte[]> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static @Nullable URL findMirror(Repository repository) {
+        String primary = repository.getUrl().toString();
+
+        for (URL mirror : repository.getMirrors()) {
+            if (!mirror.toString().equals(primary)) return mirror;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param permit the slot the request runs in, closed once it has finished
+     */
+    private byte[] timedFetch(URL base, String path, DownloadSettings settings, DownloadScheduler.Permit permit) throws IOException {
+        try {
+            long start = System.nanoTime();
+            byte[] data = this.send(base, path, settings, null, null).getBody();
+
+            this.latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return data;
+        } finally {
+            permit.close();
+        }
+    }
+
+    /**
+     * Fetches a checksum sidecar, which is small enough not to take a download slot of its own, so it never
+     * waits behind (or holds up) the artifact it verifies.
+     */
+    private byte[] fetchSidecar(URL base, String path, DownloadSettings settings) throws IOException {
+        RetryPolicy policy = settings.getRetryPolicy();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return this.send(base, path, settings, null, null).getBody();
+            } catch (IOException e) {
+                long delay = retryDelay(policy, attempt, e);
+                if (delay < 0) {
+                    throw e;
+                }
+
+                sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Performs a single request for {@code path} relative to {@code base}, without retries.
+     */
+    public byte @NotNull [] fetch(@NotNull URL base, @NotNull String path, @NotNull DownloadSettings settings) throws IOException {
+        return this.request(base, path, settings, null, null).getBody();
+    }
+
+    /**
+     * Performs a single, optionally conditional, request for {@code path} relative to {@code base}.
+     *
+     * @param etag         the entity tag of a cached copy, sent as {@code If-None-Match}
+     * @param lastModified the {@code Last-Modified} value of a cached copy, sent as {@code If-Modified-Since}
+     * @return the response, with status 304 and an empty body if the cached copy is still current
+     */
+    public @NotNull Response request(@NotNull URL base, @NotNull String path, @NotNull DownloadSettings settings, @Nullable String etag, @Nullable String lastModified) throws IOException {
+        DownloadScheduler.Permit permit = this.scheduler.acquire(base);
+
+        try {
+            return this.send(base, path, settings, etag, lastModified);
+        } finally {
+            permit.close();
+        }
+    }
+
+    /**
+     * Performs a request without waiting for a download slot, bandwidth is still limited by the scheduler.
+     */
+    private Response send(URL base, String path, DownloadSettings settings, @Nullable String etag, @Nullable String lastModified) throws IOException {
+        DownloadScheduler scheduler = this.scheduler;
+        URL url = new URL(base + path);
+        URLConnection connection = url.openConnection();
+
+        if (etag != null) connection.setRequestProperty("If-None-Match", etag);
+        if (lastModified != null) connection.setRequestProperty("If-Modified-Since", lastModified);
+
+        int status = this.open(url, connection, settings);
+        if (status == 304) {
+            return new Response(status, new byte[0], etag, lastModified);
+        }
+
+        try (InputStream in = connection.getInputStream()) {
+            int length;
+            byte[] buffer = new byte[settings.getBufferSize()];
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            while ((length = in.read(buffer)) != -1) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Download cancelled");
+                }
+
+                scheduler.consume(length);
+                out.write(buffer, 0, length);
+            }
+
+            return new Response(status, out.toByteArray(), connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+        }
+    }
+
+    private int open(URL url, URLConnection connection, DownloadSettings settings) throws IOException {
+        connection.setConnectTimeout(settings.getConnectionTimeout());
+        connection.setReadTimeout(settings.getReadTimeout());
+        connection.setRequestProperty("User-Agent", settings.getUserAgent());
+
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection http = (HttpURLConnection) connection;
+            int status = http.getResponseCode();
+
+            if (status >= 400) {
+                InputStream error = http.getErrorStream();
+                if (error != null) error.close();
+
+                if (status == 404 || status == 410) {
+                    throw new FileNotFoundException(url.toString());
+                }
+
+                throw new HttpStatusException("Server returned HTTP " + status + " for " + url, status, parseRetryAfter(http.getHeaderField("Retry-After")));
+            }
+
+            return status;
+        }
+
+        return 200;
+    }
+
+    public static class Response {
+
+        private final int statusCode;
+        private final byte @NotNull [] body;
+        private final @Nullable String etag;
+        private final @Nullable String lastModified;
+
+        public Response(int statusCode, byte @NotNull [] body, @Nullable String etag, @Nullable String lastModified) {
+            this.statusCode = statusCode;
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public int getStatusCode() {
+            return this.statusCode;
+        }
+
+        public boolean isNotModified() {
+            return this.statusCode == 304;
+        }
+
+        public byte @NotNull [] getBody() {
+            return this.body;
+        }
+
+        public @Nullable String getEtag() {
+            return this.etag;
+        }
+
+        public @Nullable String getLastModified() {
+            return this.lastModified;
+        }
+    }
+
+    private static long parseRetryAfter(String header) {
+        if (header == null) return -1;
+        header = header.trim();
+
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(header));
+        } catch (NumberFormatException ignored) {
+            // not delta-seconds, try an HTTP date
+        }
+
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(header, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] result(Future<byte[]> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+}
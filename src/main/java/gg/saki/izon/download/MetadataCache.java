@@ -0,0 +1,149 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.download;
+
+import gg.saki.izon.utils.DownloadSettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * An on-disk cache of repository metadata files such as {@code maven-metadata.xml}.
+ * <p>
+ * Cached files are trusted for {@link DownloadSettings#getMetadataTtl()}, after which they are revalidated with
+ * a conditional request, so a warm check costs a single {@code 304 Not Modified}. If the repository can't be
+ * reached (or answers with an error) the stale copy is served instead.
+ */
+public class MetadataCache {
+
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "last-modified";
+    private static final String CHECKED = "checked";
+
+    private final @NotNull Path directory;
+    private final @NotNull LibraryDownloader downloader;
+
+    public MetadataCache(@NotNull Path directory, @NotNull LibraryDownloader downloader) {
+        this.directory = directory;
+        this.downloader = downloader;
+    }
+
+    /**
+     * @return the metadata file's contents, or null if the repository does not have it
+     * @throws IOException if the repository could not be reached and nothing is cached
+     */
+    public byte @Nullable [] get(@NotNull URL repository, @NotNull String path, @NotNull DownloadSettings settings) throws IOException {
+        Path file = this.directory.resolve(repositoryKey(repository)).resolve(path);
+        Path infoFile = file.resolveSibling(file.getFileName() + ".properties");
+
+        Properties info = new Properties();
+        boolean cached = Files.exists(file) && Files.exists(infoFile);
+
+        if (cached) {
+            try (InputStream in = Files.newInputStream(infoFile)) {
+                info.load(in);
+            }
+
+            if (System.currentTimeMillis() - checked(info) < settings.getMetadataTtl()) {
+                return Files.readAllBytes(file);
+            }
+        }
+
+        LibraryDownloader.Response response;
+        try {
+            response = this.downloader.request(repository, path, settings, cached ? info.getProperty(ETAG) : null, cached ? info.getProperty(LAST_MODIFIED) : null);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            if (!cached || (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException))) {
+                throw e;
+            }
+
+            // a stale copy beats failing the resolution, it is revalidated on the next call
+            return Files.readAllBytes(file);
+        }
+
+        Files.createDirectories(file.getParent());
+
+        byte[] data;
+        if (response.isNotModified()) {
+            data = Files.readAllBytes(file);
+        } else {
+            data = response.getBody();
+            writeAtomically(file, data);
+
+            info.clear();
+            if (response.getEtag() != null) info.setProperty(ETAG, response.getEtag());
+            if (response.getLastModified() != null) info.setProperty(LAST_MODIFIED, response.getLastModified());
+        }
+
+        info.setProperty(CHECKED, Long.toString(System.currentTimeMillis()));
+
+        Path temp = Files.createTempFile(infoFile.getParent(), infoFile.getFileName().toString(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            info.store(out, null);
+        }
+        Files.move(temp, infoFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return data;
+    }
+
+    private static long checked(Properties info) {
+        try {
+            return Long.parseLong(info.getProperty(CHECKED, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void writeAtomically(Path file, byte[] data) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        Files.write(temp, data);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Repositories on the same host are told apart by their scheme and port as well.
+     */
+    static String repositoryKey(URL repository) {
+        int port = repository.getPort() != -1 ? repository.getPort() : repository.getDefaultPort();
+        return (repository.getProtocol() + '_' + repository.getHost() + '_' + port + repository.getPath()).replaceAll("[^A-Za-z0-9.-]+", "_");
+    }
+
+    public @NotNull Path getDirectory() {
+        return this.directory;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.download;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how often, and after how long, a failed download is retried.
+ * <p>
+ * Delays grow exponentially from {@link #getInitialDelay()} up to {@link #getMaxDelay()}, with a random
+ * jitter applied so that many nodes failing at once don't retry in lockstep.
+ */
+public class RetryPolicy {
+
+    public static final RetryPolicy NONE = RetryPolicy.builder().maxAttempts(1).build();
+
+    private final int maxAttempts;
+    private final long initialDelay;
+    private final long maxDelay;
+    private final double multiplier;
+    private final double jitter;
+
+    public RetryPolicy(int maxAttempts, long initialDelay, long maxDelay, double multiplier, double jitter) {
+        this.maxAttempts = maxAttempts;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+    }
+
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    public long getInitialDelay() {
+        return this.initialDelay;
+    }
+
+    public long getMaxDelay() {
+        return this.maxDelay;
+    }
+
+    public double getMultiplier() {
+        return this.multiplier;
+    }
+
+    public double getJitter() {
+        return this.jitter;
+    }
+
+    /**
+     * @param attempt the attempt that just failed, starting at 1
+     * @return the delay in milliseconds before the next attempt
+     */
+    public long getDelay(int attempt) {
+        double delay = Math.min(this.maxDelay, this.initialDelay * Math.pow(this.multiplier, attempt - 1));
+        double jittered = delay * (1 - this.jitter * ThreadLocalRandom.current().nextDouble());
+
+        return (long) Math.max(0, jittered);
+    }
+
+    /**
+     * @return whether the given failure is worth another attempt
+     */
+    public boolean isRetryable(@NotNull IOException failure) {
+        if (failure instanceof HttpStatusException) {
+            int status = ((HttpStatusException) failure).getStatusCode();
+            return status == 408 || status == 429 || status >= 500;
+        }
+
+        // missing artifacts won't appear by retrying, and cancelled downloads should stay cancelled
+        if (failure instanceof FileNotFoundException) {
+            return false;
+        }
+
+        return !(failure instanceof InterruptedIOException) || failure instanceof SocketTimeoutException;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RetryPolicy that = (RetryPolicy) o;
+        return this.maxAttempts == that.maxAttempts && this.initialDelay == that.initialDelay && this.maxDelay == that.maxDelay && Double.compare(that.multiplier, this.multiplier) == 0 && Double.compare(that.jitter, this.jitter) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.maxAttempts, this.initialDelay, this.maxDelay, this.multiplier, this.jitter);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private int maxAttempts = 3;
+        private long initialDelay = 500;
+        private long maxDelay = 10000;
+        private double multiplier = 2;
+        private double jitter = 0.5;
+
+        private Builder() {
+            // seal class to prevent external instantiation
+        }
+
+        public Builder maxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder initialDelay(long initialDelay) {
+            this.initialDelay = initialDelay;
+            return this;
+        }
+
+        public Builder maxDelay(long maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        public Builder multiplier(double multiplier) {
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * @param jitter the fraction (0 to 1) of each delay that is randomized
+         */
+        public Builder jitter(double jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            if (this.maxAttempts < 1) {
+                throw new IllegalStateException("maxAttempts must be at least 1");
+            }
+
+            return new RetryPolicy(this.maxAttempts, this.initialDelay, this.maxDelay, this.multiplier, this.jitter);
+        }
+    }
+}
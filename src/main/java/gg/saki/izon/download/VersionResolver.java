@@ -0,0 +1,200 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.download;
+
+import gg.saki.izon.libraries.Library;
+import gg.saki.izon.libraries.Repository;
+import gg.saki.izon.libraries.VersionRange;
+import gg.saki.izon.utils.DownloadSettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves {@code -SNAPSHOT} versions and version ranges through the repository's {@code maven-metadata.xml}.
+ */
+public class VersionResolver {
+
+    private static final String METADATA = "maven-metadata.xml";
+
+    private final @NotNull MetadataCache cache;
+
+    public VersionResolver(@NotNull MetadataCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return the library with a concrete version, or the library itself if it does not need resolution
+     */
+    public @NotNull Library resolve(@NotNull Library library, @NotNull DownloadSettings settings) throws IOException {
+        if (library.isVersionRange()) {
+            library = this.resolveRange(library, settings);
+        }
+
+        if (library.isSnapshot() && library.getSnapshotVersion() == null) {
+            library = this.resolveSnapshot(library, settings);
+        }
+
+        return library;
+    }
+
+    /**
+     * @return the metadata from the first repository that has it, or null if none of them does
+     * @throws IOException if no repository has it and at least one of them could not be asked
+     */
+    private byte[] metadata(Library library, String path, DownloadSettings settings) throws IOException {
+        IOException failure = null;
+
+        for (Repository repository : library.getRepositories()) {
+            try {
+                byte[] data = this.cache.get(repository.getUrl(), path, settings);
+                if (data != null) return data;
+            } catch (InterruptedIOException e) {
+                if (!(e instanceof SocketTimeoutException)) throw e;
+                failure = e;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        return null;
+    }
+
+    private Library resolveRange(Library library, DownloadSettings settings) throws IOException {
+        String path = library.getGroupId().replace('.', '/') + '/' + library.getArtifactId() + '/' + METADATA;
+
+        byte[] data = this.metadata(library, path, settings);
+        if (data == null) {
+            throw new FileNotFoundException("No metadata to resolve version range " + library.getVersion() + " from: " + path);
+        }
+
+        List<String> versions = new ArrayList<>();
+        for (Element element : elements(parse(data).getDocumentElement(), "version")) {
+            String version = element.getTextContent().trim();
+
+            // ranges only select releases
+            if (!version.endsWith("-SNAPSHOT")) {
+                versions.add(version);
+            }
+        }
+
+        String selected = VersionRange.parse(library.getVersion()).select(versions);
+        if (selected == null) {
+            throw new FileNotFoundException("No version of " + library.getGroupId() + ':' + library.getArtifactId() + " matches " + library.getVersion());
+        }
+
+        return library.toBuilder().version(selected).build();
+    }
+
+    private Library resolveSnapshot(Library library, DownloadSettings settings) throws IOException {
+        String path = library.getGroupId().replace('.', '/') + '/' + library.getArtifactId() + '/' + library.getVersion() + '/' + METADATA;
+
+        byte[] data = this.metadata(library, path, settings);
+        if (data == null) {
+            // not a remote snapshot repository, use the plain -SNAPSHOT file name
+            return library;
+        }
+
+        Element root = parse(data).getDocumentElement();
+
+        // prefer the exact per-file entry published by Maven 3
+        for (Element element : elements(root, "snapshotVersion")) {
+            String extension = text(element, "extension");
+            String classifier = text(element, "classifier");
+            String value = text(element, "value");
+
+            if ("jar".equals(extension) && value != null && (library.hasClassifier() ? library.getClassifier().equals(classifier) : classifier == null)) {
+                return library.toBuilder().snapshotVersion(value).build();
+            }
+        }
+
+        for (Element snapshot : elements(root, "snapshot")) {
+            if ("true".equals(text(snapshot, "localCopy"))) {
+                return library;
+            }
+
+            String timestamp = text(snapshot, "timestamp");
+            String buildNumber = text(snapshot, "buildNumber");
+
+            if (timestamp != null && buildNumber != null) {
+                String base = library.getVersion().substring(0, library.getVersion().length() - "SNAPSHOT".length());
+                return library.toBuilder().snapshotVersion(base + timestamp + '-' + buildNumber).build();
+            }
+        }
+
+        return library;
+    }
+
+    private static Document parse(byte[] data) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setExpandEntityReferences(false);
+
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            return builder.parse(new ByteArrayInputStream(data));
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Invalid maven-metadata.xml", e);
+        }
+    }
+
+    private static List<Element> elements(Element parent, String name) {
+        NodeList nodes = parent.getElementsByTagName(name);
+        List<Element> elements = new ArrayList<>(nodes.getLength());
+
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node instanceof Element) {
+                elements.add((Element) node);
+            }
+        }
+
+        return elements;
+    }
+
+    private static @Nullable String text(Element parent, String name) {
+        List<Element> elements = elements(parent, name);
+        return elements.isEmpty() ? null : elements.get(0).getTextContent().trim();
+    }
+}
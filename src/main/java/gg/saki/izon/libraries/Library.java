@@ -32,10 +32,12 @@ import java.util.*;
 public class Library {
 
     private final @NotNull Repository repository;
+    private final @NotNull List<Repository> fallbacks;
 
     private final @NotNull String groupId;
     private final @NotNull String artifactId;
     private final @NotNull String version;
+    private final @Nullable String snapshotVersion;
 
     private final @Nullable String classifier;
 
@@ -43,12 +45,21 @@ public class Library {
 
     private final @Nullable Collection<Relocation> relocations;
 
+    private final @Nullable Collection<String> packages;
+    private final @NotNull Priority priority;
+
     private final @NotNull String path;
     private final @Nullable String relocatedPath;
     private final @NotNull String friendlyPath;
+    private final @Nullable String relocatedFriendlyPath;
 
     public Library(@NotNull Repository repository, @NotNull String groupId, @NotNull String artifactId, @NotNull String version, @Nullable String classifier, byte @Nullable [] sha256, @Nullable Collection<Relocation> relocations) {
+        this(repository, Collections.emptyList(), groupId, artifactId, version, null, classifier, sha256, relocations, null, Priority.CRITICAL);
+    }
+
+    Library(@NotNull Repository repository, @NotNull List<Repository> fallbacks, @NotNull String groupId, @NotNull String artifactId, @NotNull String version, @Nullable String snapshotVersion, @Nullable String classifier, byte @Nullable [] sha256, @Nullable Collection<Relocation> relocations, @Nullable Collection<String> packages, @NotNull Priority priority) {
         this.repository = repository;
+        this.fallbacks = Collections.unmodifiableList(new ArrayList<>(fallbacks));
 
         // Replace all {} with . (to circumvent shading issues)
         this.groupId = groupId.replace("{}", ".");
@@ -56,11 +67,17 @@ public class Library {
 
         this.artifactId = artifactId;
         this.version = version;
+        this.snapshotVersion = snapshotVersion;
         this.classifier = classifier;
         this.sha256 = sha256;
         this.relocations = relocations;
+        this.packages = packages;
+        this.priority = priority;
+
+        // snapshots live in the base version's directory, but the file is named after the timestamped version
+        String fileVersion = this.snapshotVersion != null ? this.snapshotVersion : this.version;
 
-        String path = this.groupId.replace('.', '/') + '/' + this.artifactId + '/' + this.version + '/' + this.artifactId + '-' + this.version;
+        String path = this.groupId.replace('.', '/') + '/' + this.artifactId + '/' + this.version + '/' + this.artifactId + '-' + fileVersion;
         if (this.hasClassifier()) {
             path += '-' + this.classifier;
         }
@@ -68,7 +85,10 @@ public class Library {
         this.path = path + ".jar";
         this.relocatedPath = this.hasRelocations() ? path + "-relocated.jar" : null;
 
-        this.friendlyPath = this.groupId.replace('.', '-') + '-' + this.artifactId + '-' + this.version + (this.hasClassifier() ? '-' + this.classifier : "") + ".jar";
+        String friendlyPath = this.groupId.replace('.', '-') + '-' + this.artifactId + '-' + fileVersion + (this.hasClassifier() ? '-' + this.classifier : "");
+
+        this.friendlyPath = friendlyPath + ".jar";
+        this.relocatedFriendlyPath = this.hasRelocations() ? friendlyPath + "-relocated.jar" : null;
 
     }
 
@@ -76,6 +96,27 @@ public class Library {
         return this.repository;
     }
 
+    /**
+     * The repositories tried, in order, when the primary repository does not have this library.
+     */
+    public @NotNull List<Repository> getFallbacks() {
+        return this.fallbacks;
+    }
+
+    /**
+     * @return the primary repository followed by the fallbacks
+     */
+    public @NotNull List<Repository> getRepositories() {
+        if (this.fallbacks.isEmpty()) {
+            return Collections.singletonList(this.repository);
+        }
+
+        List<Repository> repositories = new ArrayList<>(this.fallbacks.size() + 1);
+        repositories.add(this.repository);
+        repositories.addAll(this.fallbacks);
+        return repositories;
+    }
+
     public @NotNull String getGroupId() {
         return this.groupId;
     }
@@ -88,6 +129,13 @@ public class Library {
         return this.version;
     }
 
+    /**
+     * The timestamped version a {@code -SNAPSHOT} version was resolved to, if any.
+     */
+    public @Nullable String getSnapshotVersion() {
+        return this.snapshotVersion;
+    }
+
     public @Nullable String getClassifier() {
         return this.classifier;
     }
@@ -100,6 +148,17 @@ public class Library {
         return this.relocations;
     }
 
+    /**
+     * The packages this library provides, used to trigger lazy loading on the first class lookup.
+     */
+    public @Nullable Collection<String> getPackages() {
+        return this.packages;
+    }
+
+    public @NotNull Priority getPriority() {
+        return this.priority;
+    }
+
     public @NotNull String getPath() {
         return this.path;
     }
@@ -112,10 +171,29 @@ public class Library {
         return this.friendlyPath;
     }
 
+    public @Nullable String getRelocatedFriendlyPath() {
+        return this.relocatedFriendlyPath;
+    }
+
     public boolean hasChecksum() {
         return this.sha256 != null;
     }
 
+    public boolean isSnapshot() {
+        return this.version.endsWith("-SNAPSHOT");
+    }
+
+    public boolean isVersionRange() {
+        return VersionRange.isRange(this.version);
+    }
+
+    /**
+     * @return whether this library still needs its version resolved against repository metadata before it can be downloaded
+     */
+    public boolean needsResolution() {
+        return this.isVersionRange() || (this.isSnapshot() && this.snapshotVersion == null);
+    }
+
     public boolean hasClassifier() {
         return this.classifier != null;
     }
@@ -124,41 +202,78 @@ public class Library {
         return this.relocations != null && !this.relocations.isEmpty();
     }
 
+    public boolean hasPackages() {
+        return this.packages != null && !this.packages.isEmpty();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Library that = (Library) o;
-        return this.repository.equals(that.repository) && this.groupId.equals(that.groupId) && this.artifactId.equals(that.artifactId) && this.version.equals(that.version) && Objects.equals(this.classifier, that.classifier) && Arrays.equals(this.sha256, that.sha256) && Objects.equals(this.relocations, that.relocations) && this.path.equals(that.path) && Objects.equals(this.relocatedPath, that.relocatedPath) && this.friendlyPath.equals(that.friendlyPath);
+        return this.repository.equals(that.repository) && this.fallbacks.equals(that.fallbacks) && this.groupId.equals(that.groupId) && this.artifactId.equals(that.artifactId) && this.version.equals(that.version) && Objects.equals(this.snapshotVersion, that.snapshotVersion) && Objects.equals(this.classifier, that.classifier) && Arrays.equals(this.sha256, that.sha256) && Objects.equals(this.relocations, that.relocations) && Objects.equals(this.packages, that.packages) && this.priority == that.priority && this.path.equals(that.path) && Objects.equals(this.relocatedPath, that.relocatedPath) && this.friendlyPath.equals(that.friendlyPath) && Objects.equals(this.relocatedFriendlyPath, that.relocatedFriendlyPath);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(this.repository, this.groupId, this.artifactId, this.version, this.classifier, this.relocations, this.path, this.relocatedPath, this.friendlyPath);
+        int result = Objects.hash(this.repository, this.fallbacks, this.groupId, this.artifactId, this.version, this.snapshotVersion, this.classifier, this.relocations, this.packages, this.priority, this.path, this.relocatedPath, this.friendlyPath, this.relocatedFriendlyPath);
         result = 31 * result + Arrays.hashCode(this.sha256);
         return result;
     }
 
     public enum Status {
-        SUCCESS, ALREADY_EXISTS, CHECKSUM_MISMATCH, DOWNLOAD_FAILED, RELOCATION_FAILED, LOAD_FAILED;
+        SUCCESS, ALREADY_EXISTS, ALREADY_LOADED, REGISTERED, SKIPPED, CHECKSUM_MISMATCH, DOWNLOAD_FAILED, RELOCATION_FAILED, LOAD_FAILED, VERSION_CONFLICT, CANCELLED;
 
         public boolean isSuccess() {
-            return this == SUCCESS || this == ALREADY_EXISTS;
+            return this == SUCCESS || this == ALREADY_EXISTS || this == ALREADY_LOADED || this == REGISTERED || this == SKIPPED;
         }
     }
 
+    public enum Priority {
+        /**
+         * Loaded synchronously, before anything that depends on it runs.
+         */
+        CRITICAL,
+
+        /**
+         * Prefetched in the background once startup has progressed.
+         */
+        DEFERRED
+    }
+
     public static Builder builder() {
         return new Builder();
     }
 
+    public Builder toBuilder() {
+        Builder builder = new Builder()
+                .repository(this.repository)
+                .groupId(this.groupId)
+                .artifactId(this.artifactId)
+                .version(this.version)
+                .priority(this.priority);
+
+        builder.fallbacks = new ArrayList<>(this.fallbacks);
+        builder.snapshotVersion = this.snapshotVersion;
+        builder.classifier = this.classifier;
+        builder.sha256 = this.sha256;
+        builder.relocations = this.relocations;
+        builder.packages = this.packages;
+        return builder;
+    }
+
     public static class Builder {
         private Repository repository;
+        private List<Repository> fallbacks = new ArrayList<>();
         private String groupId;
         private String artifactId;
         private String version;
+        private String snapshotVersion;
         private String classifier;
         private byte[] sha256;
         private Collection<Relocation> relocations;
+        private Collection<String> packages;
+        private Priority priority = Priority.CRITICAL;
 
         private Builder() {
             // seal class to prevent external instantiation
@@ -169,6 +284,11 @@ public class Library {
             return this;
         }
 
+        public Builder fallback(@NotNull Repository repository) {
+            this.fallbacks.add(repository);
+            return this;
+        }
+
         public Builder groupId(@NotNull String groupId) {
             this.groupId = groupId;
             return this;
@@ -197,6 +317,11 @@ public class Library {
             return this;
         }
 
+        public Builder snapshotVersion(@NotNull String snapshotVersion) {
+            this.snapshotVersion = snapshotVersion;
+            return this;
+        }
+
         public Builder classifier(@NotNull String classifier) {
             this.classifier = classifier;
             return this;
@@ -226,12 +351,31 @@ public class Library {
             return this;
         }
 
+        public Builder packages(@NotNull Collection<String> packages) {
+            this.packages = packages;
+            return this;
+        }
+
+        public Builder provides(@NotNull String pkg) {
+            if (this.packages == null) {
+                this.packages = new LinkedList<>();
+            }
+
+            this.packages.add(pkg);
+            return this;
+        }
+
+        public Builder priority(@NotNull Priority priority) {
+            this.priority = priority;
+            return this;
+        }
+
         public Library build() {
             if (this.repository == null || this.groupId == null || this.artifactId == null || this.version == null) {
                 throw new IllegalStateException("repository, groupId, artifactId, and version cannot be null");
             }
 
-            return new Library(this.repository, this.groupId, this.artifactId, this.version, this.classifier, this.sha256, this.relocations);
+            return new Library(this.repository, this.fallbacks, this.groupId, this.artifactId, this.version, this.snapshotVersion, this.classifier, this.sha256, this.relocations, this.packages, this.priority);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,263 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.libraries;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A precomputed list of libraries in a compact binary form, usually generated at build time by the Izon Gradle plugin.
+ * <p>
+ * Reading a manifest needs no version resolution or coordinate parsing: every field is stored ready to use,
+ * and repositories are written once and referenced by index. Repository credentials are never written.
+ */
+public class LibraryManifest {
+
+    public static final String DEFAULT_RESOURCE = "META-INF/izon/libraries.bin";
+
+    private static final int MAGIC = 0x495A4F4E; // IZON
+    private static final int VERSION = 1;
+
+    private final @NotNull List<Library> libraries;
+
+    public LibraryManifest(@NotNull Collection<Library> libraries) {
+        this.libraries = Collections.unmodifiableList(new ArrayList<>(libraries));
+    }
+
+    public @NotNull List<Library> getLibraries() {
+        return this.libraries;
+    }
+
+    public void write(@NotNull OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+
+        List<Repository> repositories = new ArrayList<>();
+        Map<Repository, Integer> indices = new HashMap<>();
+        for (Library library : this.libraries) {
+            for (Repository repository : library.getRepositories()) {
+                if (indices.putIfAbsent(repository, repositories.size()) == null) {
+                    repositories.add(repository);
+                }
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+
+        out.writeShort(repositories.size());
+        for (Repository repository : repositories) {
+            out.writeUTF(repository.getUrl().toString());
+
+            out.writeShort(repository.getMirrors().size());
+            for (URL mirror : repository.getMirrors()) {
+                out.writeUTF(mirror.toString());
+            }
+        }
+
+        out.writeInt(this.libraries.size());
+        for (Library library : this.libraries) {
+            List<Repository> libraryRepositories = library.getRepositories();
+            out.writeShort(libraryRepositories.size());
+            for (Repository repository : libraryRepositories) {
+                out.writeShort(indices.get(repository));
+            }
+
+            out.writeUTF(library.getGroupId());
+            out.writeUTF(library.getArtifactId());
+            out.writeUTF(library.getVersion());
+            writeNullable(out, library.getClassifier());
+
+            byte[] sha256 = library.getSha256();
+            out.writeByte(sha256 == null ? 0 : sha256.length);
+            if (sha256 != null) {
+                out.write(sha256);
+            }
+
+            Collection<Relocation> relocations = library.getRelocations();
+            out.writeShort(relocations == null ? 0 : relocations.size());
+            if (relocations != null) {
+                for (Relocation relocation : relocations) {
+                    out.writeUTF(relocation.getPattern());
+                    out.writeUTF(relocation.getRelocatedPattern());
+                    writeStrings(out, relocation.getIncludes());
+                    writeStrings(out, relocation.getExcludes());
+                }
+            }
+
+            writeStrings(out, library.getPackages());
+            out.writeByte(library.getPriority().ordinal());
+        }
+
+        out.flush();
+    }
+
+    public static @NotNull LibraryManifest read(@NotNull InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an Izon library manifest");
+        }
+
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported library manifest version " + version);
+        }
+
+        Repository[] repositories = new Repository[in.readUnsignedShort()];
+        for (int i = 0; i < repositories.length; i++) {
+            URL url = new URL(in.readUTF());
+
+            List<URL> mirrors = new ArrayList<>();
+            for (int j = in.readUnsignedShort(); j > 0; j--) {
+                mirrors.add(new URL(in.readUTF()));
+            }
+
+            repositories[i] = new Repository(url, null, null, mirrors);
+        }
+
+        int count = in.readInt();
+        List<Library> libraries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int repositoryCount = in.readUnsignedShort();
+            if (repositoryCount == 0) {
+                throw new IOException("Library without a repository in manifest");
+            }
+
+            Repository repository = readRepository(in, repositories);
+            List<Repository> fallbacks = new ArrayList<>(repositoryCount - 1);
+            for (int j = 1; j < repositoryCount; j++) {
+                fallbacks.add(readRepository(in, repositories));
+            }
+
+            String groupId = in.readUTF();
+            String artifactId = in.readUTF();
+            String libraryVersion = in.readUTF();
+            String classifier = readNullable(in);
+
+            byte[] sha256 = null;
+            int sha256Length = in.readUnsignedByte();
+            if (sha256Length > 0) {
+                sha256 = new byte[sha256Length];
+                in.readFully(sha256);
+            }
+
+            List<Relocation> relocations = null;
+            int relocationCount = in.readUnsignedShort();
+            if (relocationCount > 0) {
+                relocations = new ArrayList<>(relocationCount);
+                for (int j = 0; j < relocationCount; j++) {
+                    relocations.add(new Relocation(in.readUTF(), in.readUTF(), readStrings(in), readStrings(in)));
+                }
+            }
+
+            List<String> packages = readStrings(in);
+            int priority = in.readUnsignedByte();
+            if (priority >= Library.Priority.values().length) {
+                throw new IOException("Unknown library priority " + priority + " in manifest");
+            }
+
+            libraries.add(new Library(repository, fallbacks, groupId, artifactId, libraryVersion, null, classifier, sha256, relocations, packages, Library.Priority.values()[priority]));
+        }
+
+        return new LibraryManifest(libraries);
+    }
+
+    /**
+     * Reads the manifest bundled at {@link #DEFAULT_RESOURCE} in the given class loader.
+     */
+    public static @NotNull LibraryManifest load(@NotNull ClassLoader classLoader) throws IOException {
+        return load(classLoader, DEFAULT_RESOURCE);
+    }
+
+    public static @NotNull LibraryManifest load(@NotNull ClassLoader classLoader, @NotNull String resource) throws IOException {
+        InputStream in = classLoader.getResourceAsStream(resource);
+        if (in == null) {
+            throw new FileNotFoundException("No library manifest at " + resource);
+        }
+
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static @NotNull Repository readRepository(DataInputStream in, Repository[] repositories) throws IOException {
+        int index = in.readUnsignedShort();
+        if (index >= repositories.length) {
+            throw new IOException("Unknown repository " + index + " in manifest");
+        }
+
+        return repositories[index];
+    }
+
+    private static void writeNullable(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static @Nullable String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, @Nullable Collection<String> values) throws IOException {
+        out.writeShort(values == null ? 0 : values.size());
+        if (values == null) return;
+
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static @Nullable List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        if (count == 0) return null;
+
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+
+        return values;
+    }
+}
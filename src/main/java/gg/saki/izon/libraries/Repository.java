@@ -30,6 +30,9 @@ import org.jetbrains.annotations.Nullable;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 public class Repository {
@@ -40,10 +43,17 @@ public class Repository {
     private final @Nullable String username;
     private final @Nullable String password;
 
+    private final @NotNull List<URL> mirrors;
+
     public Repository(@NotNull URL url, @Nullable String username, @Nullable String password) {
+        this(url, username, password, Collections.emptyList());
+    }
+
+    public Repository(@NotNull URL url, @Nullable String username, @Nullable String password, @NotNull List<URL> mirrors) {
         this.url = url;
         this.username = username;
         this.password = password;
+        this.mirrors = Collections.unmodifiableList(new ArrayList<>(mirrors));
     }
 
     public Repository(URL url) {
@@ -62,6 +72,13 @@ public class Repository {
         return this.password;
     }
 
+    /**
+     * Mirrors serving the same content as this repository, used for hedged requests.
+     */
+    public @NotNull List<URL> getMirrors() {
+        return this.mirrors;
+    }
+
     public boolean hasCredentials() {
         return this.username != null && this.password != null;
     }
@@ -71,12 +88,12 @@ public class Repository {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Repository that = (Repository) o;
-        return this.url.equals(that.url) && Objects.equals(this.username, that.username) && Objects.equals(this.password, that.password);
+        return this.url.equals(that.url) && Objects.equals(this.username, that.username) && Objects.equals(this.password, that.password) && this.mirrors.equals(that.mirrors);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(this.url, this.username, this.password);
+        return Objects.hash(this.url, this.username, this.password, this.mirrors);
     }
 
     public static Builder builder() {
@@ -88,6 +105,7 @@ public class Repository {
         private URL url;
         private String username;
         private String password;
+        private final List<URL> mirrors = new ArrayList<>();
 
         private Builder() {
             // seal class to prevent external instantiation
@@ -118,12 +136,27 @@ public class Repository {
             return this;
         }
 
+        public Builder mirror(@NotNull URL mirror) {
+            this.mirrors.add(mirror);
+            return this;
+        }
+
+        public Builder mirror(@NotNull String mirror) {
+            try {
+                this.mirrors.add(new URL(mirror));
+            } catch (MalformedURLException e) {
+                throw new IzonException(e);
+            }
+
+            return this;
+        }
+
         public Repository build() {
             if (this.url == null) {
                 throw new IllegalStateException("URL cannot be null");
             }
 
-            return new Repository(this.url, this.username, this.password);
+            return new Repository(this.url, this.username, this.password, this.mirrors);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,314 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.libraries;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A Maven version range such as {@code [1.0,2.0)}, {@code [1.2,)} or {@code [1.0,1.5),[2.0,3.0)}.
+ */
+public class VersionRange {
+
+    /**
+     * Orders versions the way Maven does for common version schemes.
+     */
+    public static final Comparator<String> VERSION_ORDER = VersionRange::compareVersions;
+
+    private final @NotNull String spec;
+    private final @NotNull List<Bounds> bounds;
+
+    private VersionRange(@NotNull String spec, @NotNull List<Bounds> bounds) {
+        this.spec = spec;
+        this.bounds = bounds;
+    }
+
+    public static boolean isRange(@NotNull String version) {
+        return !version.isEmpty() && (version.charAt(0) == '[' || version.charAt(0) == '(');
+    }
+
+    public static @NotNull VersionRange parse(@NotNull String spec) {
+        List<Bounds> bounds = new ArrayList<>();
+        String rest = spec.trim();
+
+        while (!rest.isEmpty()) {
+            char open = rest.charAt(0);
+            if (open != '[' && open != '(') {
+                throw new IllegalArgumentException("Invalid version range: " + spec);
+            }
+
+            int close = indexOfClose(rest);
+            if (close == -1) {
+                throw new IllegalArgumentException("Unclosed version range: " + spec);
+            }
+
+            String inner = rest.substring(1, close);
+            boolean lowerInclusive = open == '[';
+            boolean upperInclusive = rest.charAt(close) == ']';
+
+            int comma = inner.indexOf(',');
+            if (comma == -1) {
+                // [1.0] pins an exact version
+                if (!lowerInclusive || !upperInclusive) {
+                    throw new IllegalArgumentException("Invalid version range: " + spec);
+                }
+
+                bounds.add(new Bounds(inner.trim(), true, inner.trim(), true));
+            } else {
+                String lower = inner.substring(0, comma).trim();
+                String upper = inner.substring(comma + 1).trim();
+
+                bounds.add(new Bounds(lower.isEmpty() ? null : lower, lowerInclusive, upper.isEmpty() ? null : upper, upperInclusive));
+            }
+
+            rest = rest.substring(close + 1).trim();
+            if (rest.startsWith(",")) {
+                rest = rest.substring(1).trim();
+            }
+        }
+
+        if (bounds.isEmpty()) {
+            throw new IllegalArgumentException("Empty version range: " + spec);
+        }
+
+        return new VersionRange(spec, Collections.unmodifiableList(bounds));
+    }
+
+    private static int indexOfClose(String spec) {
+        for (int i = 1; i < spec.length(); i++) {
+            char c = spec.charAt(i);
+            if (c == ']' || c == ')') return i;
+        }
+
+        return -1;
+    }
+
+    public boolean contains(@NotNull String version) {
+        for (Bounds bound : this.bounds) {
+            if (bound.contains(version)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the highest of the given versions within this range, or null if none match
+     */
+    public @Nullable String select(@NotNull Iterable<String> versions) {
+        String best = null;
+
+        for (String version : versions) {
+            if (!this.contains(version)) continue;
+
+            if (best == null || compareVersions(version, best) > 0) {
+                best = version;
+            }
+        }
+
+        return best;
+    }
+
+    public @NotNull String getSpec() {
+        return this.spec;
+    }
+
+    @Override
+    public String toString() {
+        return this.spec;
+    }
+
+    public static int compareVersions(@NotNull String a, @NotNull String b) {
+        List<Object> left = tokenize(a);
+        List<Object> right = tokenize(b);
+
+        for (int i = 0; i < Math.max(left.size(), right.size()); i++) {
+            Object l = i < left.size() ? left.get(i) : null;
+            Object r = i < right.size() ? right.get(i) : null;
+
+            int result = compareTokens(l, r);
+            if (result != 0) return result;
+        }
+
+        return 0;
+    }
+
+    private static int compareTokens(@Nullable Object l, @Nullable Object r) {
+        // a missing token behaves like 0 against numbers and like a release against qualifiers
+        if (l == null) l = r instanceof Numeral ? (Object) Numeral.ZERO : "";
+        if (r == null) r = l instanceof Numeral ? (Object) Numeral.ZERO : "";
+
+        if (l instanceof Numeral && r instanceof Numeral) return ((Numeral) l).compareTo((Numeral) r);
+        if (l instanceof Numeral) return 1;
+        if (r instanceof Numeral) return -1;
+
+        int lr = qualifierRank((String) l);
+        int rr = qualifierRank((String) r);
+        if (lr != rr) return Integer.compare(lr, rr);
+
+        return ((String) l).compareTo((String) r);
+    }
+
+    private static int qualifierRank(String qualifier) {
+        switch (qualifier) {
+            case "alpha":
+            case "a":
+                return 0;
+            case "beta":
+            case "b":
+                return 1;
+            case "milestone":
+            case "m":
+                return 2;
+            case "rc":
+            case "cr":
+                return 3;
+            case "snapshot":
+                return 4;
+            case "":
+            case "ga":
+            case "final":
+            case "release":
+                return 5;
+            case "sp":
+                return 6;
+            default:
+                return 7;
+        }
+    }
+
+    private static List<Object> tokenize(String version) {
+        List<Object> tokens = new ArrayList<>();
+        String lower = version.toLowerCase(Locale.ROOT);
+
+        StringBuilder current = new StringBuilder();
+        boolean digits = false;
+
+        for (int i = 0; i <= lower.length(); i++) {
+            char c = i < lower.length() ? lower.charAt(i) : '.';
+            boolean separator = c == '.' || c == '-' || c == '_';
+
+            if (separator || (current.length() > 0 && isDigit(c) != digits)) {
+                if (current.length() > 0) {
+                    tokens.add(digits ? (Object) Numeral.of(current.toString()) : current.toString());
+                    current.setLength(0);
+                }
+
+                if (separator) continue;
+            }
+
+            digits = isDigit(c);
+            current.append(c);
+        }
+
+        // trailing zeros and release qualifiers don't make a version different (1.0 == 1 == 1.0.0)
+        while (!tokens.isEmpty()) {
+            Object last = tokens.get(tokens.size() - 1);
+            if (Numeral.ZERO.equals(last) || (last instanceof String && qualifierRank((String) last) == 5)) {
+                tokens.remove(tokens.size() - 1);
+            } else {
+                break;
+            }
+        }
+
+        return tokens;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * A numeric version segment, compared by its digits so segments of any length (like build timestamps) never overflow.
+     */
+    private static final class Numeral implements Comparable<Numeral> {
+
+        private static final Numeral ZERO = new Numeral("0");
+
+        private final @NotNull String digits;
+
+        private Numeral(@NotNull String digits) {
+            this.digits = digits;
+        }
+
+        private static Numeral of(String digits) {
+            int start = 0;
+            while (start < digits.length() - 1 && digits.charAt(start) == '0') start++;
+
+            return new Numeral(digits.substring(start));
+        }
+
+        @Override
+        public int compareTo(@NotNull Numeral other) {
+            // without leading zeros, a longer number is a larger one
+            int result = Integer.compare(this.digits.length(), other.digits.length());
+            return result != 0 ? result : this.digits.compareTo(other.digits);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Numeral && this.digits.equals(((Numeral) o).digits);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.digits.hashCode();
+        }
+    }
+
+    private static class Bounds {
+
+        private final @Nullable String lower;
+        private final boolean lowerInclusive;
+        private final @Nullable String upper;
+        private final boolean upperInclusive;
+
+        private Bounds(@Nullable String lower, boolean lowerInclusive, @Nullable String upper, boolean upperInclusive) {
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        private boolean contains(String version) {
+            if (this.lower != null) {
+                int result = compareVersions(version, this.lower);
+                if (result < 0 || (result == 0 && !this.lowerInclusive)) return false;
+            }
+
+            if (this.upper != null) {
+                int result = compareVersions(version, this.upper);
+                return result < 0 || (result == 0 && this.upperInclusive);
+            }
+
+            return true;
+        }
+    }
+}
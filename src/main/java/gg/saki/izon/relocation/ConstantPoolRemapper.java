@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.relocation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Relocates a class file by rewriting the UTF-8 entries of its constant pool.
+ * <p>
+ * Every class, descriptor, signature and string reference in a class file points into the constant pool,
+ * so rewriting those entries is enough; the rest of the class is copied as-is.
+ */
+public final class ConstantPoolRemapper {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private ConstantPoolRemapper() {
+        // seal class to prevent instantiation
+    }
+
+    /**
+     * @return the relocated class, or the same array if nothing in it had to be relocated
+     */
+    public static byte @NotNull [] remap(byte @NotNull [] classFile, @NotNull RelocationMatcher matcher) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(classFile.length + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(MAGIC);
+        out.writeInt(in.readInt()); // minor and major version
+
+        int count = in.readUnsignedShort();
+        out.writeShort(count);
+
+        boolean changed = false;
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            out.writeByte(tag);
+
+            switch (tag) {
+                case UTF8:
+                    String value = in.readUTF();
+                    String remapped = matcher.remap(value);
+
+                    changed |= remapped != value;
+                    out.writeUTF(remapped);
+                    break;
+                case CLASS:
+                case STRING:
+                case METHOD_TYPE:
+                case MODULE:
+                case PACKAGE:
+                    out.writeShort(in.readUnsignedShort());
+                    break;
+                case METHOD_HANDLE:
+                    out.writeByte(in.readUnsignedByte());
+                    out.writeShort(in.readUnsignedShort());
+                    break;
+                case INTEGER:
+                case FLOAT:
+                case FIELD_REF:
+                case METHOD_REF:
+                case INTERFACE_METHOD_REF:
+                case NAME_AND_TYPE:
+                case DYNAMIC:
+                case INVOKE_DYNAMIC:
+                    out.writeInt(in.readInt());
+                    break;
+                case LONG:
+                case DOUBLE:
+                    out.writeLong(in.readLong());
+
+                    // 8 byte constants take up two slots
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag + " at index " + i);
+            }
+        }
+
+        if (!changed) {
+            return classFile;
+        }
+
+        // everything after the constant pool only refers to it by index
+        int remaining = in.available();
+        out.write(classFile, classFile.length - remaining, remaining);
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.relocation;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.regex.Pattern;
+
+/**
+ * A compiled include/exclude pattern in internal name form ({@code com/example/**}).
+ * <p>
+ * {@code **} matches anything, {@code *} and {@code ?} never cross a package boundary.
+ * Literal and {@code prefix/**} patterns, by far the most common ones, skip the regex entirely.
+ */
+public final class Glob {
+
+    private final @NotNull String prefix;
+    private final boolean literal;
+    private final @Nullable Pattern pattern;
+
+    private Glob(@NotNull String prefix, boolean literal, @Nullable Pattern pattern) {
+        this.prefix = prefix;
+        this.literal = literal;
+        this.pattern = pattern;
+    }
+
+    public static @NotNull Glob compile(@NotNull String glob) {
+        glob = glob.replace("{}", ".").replace('.', '/');
+
+        int wildcard = indexOfWildcard(glob);
+        if (wildcard == -1) {
+            return new Glob(glob, true, null);
+        }
+
+        String prefix = glob.substring(0, wildcard);
+        if (wildcard == glob.length() - 2 && glob.endsWith("**")) {
+            return new Glob(prefix, false, null);
+        }
+
+        StringBuilder regex = new StringBuilder();
+        int start = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c != '*' && c != '?') continue;
+
+            if (start < i) {
+                regex.append(Pattern.quote(glob.substring(start, i)));
+            }
+
+            if (c == '?') {
+                regex.append("[^/]");
+            } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else {
+                regex.append("[^/]*");
+            }
+
+            start = i + 1;
+        }
+
+        if (start < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(start)));
+        }
+
+        return new Glob(prefix, false, Pattern.compile(regex.toString()));
+    }
+
+    /**
+     * @param name a class or resource name in internal form
+     */
+    public boolean matches(@NotNull String name) {
+        if (this.literal) {
+            return name.equals(this.prefix);
+        }
+
+        if (!name.startsWith(this.prefix)) {
+            return false;
+        }
+
+        return this.pattern == null || this.pattern.matcher(name).matches();
+    }
+
+    private static int indexOfWildcard(String glob) {
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') return i;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.relocation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Rewrites a jar so that its classes, resources and service registrations follow a set of relocations.
+ */
+public class JarRelocator {
+
+    private static final String SERVICES = "META-INF/services/";
+    private static final String VERSIONS = "META-INF/versions/";
+
+    private final @NotNull RelocationMatcher matcher;
+
+    public JarRelocator(@NotNull RelocationMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    public @NotNull RelocationMatcher getMatcher() {
+        return this.matcher;
+    }
+
+    public void relocate(@NotNull Path input, @NotNull Path output) throws IOException {
+        try (InputStream in = Files.newInputStream(input); OutputStream out = Files.newOutputStream(output)) {
+            this.relocate(in, out);
+        }
+    }
+
+    public byte @NotNull [] relocate(byte @NotNull [] jar) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(jar.length);
+        this.relocate(new ByteArrayInputStream(jar), out);
+        return out.toByteArray();
+    }
+
+    public void relocate(@NotNull InputStream input, @NotNull OutputStream output) throws IOException {
+        Set<String> written = new HashSet<>();
+
+        ZipInputStream in = new ZipInputStream(input);
+        ZipOutputStream out = new ZipOutputStream(output);
+
+        ZipEntry entry;
+        while ((entry = in.getNextEntry()) != null) {
+            String name = entry.getName();
+
+            // signatures no longer match once the classes are rewritten
+            if (isSignature(name)) continue;
+
+            String relocated = this.mapEntryName(name);
+
+            // two entries may collapse into one after relocation, keep the first
+            if (!written.add(relocated)) continue;
+
+            byte[] data = entry.isDirectory() ? new byte[0] : this.relocateEntry(name, readAll(in));
+
+            ZipEntry target = new ZipEntry(relocated);
+            target.setTime(entry.getTime());
+
+            out.putNextEntry(target);
+            out.write(data);
+            out.closeEntry();
+        }
+
+        out.finish();
+    }
+
+    /**
+     * @return whether the contents of the given jar entry change when relocated, rather than just its name
+     */
+    public static boolean isRemapped(@NotNull String name) {
+        return name.endsWith(".class") || name.startsWith(SERVICES);
+    }
+
+    /**
+     * @param name the original name of the entry
+     * @return the relocated contents of the given jar entry
+     */
+    public byte @NotNull [] relocateEntry(@NotNull String name, byte @NotNull [] data) throws IOException {
+        if (name.endsWith(".class")) {
+            return ConstantPoolRemapper.remap(data, this.matcher);
+        }
+
+        if (name.startsWith(SERVICES)) {
+            return this.mapServices(data);
+        }
+
+        return data;
+    }
+
+    /**
+     * @return the name of the given jar entry after relocation
+     */
+    public @NotNull String mapEntryName(@NotNull String name) {
+        if (name.startsWith(SERVICES)) {
+            return SERVICES + this.matcher.remap(name.substring(SERVICES.length()));
+        }
+
+        if (name.startsWith(VERSIONS)) {
+            int slash = name.indexOf('/', VERSIONS.length());
+            if (slash != -1) {
+                return name.substring(0, slash + 1) + this.matcher.remap(name.substring(slash + 1));
+            }
+        }
+
+        if (name.startsWith("META-INF/")) {
+            return name;
+        }
+
+        return this.matcher.remap(name);
+    }
+
+    private byte[] mapServices(byte[] data) throws IOException {
+        StringBuilder builder = new StringBuilder(data.length + 16);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                builder.append(this.matcher.remap(line)).append('\n');
+            }
+        }
+
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static boolean isSignature(@NotNull String name) {
+        if (!name.startsWith("META-INF/") || name.indexOf('/', 9) != -1) {
+            return false;
+        }
+
+        return name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC");
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+
+        return out.toByteArray();
+    }
+}
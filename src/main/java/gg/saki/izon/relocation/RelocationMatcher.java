@@ -0,0 +1,323 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.relocation;
+
+import gg.saki.izon.libraries.Relocation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of {@link Relocation}s compiled into a single prefix trie.
+ * <p>
+ * Every pattern is inserted in both its internal ({@code com/example}) and binary ({@code com.example}) form,
+ * so a string is remapped with one walk per candidate position no matter how many rules there are.
+ * Matchers are cached per relocation set and shared by every jar relocated with the same rules,
+ * the least recently used sets are dropped once {@value #CACHE_SIZE} are cached.
+ */
+public final class RelocationMatcher {
+
+    private static final int CACHE_SIZE = 64;
+
+    // descriptor syntax a reference type (L...;) can follow, e.g. (ILcom/example/Foo;)V or <T:Lcom/example/Foo;>
+    private static final String DESCRIPTOR_SYNTAX = "();<>:^+-*";
+    private static final String TYPE_CODES = "BCDFIJSZV[";
+
+    private static final Map<List<Relocation>, RelocationMatcher> CACHE = new LinkedHashMap<List<Relocation>, RelocationMatcher>(16, 0.75f, true) {
+        private static final long serialVersionUID = 4129372508124571063L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Relocation>, RelocationMatcher> eldest) {
+            return this.size() > CACHE_SIZE;
+        }
+    };
+
+    private final @NotNull Node root = new Node();
+
+    // package names are ascii in practice, so the first character is a direct lookup
+    private final @Nullable Node @NotNull [] first = new Node[128];
+    private final @NotNull List<Relocation> relocations;
+
+    private RelocationMatcher(@NotNull List<Relocation> relocations) {
+        this.relocations = Collections.unmodifiableList(relocations);
+
+        for (Relocation relocation : relocations) {
+            Glob[] includes = compile(relocation.getIncludes());
+            Glob[] excludes = compile(relocation.getExcludes());
+
+            String pattern = relocation.getPattern().replace('/', '.');
+            String relocated = relocation.getRelocatedPattern().replace('/', '.');
+
+            this.insert(pattern.replace('.', '/'), new Rule(relocated.replace('.', '/'), '/', includes, excludes));
+            this.insert(pattern, new Rule(relocated, '.', includes, excludes));
+        }
+    }
+
+    /**
+     * @return the matcher for the given rules, compiling it only the first time this set of rules is seen
+     */
+    public static @NotNull RelocationMatcher of(@NotNull Collection<Relocation> relocations) {
+        synchronized (CACHE) {
+            return CACHE.computeIfAbsent(new ArrayList<>(relocations), RelocationMatcher::new);
+        }
+    }
+
+    public @NotNull List<Relocation> getRelocations() {
+        return this.relocations;
+    }
+
+    /**
+     * Relocates every class or package reference in the given string, e.g. an internal name, a descriptor,
+     * a generic signature or a class name used through reflection.
+     *
+     * @return the relocated string, or the same instance if nothing matched
+     */
+    public @NotNull String remap(@NotNull String value) {
+        StringBuilder out = null;
+        int copied = 0;
+
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            Node node = c < 128 ? this.first[c] : this.root.child(c);
+            if (node == null || !isStart(value, i)) continue;
+
+            Rule matched = null;
+            int end = -1;
+
+            for (int j = i + 1; ; j++) {
+                if (node.rules != null) {
+                    Rule rule = accept(node.rules, value, i, j);
+                    if (rule != null) {
+                        matched = rule;
+                        end = j;
+                    }
+                }
+
+                if (j == length || (node = node.child(value.charAt(j))) == null) break;
+            }
+
+            if (matched == null) continue;
+
+            if (out == null) {
+                out = new StringBuilder(length + 16);
+            }
+
+            out.append(value, copied, i).append(matched.replacement);
+            copied = end;
+            i = end - 1;
+        }
+
+        return out == null ? value : out.append(value, copied, length).toString();
+    }
+
+    /**
+     * @return whether any rule applies to the given string
+     */
+    public boolean matches(@NotNull String value) {
+        return this.remap(value) != value;
+    }
+
+    private void insert(String pattern, Rule rule) {
+        if (pattern.isEmpty()) {
+            throw new IllegalArgumentException("Relocation pattern cannot be empty");
+        }
+
+        Node node = this.root.childOrCreate(pattern.charAt(0));
+        if (pattern.charAt(0) < 128) {
+            this.first[pattern.charAt(0)] = node;
+        }
+
+        for (int i = 1; i < pattern.length(); i++) {
+            node = node.childOrCreate(pattern.charAt(i));
+        }
+
+        if (node.rules == null) {
+            node.rules = new Rule[]{rule};
+            return;
+        }
+
+        Rule[] rules = new Rule[node.rules.length + 1];
+        System.arraycopy(node.rules, 0, rules, 0, node.rules.length);
+        rules[node.rules.length] = rule;
+        node.rules = rules;
+    }
+
+    private static @Nullable Rule accept(Rule[] rules, String value, int start, int end) {
+        for (Rule rule : rules) {
+            if (end < value.length() && !isBoundary(value.charAt(end), rule.separator)) continue;
+
+            if (rule.includes.length == 0 && rule.excludes.length == 0) {
+                return rule;
+            }
+
+            if (rule.accepts(name(value, start, end, rule.separator))) {
+                return rule;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the whole class name starting at {@code start}, in internal form
+     */
+    private static String name(String value, int start, int end, char separator) {
+        int position = end;
+        while (position < value.length()) {
+            char c = value.charAt(position);
+            if (c != separator && !Character.isJavaIdentifierPart(c)) break;
+
+            position++;
+        }
+
+        String name = value.substring(start, position);
+        return separator == '/' ? name : name.replace('.', '/');
+    }
+
+    private static boolean isStart(String value, int index) {
+        if (index == 0) return true;
+
+        char previous = value.charAt(index - 1);
+
+        // a reference type in a descriptor or signature, e.g. (Lcom/example/Foo;)V
+        if (previous == 'L' && isDescriptorStart(value, index - 1)) {
+            return true;
+        }
+
+        return !isNamePart(previous);
+    }
+
+    /**
+     * @return whether the {@code L} at {@code index} starts a reference type, i.e. follows descriptor syntax,
+     * possibly through primitive and array codes such as the {@code JJ} in {@code (JJLcom/example/Foo;)V}
+     */
+    private static boolean isDescriptorStart(String value, int index) {
+        int position = index - 1;
+        while (position >= 0 && TYPE_CODES.indexOf(value.charAt(position)) != -1) {
+            position--;
+        }
+
+        if (position < 0) return true;
+
+        char c = value.charAt(position);
+        return DESCRIPTOR_SYNTAX.indexOf(c) != -1 || (position == index - 1 && !isNamePart(c));
+    }
+
+    private static boolean isBoundary(char c, char separator) {
+        return c == separator || c == '$' || (c != '/' && c != '.' && !Character.isJavaIdentifierPart(c));
+    }
+
+    private static boolean isNamePart(char c) {
+        return c == '/' || c == '.' || Character.isJavaIdentifierPart(c);
+    }
+
+    private static Glob[] compile(@Nullable Collection<String> globs) {
+        if (globs == null || globs.isEmpty()) {
+            return new Glob[0];
+        }
+
+        Glob[] compiled = new Glob[globs.size()];
+        int i = 0;
+        for (String glob : globs) {
+            compiled[i++] = Glob.compile(glob);
+        }
+
+        return compiled;
+    }
+
+    private static final class Rule {
+
+        private final String replacement;
+        private final char separator;
+        private final Glob[] includes;
+        private final Glob[] excludes;
+
+        private Rule(String replacement, char separator, Glob[] includes, Glob[] excludes) {
+            this.replacement = replacement;
+            this.separator = separator;
+            this.includes = includes;
+            this.excludes = excludes;
+        }
+
+        private boolean accepts(String name) {
+            if (this.includes.length > 0 && !any(this.includes, name)) {
+                return false;
+            }
+
+            return !any(this.excludes, name);
+        }
+
+        private static boolean any(Glob[] globs, String name) {
+            for (Glob glob : globs) {
+                if (glob.matches(name)) return true;
+            }
+
+            return false;
+        }
+    }
+
+    private static final class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+
+        private Rule[] rules;
+
+        private @Nullable Node child(char c) {
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.keys[i] == c) return this.children[i];
+            }
+
+            return null;
+        }
+
+        private Node childOrCreate(char c) {
+            Node child = this.child(c);
+            if (child != null) return child;
+
+            child = new Node();
+
+            int length = this.keys.length;
+            char[] keys = new char[length + 1];
+            Node[] children = new Node[length + 1];
+            System.arraycopy(this.keys, 0, keys, 0, length);
+            System.arraycopy(this.children, 0, children, 0, length);
+            keys[length] = c;
+            children[length] = child;
+
+            this.keys = keys;
+            this.children = children;
+            return child;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.server;
+
+import gg.saki.izon.download.BinaryDelta;
+import gg.saki.izon.download.ChecksumAlgorithm;
+import gg.saki.izon.store.LibraryStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Maps Maven repository paths ({@code com/example/foo/1.0/foo-1.0.jar}) onto the files of a {@link LibraryStore}.
+ * <p>
+ * Jars are looked up by their friendly name in the store, metadata files are served from the metadata cached by
+ * version resolution, and checksum sidecars are answered from the digests recorded at download or computed once.
+ * Deltas between two stored versions of a jar are computed on the first request, one at a time, and the most recently
+ * computed ones are kept in the store.
+ */
+class RepositoryLayout {
+
+    private static final List<ChecksumAlgorithm> ALGORITHMS = Arrays.asList(ChecksumAlgorithm.SHA512, ChecksumAlgorithm.SHA256, ChecksumAlgorithm.SHA1);
+    private static final Pattern TIMESTAMPED = Pattern.compile("\\d{8}\\.\\d{6}-\\d+");
+    private static final String METADATA = "maven-metadata.xml";
+    private static final String DELTA_BASE = ".from-";
+
+    // both jars are read into memory to compute a delta
+    private static final long MAX_DELTA_INPUT = 64L * 1024 * 1024;
+    private static final int MAX_DELTAS_PER_TARGET = 4;
+
+    private final @NotNull LibraryStore store;
+    private final @NotNull Map<String, String> digests = new ConcurrentHashMap<>();
+    private final @NotNull Object deltaLock = new Object();
+
+    RepositoryLayout(@NotNull LibraryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return the resource for a repository path, or null if the store doesn't have it
+     */
+    @Nullable Resource resolve(@NotNull String path) throws IOException {
+        if (path.isEmpty() || path.contains("..") || path.contains("\\") || path.contains("//")) {
+            return null;
+        }
+
+        for (ChecksumAlgorithm algorithm : ALGORITHMS) {
+            String suffix = '.' + algorithm.getExtension();
+            if (!path.endsWith(suffix)) continue;
+
+            Resource resource = this.resolve(path.substring(0, path.length() - suffix.length()));
+            if (resource == null) return null;
+
+            byte[] hex = this.digest(resource, algorithm).getBytes(StandardCharsets.US_ASCII);
+            return Resource.of(hex, "text/plain");
+        }
+
+        if (path.endsWith('/' + METADATA)) {
+            Path file = this.findMetadata(path);
+            return file == null ? null : Resource.of(file, "text/xml");
+        }
+
+        if (path.endsWith(BinaryDelta.EXTENSION)) {
+            return this.resolveDelta(path);
+        }
+
+        String fileName = friendlyName(path);
+        if (fileName == null) return null;
+
+        Path file = this.store.getDirectory().resolve(fileName);
+        return Files.isRegularFile(file) ? Resource.of(file, "application/java-archive") : null;
+    }
+
+    private @Nullable Resource resolveDelta(String path) throws IOException {
+        int separator = path.lastIndexOf(DELTA_BASE);
+        if (separator == -1) return null;
+
+        String jarPath = path.substring(0, separator);
+        String baseVersion = path.substring(separator + DELTA_BASE.length(), path.length() - BinaryDelta.EXTENSION.length());
+
+        String basePath = rebase(jarPath, baseVersion);
+        String targetName = friendlyName(jarPath);
+        String baseName = basePath == null ? null : friendlyName(basePath);
+        if (targetName == null || baseName == null) return null;
+
+        Path target = this.store.getDirectory().resolve(targetName);
+        Path base = this.store.getDirectory().resolve(baseName);
+        if (!Files.isRegularFile(target) || !Files.isRegularFile(base)) return null;
+
+        Path directory = this.store.getDeltaDirectory();
+        Path file = directory.resolve(targetName + DELTA_BASE + baseName + BinaryDelta.EXTENSION);
+
+        if (Files.exists(file)) {
+            return Resource.of(file, "application/octet-stream");
+        }
+
+        if (Files.size(target) > MAX_DELTA_INPUT || Files.size(base) > MAX_DELTA_INPUT) {
+            return null;
+        }
+
+        // one computation at a time bounds the memory a burst of requests can take
+        synchronized (this.deltaLock) {
+            if (!Files.exists(file)) {
+                Files.createDirectories(directory);
+                Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+                try {
+                    Files.write(temp, BinaryDelta.create(Files.readAllBytes(base), Files.readAllBytes(target)));
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+
+                this.trimDeltas(directory, targetName);
+            }
+        }
+
+        return Resource.of(file, "application/octet-stream");
+    }
+
+    /**
+     * Keeps only the most recently computed deltas to a target.
+     */
+    private void trimDeltas(Path directory, String targetName) throws IOException {
+        List<Path> deltas = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, file -> {
+            String name = file.getFileName().toString();
+            return name.startsWith(targetName + DELTA_BASE) && name.endsWith(BinaryDelta.EXTENSION);
+        })) {
+            files.forEach(deltas::add);
+        }
+
+        if (deltas.size() <= MAX_DELTAS_PER_TARGET) return;
+
+        Map<Path, Long> times = new HashMap<>();
+        for (Path delta : deltas) {
+            times.put(delta, Files.getLastModifiedTime(delta).toMillis());
+        }
+
+        deltas.sort(Comparator.comparing(times::get));
+        for (Path delta : deltas.subList(0, deltas.size() - MAX_DELTAS_PER_TARGET)) {
+            Files.deleteIfExists(delta);
+        }
+    }
+
+    /**
+     * Turns {@code com/example/foo/2.0/foo-2.0-linux.jar} into {@code com/example/foo/1.0/foo-1.0-linux.jar} for version 1.0.
+     */
+    static @Nullable String rebase(@NotNull String path, @NotNull String version) {
+        if (version.isEmpty() || version.contains("/")) return null;
+
+        String[] segments = path.split("/");
+        if (segments.length < 4) return null;
+
+        String artifactId = segments[segments.length - 3];
+        String prefix = artifactId + '-' + segments[segments.length - 2];
+
+        String fileName = segments[segments.length - 1];
+        if (!fileName.startsWith(prefix)) return null;
+
+        segments[segments.length - 2] = version;
+        segments[segments.length - 1] = artifactId + '-' + version + fileName.substring(prefix.length());
+        return String.join("/", segments);
+    }
+
+    /**
+     * Turns {@code com/example/foo/1.0/foo-1.0-linux.jar} into the store's {@code com-example-foo-1.0-linux.jar}.
+     */
+    static @Nullable String friendlyName(@NotNull String path) {
+        String[] segments = path.split("/");
+        if (segments.length < 4) return null;
+
+        String fileName = segments[segments.length - 1];
+        String version = segments[segments.length - 2];
+        String artifactId = segments[segments.length - 3];
+
+        String prefix = artifactId + '-';
+        if (!fileName.startsWith(prefix) || !fileName.endsWith(".jar")) return null;
+
+        String rest = fileName.substring(prefix.length(), fileName.length() - 4);
+        String fileVersion = version;
+
+        if (!rest.startsWith(version)) {
+            if (!version.endsWith("-SNAPSHOT")) return null;
+
+            // a timestamped snapshot, 1.0-SNAPSHOT is stored as 1.0-20230101.120000-3
+            String base = version.substring(0, version.length() - "SNAPSHOT".length());
+            if (!rest.startsWith(base)) return null;
+
+            int end = rest.indexOf('-', rest.indexOf('-', base.length()) + 1);
+            fileVersion = end == -1 ? rest : rest.substring(0, end);
+
+            if (!TIMESTAMPED.matcher(fileVersion.substring(base.length())).matches()) return null;
+        }
+
+        String classifier = rest.substring(fileVersion.length());
+        if (!classifier.isEmpty() && (classifier.charAt(0) != '-' || classifier.length() == 1)) return null;
+
+        String groupId = String.join("-", Arrays.asList(segments).subList(0, segments.length - 3));
+        return groupId + '-' + artifactId + '-' + fileVersion + classifier + ".jar";
+    }
+
+    private @Nullable Path findMetadata(String path) throws IOException {
+        Path metadata = this.store.getDataDirectory().resolve("metadata");
+        if (!Files.isDirectory(metadata)) return null;
+
+        // cached per upstream repository, serve the most recently fetched copy
+        Path newest = null;
+        long newestTime = Long.MIN_VALUE;
+
+        try (DirectoryStream<Path> repositories = Files.newDirectoryStream(metadata)) {
+            for (Path repository : repositories) {
+                Path file = repository.resolve(path);
+                if (!Files.isRegularFile(file)) continue;
+
+                long time = Files.getLastModifiedTime(file).toMillis();
+                if (time > newestTime) {
+                    newest = file;
+                    newestTime = time;
+                }
+            }
+        }
+
+        return newest;
+    }
+
+    private String digest(Resource resource, ChecksumAlgorithm algorithm) throws IOException {
+        if (resource.file == null) {
+            return ChecksumAlgorithm.toHex(algorithm.digest(resource.data));
+        }
+
+        String fileName = resource.file.getFileName().toString();
+        if (resource.file.getParent().equals(this.store.getDirectory())) {
+            byte[] recorded = this.store.getDigest(fileName, algorithm.getName());
+            if (recorded != null) return ChecksumAlgorithm.toHex(recorded);
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(resource.file, BasicFileAttributes.class);
+        String key = resource.file + ":" + algorithm.getName();
+        String stamp = attributes.size() + ":" + attributes.lastModifiedTime().toMillis() + ":";
+
+        String cached = this.digests.get(key);
+        if (cached != null && cached.startsWith(stamp)) {
+            return cached.substring(stamp.length());
+        }
+
+        String hex = ChecksumAlgorithm.toHex(digestFile(resource.file, algorithm));
+        this.digests.put(key, stamp + hex);
+        return hex;
+    }
+
+    private static byte[] digestFile(Path file, ChecksumAlgorithm algorithm) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm.getName());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not find " + algorithm + " algorithm", e);
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, length);
+            }
+        }
+
+        return digest.digest();
+    }
+
+    static class Resource {
+
+        final @Nullable Path file;
+        final byte @Nullable [] data;
+        final @NotNull String contentType;
+
+        private Resource(@Nullable Path file, byte @Nullable [] data, @NotNull String contentType) {
+            this.file = file;
+            this.data = data;
+            this.contentType = contentType;
+        }
+
+        static Resource of(@NotNull Path file, @NotNull String contentType) {
+            return new Resource(file, null, contentType);
+        }
+
+        static Resource of(byte @NotNull [] data, @NotNull String contentType) {
+            return new Resource(null, data, contentType);
+        }
+    }
+}
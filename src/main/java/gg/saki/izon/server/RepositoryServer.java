@@ -0,0 +1,456 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.server;
+
+import gg.saki.izon.libraries.Repository;
+import gg.saki.izon.store.LibraryStore;
+import gg.saki.izon.utils.IzonThreadFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves a {@link LibraryStore} as a read-only Maven repository over HTTP, so other nodes can use it as a LAN mirror.
+ * <p>
+ * A deliberately small HTTP/1.1 server: {@code GET} and {@code HEAD} only, with keep-alive. Jars are streamed from
+ * disk with {@link FileChannel#transferTo}, which lets the kernel copy them straight to the socket. A response the
+ * client stops reading is abandoned after a timeout.
+ * <p>
+ * Each connection takes a worker thread. While connections are waiting for a worker, idle keep-alive connections are
+ * closed to free theirs, and once too many are waiting new ones are turned away with {@code 503 Service Unavailable}.
+ *
+ * @see RepositoryLayout
+ */
+public class RepositoryServer implements Closeable {
+
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+    private static final int IDLE_TIMEOUT = 30_000;
+    // how often an idle keep-alive connection checks whether others are waiting for its worker
+    private static final int IDLE_POLL = 500;
+    private static final int QUEUED_PER_THREAD = 4;
+    // how long a response may go without the client reading any of it
+    private static final int WRITE_TIMEOUT = 30_000;
+
+    private final @NotNull RepositoryLayout layout;
+    private final @NotNull ServerSocketChannel server;
+    private final @NotNull ThreadPoolExecutor workers;
+    private final @NotNull Thread acceptor;
+
+    private volatile boolean closed;
+
+    private RepositoryServer(@NotNull LibraryStore store, @NotNull ServerSocketChannel server, int threads) {
+        this.layout = new RepositoryLayout(store);
+        this.server = server;
+        this.workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * QUEUED_PER_THREAD), new IzonThreadFactory("repository"));
+        this.workers.allowCoreThreadTimeOut(true);
+        this.acceptor = new IzonThreadFactory("repository-acceptor").newThread(this::accept);
+    }
+
+    /**
+     * Starts serving the store on the given address, e.g. {@code new InetSocketAddress(8080)} for every interface.
+     *
+     * @param threads the maximum number of connections served at once, up to four times as many more wait for a worker
+     */
+    public static @NotNull RepositoryServer start(@NotNull LibraryStore store, @NotNull InetSocketAddress address, int threads) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+
+        try {
+            channel.socket().setReuseAddress(true);
+            channel.bind(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        RepositoryServer server = new RepositoryServer(store, channel, threads);
+        server.acceptor.start();
+        return server;
+    }
+
+    public @NotNull InetSocketAddress getAddress() {
+        return (InetSocketAddress) this.server.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * @return the URL of the repository, using the loopback address when bound to every interface
+     */
+    public @NotNull URL getUrl() {
+        InetSocketAddress address = this.getAddress();
+        InetAddress host = address.getAddress().isAnyLocalAddress() ? InetAddress.getLoopbackAddress() : address.getAddress();
+
+        try {
+            return new URL("http", host.getHostAddress().contains(":") ? '[' + host.getHostAddress() + ']' : host.getHostAddress(), address.getPort(), "/");
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public @NotNull Repository toRepository() {
+        return new Repository(this.getUrl());
+    }
+
+    private void accept() {
+        while (!this.closed) {
+            SocketChannel client;
+            try {
+                client = this.server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                continue;
+            }
+
+            try {
+                this.workers.execute(() -> this.serve(client));
+            } catch (RejectedExecutionException e) {
+                this.reject(client);
+            } catch (RuntimeException e) {
+                closeQuietly(client);
+            }
+        }
+    }
+
+    /**
+     * Turns a connection away without reading its request, every worker is busy and the queue is full.
+     */
+    private void reject(SocketChannel client) {
+        try {
+            client.socket().setSoTimeout(IDLE_TIMEOUT);
+            byte[] body = "503 Service Unavailable\n".getBytes(StandardCharsets.US_ASCII);
+
+            ByteBuffer header = header(503, "Service Unavailable", "text/plain", body.length, null, false);
+            ByteBuffer response = ByteBuffer.allocate(header.remaining() + body.length).put(header).put(body);
+            response.flip();
+
+            // small enough for the socket's send buffer, so this doesn't block the acceptor
+            writeFully(client, response);
+        } catch (IOException ignored) {
+            // client went away
+        } finally {
+            closeQuietly(client);
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try (ResponseWriter out = new ResponseWriter(client)) {
+            client.socket().setTcpNoDelay(true);
+
+            // the socket's stream honours the read timeout, unlike reads on a blocking channel
+            InputStream in = new BufferedInputStream(client.socket().getInputStream());
+
+            while (this.awaitRequest(client, in)) {
+                String head = readHead(in);
+                if (head == null) return;
+
+                boolean keepAlive = this.respond(out, head);
+                out.finish();
+
+                if (!keepAlive) return;
+            }
+        } catch (SocketTimeoutException ignored) {
+            // stalled in the middle of a request
+        } catch (IOException ignored) {
+            // client went away
+        } finally {
+            closeQuietly(client);
+        }
+    }
+
+    /**
+     * Waits for the next request on a connection, giving up once it has been idle for too long or other connections
+     * are waiting for a worker.
+     *
+     * @return whether a request has started arriving
+     */
+    private boolean awaitRequest(SocketChannel client, InputStream in) throws IOException {
+        long idleSince = System.nanoTime();
+        client.socket().setSoTimeout(IDLE_POLL);
+
+        while (!this.closed) {
+            in.mark(1);
+
+            try {
+                if (in.read() == -1) return false;
+            } catch (SocketTimeoutException e) {
+                if (!this.workers.getQueue().isEmpty() || System.nanoTime() - idleSince >= TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT)) {
+                    return false;
+                }
+
+                continue;
+            }
+
+            in.reset();
+            client.socket().setSoTimeout(IDLE_TIMEOUT);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return whether the connection can be kept alive
+     */
+    private boolean respond(ResponseWriter out, String head) throws IOException {
+        String[] lines = head.split("\r\n");
+        String[] request = lines[0].split(" ");
+
+        if (request.length != 3 || !request[2].startsWith("HTTP/1.")) {
+            this.sendStatus(out, 400, "Bad Request", false, false);
+            return false;
+        }
+
+        boolean keepAlive = request[2].equals("HTTP/1.1");
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon == -1 || !lines[i].substring(0, colon).trim().equalsIgnoreCase("Connection")) continue;
+
+            String value = lines[i].substring(colon + 1).trim();
+            keepAlive = value.equalsIgnoreCase("keep-alive") || (keepAlive && !value.equalsIgnoreCase("close"));
+        }
+
+        // hand the worker to a waiting connection instead
+        keepAlive &= this.workers.getQueue().isEmpty();
+
+        String method = request[0];
+        boolean headOnly = method.equals("HEAD");
+
+        if (!headOnly && !method.equals("GET")) {
+            this.sendStatus(out, 405, "Method Not Allowed", false, keepAlive);
+            return keepAlive;
+        }
+
+        String path = request[1];
+        int query = path.indexOf('?');
+        if (query != -1) path = path.substring(0, query);
+        while (path.startsWith("/")) path = path.substring(1);
+
+        RepositoryLayout.Resource resource = this.layout.resolve(path);
+        if (resource == null) {
+            this.sendStatus(out, 404, "Not Found", headOnly, keepAlive);
+            return keepAlive;
+        }
+
+        if (resource.file == null) {
+            out.write(header(200, "OK", resource.contentType, resource.data.length, null, keepAlive));
+            if (!headOnly) out.write(ByteBuffer.wrap(resource.data));
+            return keepAlive;
+        }
+
+        FileChannel file;
+        try {
+            file = FileChannel.open(resource.file, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // evicted between resolving and opening
+            this.sendStatus(out, 404, "Not Found", headOnly, keepAlive);
+            return keepAlive;
+        }
+
+        try {
+            long size = file.size();
+            out.write(header(200, "OK", resource.contentType, size, new Date(resource.file.toFile().lastModified()), keepAlive));
+
+            if (!headOnly) {
+                out.transfer(file, size);
+            }
+        } finally {
+            file.close();
+        }
+
+        return keepAlive;
+    }
+
+    private void sendStatus(ResponseWriter out, int status, String reason, boolean head, boolean keepAlive) throws IOException {
+        byte[] body = (status + " " + reason + "\n").getBytes(StandardCharsets.US_ASCII);
+
+        out.write(header(status, reason, "text/plain", body.length, null, keepAlive));
+        if (!head) out.write(ByteBuffer.wrap(body));
+    }
+
+    private static ByteBuffer header(int status, String reason, String contentType, long length, @Nullable Date lastModified, boolean keepAlive) {
+        StringBuilder builder = new StringBuilder(160)
+                .append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n")
+                .append("Content-Type: ").append(contentType).append("\r\n")
+                .append("Content-Length: ").append(length).append("\r\n")
+                .append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+
+        if (lastModified != null) {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ROOT);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            builder.append("Last-Modified: ").append(format.format(lastModified)).append("\r\n");
+        }
+
+        return ByteBuffer.wrap(builder.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return the request line and headers, or null if the client closed the connection
+     */
+    private static @Nullable String readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(512);
+        int last = 0;
+
+        while (true) {
+            int b = in.read();
+            if (b == -1) return null;
+
+            head.write(b);
+            if (head.size() > MAX_HEADER_SIZE) {
+                throw new IOException("Request header too large");
+            }
+
+            // the headers end with a blank line, \r\n\r\n
+            last = (last << 8) | b;
+            if (last == 0x0D0A0D0A) {
+                return new String(head.toByteArray(), 0, head.size() - 4, StandardCharsets.ISO_8859_1);
+            }
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // already closed
+        }
+    }
+
+    /**
+     * Writes a connection's responses with its channel in non-blocking mode, since writes on a blocking channel ignore
+     * {@code SO_TIMEOUT} and a client that stops reading would pin its worker forever.
+     */
+    private static final class ResponseWriter implements Closeable {
+
+        private final SocketChannel channel;
+        private final Selector selector;
+
+        private @Nullable SelectionKey key;
+
+        private ResponseWriter(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.selector = Selector.open();
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            this.begin();
+
+            while (buffer.hasRemaining()) {
+                if (this.channel.write(buffer) == 0) this.awaitWritable();
+            }
+        }
+
+        private void transfer(FileChannel file, long size) throws IOException {
+            this.begin();
+
+            long position = 0;
+            while (position < size) {
+                long written = file.transferTo(position, size - position, this.channel);
+                if (written == 0) this.awaitWritable();
+
+                position += written;
+            }
+        }
+
+        /**
+         * Switches the channel back to blocking mode, so the next request can be read through the socket's stream.
+         */
+        private void finish() throws IOException {
+            if (this.key == null) return;
+
+            this.key.cancel();
+            this.key = null;
+
+            // flushes the cancelled key, a registered channel can't be made blocking
+            this.selector.selectNow();
+            this.channel.configureBlocking(true);
+        }
+
+        private void begin() throws IOException {
+            if (this.key != null) return;
+
+            this.channel.configureBlocking(false);
+            this.key = this.channel.register(this.selector, SelectionKey.OP_WRITE);
+        }
+
+        private void awaitWritable() throws IOException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT);
+            this.selector.selectedKeys().clear();
+
+            while (this.selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))) == 0) {
+                if (System.nanoTime() - deadline >= 0) {
+                    throw new SocketTimeoutException("Client stopped reading the response");
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.selector.close();
+        }
+    }
+
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.server.close();
+        this.workers.shutdownNow();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import gg.saki.izon.classloaders.url.IndexedJarSource;
+import gg.saki.izon.classloaders.url.MemoryJar;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The packages (directories) a stored jar contains, and the service files it registers.
+ * <p>
+ * Indexes are persisted next to the store's other data and tied to the jar's size and modification time,
+ * so a jar is only scanned again once it changes.
+ */
+public class JarIndex {
+
+    private static final int MAGIC = 0x495A4958; // IZIX
+    private static final String SERVICES = "META-INF/services/";
+
+    private final long size;
+    private final long lastModified;
+
+    private final @NotNull Set<String> packages;
+    private final @NotNull List<String> services;
+
+    public JarIndex(long size, long lastModified, @NotNull Set<String> packages, @NotNull List<String> services) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.packages = Collections.unmodifiableSet(packages);
+        this.services = Collections.unmodifiableList(services);
+    }
+
+    /**
+     * The directories holding the jar's entries, e.g. {@code com/example} for {@code com/example/Foo.class},
+     * or an empty string for entries at the root.
+     */
+    public @NotNull Set<String> getPackages() {
+        return this.packages;
+    }
+
+    /**
+     * The names of the {@code META-INF/services} files in the jar.
+     */
+    public @NotNull List<String> getServices() {
+        return this.services;
+    }
+
+    boolean isUpToDate(@NotNull BasicFileAttributes attributes) {
+        return this.size == attributes.size() && this.lastModified == attributes.lastModifiedTime().toMillis();
+    }
+
+    public static boolean isService(@NotNull String name) {
+        return name.startsWith(SERVICES) && name.length() > SERVICES.length();
+    }
+
+    static @NotNull JarIndex build(@NotNull Path jar) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+
+        Set<String> packages = new LinkedHashSet<>();
+        List<String> services = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            MemoryJar memoryJar = new MemoryJar(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+
+            for (String name : memoryJar.getNames()) {
+                packages.add(IndexedJarSource.packageOf(name));
+
+                if (isService(name) && !name.endsWith("/")) {
+                    services.add(name);
+                }
+            }
+        }
+
+        return new JarIndex(attributes.size(), attributes.lastModifiedTime().toMillis(), packages, services);
+    }
+
+    void write(@NotNull OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+
+        out.writeInt(MAGIC);
+        out.writeLong(this.size);
+        out.writeLong(this.lastModified);
+
+        out.writeInt(this.packages.size());
+        for (String pkg : this.packages) {
+            out.writeUTF(pkg);
+        }
+
+        out.writeInt(this.services.size());
+        for (String service : this.services) {
+            out.writeUTF(service);
+        }
+
+        out.flush();
+    }
+
+    static @NotNull JarIndex read(@NotNull InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a jar index");
+        }
+
+        long size = in.readLong();
+        long lastModified = in.readLong();
+
+        int packageCount = in.readInt();
+        Set<String> packages = new LinkedHashSet<>(packageCount * 4 / 3 + 1);
+        for (int i = 0; i < packageCount; i++) {
+            packages.add(in.readUTF());
+        }
+
+        int serviceCount = in.readInt();
+        List<String> services = new ArrayList<>(serviceCount);
+        for (int i = 0; i < serviceCount; i++) {
+            services.add(in.readUTF());
+        }
+
+        return new JarIndex(size, lastModified, packages, services);
+    }
+}
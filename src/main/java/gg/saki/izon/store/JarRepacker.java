@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import gg.saki.izon.download.ChecksumAlgorithm;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes uncompressed ({@link ZipEntry#STORED STORED}) copies of stored jars, so class bytes are read without inflating them.
+ * <p>
+ * Copies sit next to the original, named after the original's SHA-256, so a copy that exists matches its original.
+ * Entry contents are unchanged, signed jars still verify.
+ */
+public class JarRepacker {
+
+    private final @NotNull LibraryStore store;
+
+    public JarRepacker(@NotNull LibraryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Returns the uncompressed copy of a stored jar, writing it only if no copy of the same content exists yet.
+     * <p>
+     * Callers hold the store's {@link LibraryStore#getLock() lock} shared.
+     */
+    public @NotNull Path repack(@NotNull Path jar) throws IOException {
+        String fileName = jar.getFileName().toString();
+
+        byte[] sha256 = this.store.getDigest(fileName, ChecksumAlgorithm.SHA256.getName());
+        if (sha256 == null) {
+            // relocated jars are never verified, hash them once and remember it
+            sha256 = ChecksumAlgorithm.SHA256.digest(Files.readAllBytes(jar));
+            this.store.recordDigests(fileName, Collections.singletonMap(ChecksumAlgorithm.SHA256.getName(), sha256));
+        }
+
+        String baseName = fileName.endsWith(".jar") ? fileName.substring(0, fileName.length() - 4) : fileName;
+        Path output = this.store.getDirectory().resolve(baseName + "-stored-" + ChecksumAlgorithm.toHex(sha256).substring(0, 12) + ".jar");
+
+        if (Files.exists(output)) return output;
+
+        Path temp = Files.createTempFile(this.store.getDirectory(), output.getFileName().toString(), LibraryStore.TEMP_SUFFIX);
+
+        try {
+            try (InputStream in = Files.newInputStream(jar); OutputStream out = Files.newOutputStream(temp)) {
+                repack(in, out);
+            }
+
+            Files.move(temp, output);
+        } catch (IOException e) {
+            // another process may have written the same copy first
+            if (!Files.exists(output)) throw e;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        return output;
+    }
+
+    /**
+     * Copies a jar, storing every entry uncompressed.
+     */
+    public static void repack(@NotNull InputStream input, @NotNull OutputStream output) throws IOException {
+        ZipInputStream in = new ZipInputStream(input);
+        ZipOutputStream out = new ZipOutputStream(output);
+        out.setMethod(ZipOutputStream.STORED);
+
+        CRC32 crc = new CRC32();
+
+        ZipEntry entry;
+        while ((entry = in.getNextEntry()) != null) {
+            byte[] data = entry.isDirectory() ? new byte[0] : readAll(in);
+
+            // stored entries have to declare their size and checksum upfront
+            crc.reset();
+            crc.update(data, 0, data.length);
+
+            ZipEntry target = new ZipEntry(entry.getName());
+            target.setMethod(ZipEntry.STORED);
+            target.setTime(entry.getTime());
+            target.setSize(data.length);
+            target.setCompressedSize(data.length);
+            target.setCrc(crc.getValue());
+
+            out.putNextEntry(target);
+            out.write(data);
+            out.closeEntry();
+        }
+
+        out.finish();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import gg.saki.izon.download.BinaryDelta;
+import gg.saki.izon.download.ChecksumAlgorithm;
+import gg.saki.izon.libraries.Library;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The on-disk layout of an Izon save directory.
+ * <p>
+ * Library jars are stored directly in the save directory, while Izon's own caches and metadata live in
+ * {@value #DATA_DIRECTORY}.
+ */
+public class LibraryStore {
+
+    public static final String DATA_DIRECTORY = ".izon";
+    public static final String TEMP_SUFFIX = ".tmplib";
+
+    private final @NotNull Path directory;
+    private final @NotNull Path dataDirectory;
+
+    private final @NotNull StoreFile integrity;
+    private final @NotNull NegativeCache negativeCache;
+    private final @NotNull StoreFile usage;
+    private final @NotNull StoreFile coordinates;
+    private final @NotNull StoreLock lock;
+    private final @NotNull Path indexDirectory;
+    private final @NotNull Path warmupDirectory;
+    private final @NotNull NativeCache natives;
+    private final @NotNull Path deltaDirectory;
+
+    public LibraryStore(@NotNull Path directory) {
+        this.directory = directory;
+        this.dataDirectory = directory.resolve(DATA_DIRECTORY);
+        this.integrity = new StoreFile(this.dataDirectory.resolve("integrity.properties"));
+        this.negativeCache = new NegativeCache(this.dataDirectory.resolve("missing.properties"));
+        this.usage = new StoreFile(this.dataDirectory.resolve("usage.properties"));
+        this.coordinates = new StoreFile(this.dataDirectory.resolve("coordinates.properties"));
+        this.lock = StoreLock.of(this.dataDirectory.resolve("store.lock"));
+        this.indexDirectory = this.dataDirectory.resolve("index");
+        this.warmupDirectory = this.dataDirectory.resolve("warmup");
+        this.natives = new NativeCache(this.dataDirectory.resolve("natives"));
+        this.deltaDirectory = this.dataDirectory.resolve("deltas");
+    }
+
+    public @NotNull Path getDirectory() {
+        return this.directory;
+    }
+
+    public @NotNull Path getDataDirectory() {
+        return this.dataDirectory;
+    }
+
+    public @NotNull NegativeCache getNegativeCache() {
+        return this.negativeCache;
+    }
+
+    public @NotNull NativeCache getNatives() {
+        return this.natives;
+    }
+
+    /**
+     * Where deltas computed between stored versions are kept, see {@link gg.saki.izon.download.BinaryDelta}.
+     */
+    public @NotNull Path getDeltaDirectory() {
+        return this.deltaDirectory;
+    }
+
+    /**
+     * The lock writers hold shared while creating files, and {@link StoreCollector} holds exclusively.
+     */
+    public @NotNull StoreLock getLock() {
+        return this.lock;
+    }
+
+    public @NotNull Path resolve(@NotNull Library library) {
+        return this.directory.resolve(library.getFriendlyPath());
+    }
+
+    /**
+     * Records which library a stored jar was downloaded for, so {@link #findVersions(Library)} can find it.
+     */
+    public void recordCoordinates(@NotNull Library library) throws IOException {
+        this.coordinates.update(properties -> properties.setProperty(library.getFriendlyPath(), coordinates(library, library.getVersion())));
+    }
+
+    /**
+     * Finds the other versions of a library (same group, artifact and classifier) that are in the store.
+     * Only jars whose coordinates were {@link #recordCoordinates(Library) recorded} are found.
+     *
+     * @return the stored jars keyed by their version
+     */
+    public @NotNull Map<String, Path> findVersions(@NotNull Library library) throws IOException {
+        String prefix = coordinates(library, "");
+        Map<String, Path> versions = new LinkedHashMap<>();
+
+        for (Map.Entry<Object, Object> entry : this.coordinates.read().entrySet()) {
+            String fileName = (String) entry.getKey();
+            String value = (String) entry.getValue();
+
+            if (!value.startsWith(prefix) || fileName.equals(library.getFriendlyPath())) continue;
+
+            String version = value.substring(prefix.length());
+            Path file = this.directory.resolve(fileName);
+
+            if (!version.isEmpty() && version.indexOf('|') == -1 && Files.isRegularFile(file)) {
+                versions.put(version, file);
+            }
+        }
+
+        return versions;
+    }
+
+    private static String coordinates(Library library, String version) {
+        // the version goes last, so a prefix matches every version of the same artifact
+        return library.getGroupId() + '|' + library.getArtifactId() + '|' + (library.hasClassifier() ? library.getClassifier() : "") + '|' + version;
+    }
+
+    /**
+     * Records the digests a stored file was verified against.
+     *
+     * @param digests the digests keyed by {@link ChecksumAlgorithm#getName() algorithm name}
+     */
+    public void recordDigests(@NotNull String fileName, @NotNull Map<String, byte[]> digests) throws IOException {
+        if (digests.isEmpty()) return;
+
+        this.integrity.update(properties -> digests.forEach((algorithm, digest) -> properties.setProperty(fileName + ':' + algorithm, ChecksumAlgorithm.toHex(digest))));
+    }
+
+    /**
+     * @return the recorded digest of a stored file, or null if it was never verified with that algorithm
+     */
+    public byte @Nullable [] getDigest(@NotNull String fileName, @NotNull String algorithm) throws IOException {
+        String hex = this.integrity.read().getProperty(fileName + ':' + algorithm);
+        return hex == null ? null : ChecksumAlgorithm.fromHex(hex);
+    }
+
+    /**
+     * Returns the index of a stored jar, scanning the jar and persisting its index only if it changed since it was last indexed.
+     */
+    public @NotNull JarIndex getIndex(@NotNull Path jar) throws IOException {
+        Path file = this.indexDirectory.resolve(jar.getFileName() + ".idx");
+        BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                JarIndex index = JarIndex.read(in);
+                if (index.isUpToDate(attributes)) {
+                    return index;
+                }
+            } catch (IOException ignored) {
+                // corrupt or outdated, index the jar again
+            }
+        }
+
+        JarIndex index = JarIndex.build(jar);
+
+        Files.createDirectories(this.indexDirectory);
+        Path temp = Files.createTempFile(this.indexDirectory, file.getFileName().toString(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            index.write(out);
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return index;
+    }
+
+    /**
+     * Replaces the recorded warm-up list of a profile.
+     *
+     * @param classNames the binary names of the classes to preload, in the order they are preloaded
+     */
+    public void writeWarmup(@NotNull String profile, @NotNull Collection<String> classNames) throws IOException {
+        Path file = this.warmupDirectory.resolve(profile + ".classes");
+
+        Files.createDirectories(this.warmupDirectory);
+        Path temp = Files.createTempFile(this.warmupDirectory, file.getFileName().toString(), ".tmp");
+        Files.write(temp, classNames, StandardCharsets.UTF_8);
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the recorded warm-up list of a profile, or an empty list if none was recorded yet
+     */
+    public @NotNull List<String> readWarmup(@NotNull String profile) throws IOException {
+        Path file = this.warmupDirectory.resolve(profile + ".classes");
+        if (!Files.exists(file)) {
+            return Collections.emptyList();
+        }
+
+        List<String> classNames = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isEmpty()) classNames.add(line);
+        }
+
+        return classNames;
+    }
+
+    /**
+     * Marks stored files as used now, which keeps them from being evicted first.
+     */
+    public void recordUse(@NotNull Collection<String> fileNames) throws IOException {
+        if (fileNames.isEmpty()) return;
+
+        String now = Long.toString(System.currentTimeMillis());
+        this.usage.update(properties -> fileNames.forEach(fileName -> properties.setProperty(fileName, now)));
+    }
+
+    public @NotNull Properties readUsage() throws IOException {
+        return this.usage.read();
+    }
+
+    /**
+     * Drops everything recorded about files that were removed from the store.
+     */
+    void forget(@NotNull Collection<String> fileNames) throws IOException {
+        for (String fileName : fileNames) {
+            Files.deleteIfExists(this.indexDirectory.resolve(fileName + ".idx"));
+
+            byte[] sha256 = this.getDigest(fileName, ChecksumAlgorithm.SHA256.getName());
+            if (sha256 != null) {
+                this.natives.delete(sha256);
+            }
+
+            if (Files.isDirectory(this.deltaDirectory)) {
+                // deltas are named <target>.from-<base>.izdelta, drop the ones from or to the removed jar
+                try (DirectoryStream<Path> deltas = Files.newDirectoryStream(this.deltaDirectory, delta -> {
+                    String name = delta.getFileName().toString();
+                    return name.startsWith(fileName + ".from-") || name.endsWith(".from-" + fileName + BinaryDelta.EXTENSION);
+                })) {
+                    for (Path delta : deltas) {
+                        Files.deleteIfExists(delta);
+                    }
+                }
+            }
+        }
+
+        this.usage.update(properties -> fileNames.forEach(properties::remove));
+        this.coordinates.update(properties -> fileNames.forEach(properties::remove));
+        this.integrity.update(properties -> properties.keySet().removeIf(key -> {
+            String name = (String) key;
+            int separator = name.lastIndexOf(':');
+            return separator != -1 && fileNames.contains(name.substring(0, separator));
+        }));
+    }
+}
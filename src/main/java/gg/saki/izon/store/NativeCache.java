@@ -0,0 +1,190 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import gg.saki.izon.classloaders.url.MemoryJar;
+import gg.saki.izon.download.ChecksumAlgorithm;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Extracts the native binaries of jars (e.g. {@code linux-x86_64} classifiers) once, into a directory keyed by the jar's SHA-256.
+ * <p>
+ * Extractions are staged in a temporary directory and moved into place, so a directory that exists is complete.
+ * Its files are checked against the digests recorded at extraction before they are handed out again.
+ */
+public class NativeCache {
+
+    static final String MANIFEST = "izon-natives.properties";
+
+    private final @NotNull Path directory;
+
+    public NativeCache(@NotNull Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param sha256 the SHA-256 of the jar, which keys its extraction
+     * @return the extracted binaries, reusing an earlier extraction of the same jar if it is intact
+     */
+    public @NotNull NativeLibrary extract(@NotNull Path jar, byte @NotNull [] sha256) throws IOException {
+        Path target = this.directory.resolve(ChecksumAlgorithm.toHex(sha256));
+
+        NativeLibrary existing = open(target);
+        if (existing != null) return existing;
+
+        Files.createDirectories(this.directory);
+        Path temp = Files.createTempDirectory(this.directory, target.getFileName() + "-");
+
+        try {
+            extractTo(jar, temp);
+
+            // left over from an extraction that no longer verifies
+            if (Files.exists(target)) {
+                deleteRecursively(target);
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileSystemException e) {
+                // another process extracted the same jar first
+                existing = open(target);
+                if (existing == null) throw e;
+                return existing;
+            }
+        } finally {
+            if (Files.exists(temp)) {
+                deleteRecursively(temp);
+            }
+        }
+
+        NativeLibrary extracted = open(target);
+        if (extracted == null) {
+            throw new IOException("Extracted natives of " + jar.getFileName() + " failed verification");
+        }
+
+        return extracted;
+    }
+
+    /**
+     * Removes the extraction of a jar, if there is one.
+     */
+    void delete(byte @NotNull [] sha256) throws IOException {
+        Path target = this.directory.resolve(ChecksumAlgorithm.toHex(sha256));
+        if (Files.exists(target)) {
+            deleteRecursively(target);
+        }
+    }
+
+    private static void extractTo(Path jar, Path directory) throws IOException {
+        Properties manifest = new Properties();
+
+        try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            MemoryJar memoryJar = new MemoryJar(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+
+            for (String name : memoryJar.getNames()) {
+                if (!isNative(name)) continue;
+
+                Path out = directory.resolve(name).normalize();
+                if (!out.startsWith(directory)) {
+                    throw new IOException("Native entry escapes the extraction directory: " + name);
+                }
+
+                byte[] data = memoryJar.getEntry(name).readAllBytes();
+
+                Files.createDirectories(out.getParent());
+                Files.write(out, data);
+
+                manifest.setProperty(name, ChecksumAlgorithm.toHex(ChecksumAlgorithm.SHA256.digest(data)));
+            }
+        }
+
+        try (OutputStream out = Files.newOutputStream(directory.resolve(MANIFEST))) {
+            manifest.store(out, null);
+        }
+    }
+
+    /**
+     * @return the extraction in the directory, or null if it is missing or any file does not match its recorded digest
+     */
+    private static @Nullable NativeLibrary open(Path directory) throws IOException {
+        Path manifestFile = directory.resolve(MANIFEST);
+        if (!Files.exists(manifestFile)) return null;
+
+        Properties manifest = new Properties();
+        try (InputStream in = Files.newInputStream(manifestFile)) {
+            manifest.load(in);
+        }
+
+        Map<String, Path> files = new LinkedHashMap<>();
+        for (String name : manifest.stringPropertyNames()) {
+            Path file = directory.resolve(name);
+            if (!Files.isRegularFile(file)) return null;
+
+            byte[] digest = ChecksumAlgorithm.SHA256.digest(Files.readAllBytes(file));
+            if (!ChecksumAlgorithm.toHex(digest).equals(manifest.getProperty(name))) return null;
+
+            files.put(name, file);
+        }
+
+        return new NativeLibrary(directory, files);
+    }
+
+    public static boolean isNative(@NotNull String name) {
+        if (name.endsWith("/")) return false;
+
+        String fileName = name.substring(name.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+        return fileName.endsWith(".so") || fileName.contains(".so.") || fileName.endsWith(".dll")
+                || fileName.endsWith(".dylib") || fileName.endsWith(".jnilib");
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> stream = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public @NotNull Path getDirectory() {
+        return this.directory;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import gg.saki.izon.utils.IzonException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The native binaries extracted from a jar by {@link NativeCache}.
+ * <p>
+ * Libraries that look for their binaries in a directory (e.g. LWJGL's {@code org.lwjgl.librarypath}) can be pointed
+ * at {@link #getDirectory()}, the entries keep the paths they had inside the jar.
+ */
+public class NativeLibrary {
+
+    private final @NotNull Path directory;
+    private final @NotNull Map<String, Path> files;
+
+    NativeLibrary(@NotNull Path directory, @NotNull Map<String, Path> files) {
+        this.directory = directory;
+        this.files = Collections.unmodifiableMap(files);
+    }
+
+    public @NotNull Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * @return the extracted files keyed by their entry name inside the jar
+     */
+    public @NotNull Map<String, Path> getFiles() {
+        return this.files;
+    }
+
+    public @Nullable Path getFile(@NotNull String entryName) {
+        return this.files.get(entryName);
+    }
+
+    /**
+     * Finds a binary by its library name, as passed to {@link System#loadLibrary(String)}.
+     * <p>
+     * Jars bundling several platforms are disambiguated by the current OS and architecture appearing in the entry's path.
+     *
+     * @return the best match, or null if no binary has the platform's file name for the library
+     */
+    public @Nullable Path find(@NotNull String libraryName) {
+        String mapped = System.mapLibraryName(libraryName);
+        // older macOS JDKs map to .jnilib, newer ones to .dylib
+        String alternative = mapped.endsWith(".jnilib") ? mapped.replace(".jnilib", ".dylib") : mapped.replace(".dylib", ".jnilib");
+
+        List<String> os = osTokens();
+        List<String> arch = archTokens();
+
+        Path best = null;
+        int bestScore = -1;
+
+        for (Map.Entry<String, Path> entry : this.files.entrySet()) {
+            String fileName = entry.getValue().getFileName().toString();
+            if (!fileName.equals(mapped) && !fileName.equals(alternative)) continue;
+
+            Collection<String> segments = Arrays.asList(entry.getKey().toLowerCase(Locale.ROOT).split("[/.\\-]"));
+
+            int score = 0;
+            if (!Collections.disjoint(segments, os)) score++;
+            if (!Collections.disjoint(segments, arch)) score++;
+
+            if (score > bestScore) {
+                best = entry.getValue();
+                bestScore = score;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Loads a binary found by {@link #find(String)}.
+     * <p>
+     * The JVM binds native libraries to the class loader of the class calling {@link System#load(String)}, here Izon's.
+     * If the library's classes live in a different class loader, call {@code System.load} from one of them with {@link #find(String)} instead.
+     */
+    public void load(@NotNull String libraryName) throws IzonException {
+        Path file = this.find(libraryName);
+        if (file == null) {
+            throw new IzonException("Could not find native library " + libraryName + " in " + this.directory);
+        }
+
+        System.load(file.toAbsolutePath().toString());
+    }
+
+    private static List<String> osTokens() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+
+        if (os.startsWith("windows")) return Arrays.asList("windows", "win", "win32", "win64");
+        if (os.startsWith("mac") || os.startsWith("darwin")) return Arrays.asList("mac", "macos", "osx", "darwin");
+        return Collections.singletonList(os.replace(' ', '_'));
+    }
+
+    private static List<String> archTokens() {
+        String arch = System.getProperty("os.arch", "").toLowerCase(Locale.ROOT);
+
+        switch (arch) {
+            case "amd64":
+            case "x86_64":
+                return Arrays.asList("x86_64", "amd64", "x64");
+            case "aarch64":
+            case "arm64":
+                return Arrays.asList("aarch64", "arm64");
+            case "x86":
+            case "i386":
+            case "i686":
+                return Arrays.asList("x86", "i386", "i686");
+            default:
+                return Collections.singletonList(arch);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Remembers which repositories did not have an artifact, so later lookups can skip them without a round-trip.
+ * <p>
+ * Misses are persisted in the store, so they are shared by every {@link gg.saki.izon.Izon} instance (and process)
+ * using the same save directory.
+ */
+public class NegativeCache {
+
+    private final @NotNull StoreFile file;
+
+    private Properties snapshot = new Properties();
+    private long snapshotModified = -1;
+
+    public NegativeCache(@NotNull Path file) {
+        this.file = new StoreFile(file);
+    }
+
+    /**
+     * @param ttl how long a recorded miss stays valid, in milliseconds
+     * @return whether the repository is known not to have the artifact at {@code path}
+     */
+    public boolean isMissing(@NotNull URL repository, @NotNull String path, long ttl) throws IOException {
+        if (ttl <= 0) return false;
+
+        long missed = parseTime(this.read().getProperty(key(repository, path)));
+        return missed != -1 && System.currentTimeMillis() - missed < ttl;
+    }
+
+    public void recordMiss(@NotNull URL repository, @NotNull String path) throws IOException {
+        String key = key(repository, path);
+        String now = Long.toString(System.currentTimeMillis());
+
+        this.file.update(properties -> properties.setProperty(key, now));
+        this.invalidate();
+    }
+
+    /**
+     * Forgets a recorded miss, e.g. once the artifact has been found there after all.
+     */
+    public void clear(@NotNull URL repository, @NotNull String path) throws IOException {
+        String key = key(repository, path);
+
+        if (this.read().containsKey(key)) {
+            this.file.update(properties -> properties.remove(key));
+            this.invalidate();
+        }
+    }
+
+    /**
+     * Removes every miss older than the given TTL, along with unreadable entries.
+     */
+    public void prune(long ttl) throws IOException {
+        long now = System.currentTimeMillis();
+        this.file.update(properties -> properties.entrySet().removeIf(entry -> {
+            long missed = parseTime((String) entry.getValue());
+            return missed == -1 || now - missed >= ttl;
+        }));
+        this.invalidate();
+    }
+
+    /**
+     * @return the time a miss was recorded, or -1 if the entry is absent or corrupt
+     */
+    private static long parseTime(@Nullable String value) {
+        if (value == null) return -1;
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Makes the next read see our own write, even if it left the file's modification time unchanged.
+     */
+    private synchronized void invalidate() {
+        this.snapshotModified = Long.MIN_VALUE;
+    }
+
+    private synchronized Properties read() throws IOException {
+        Path path = this.file.getFile();
+        long modified = Files.exists(path) ? Files.getLastModifiedTime(path).toMillis() : -1;
+
+        // only re-read the file once another writer has touched it
+        if (modified != this.snapshotModified) {
+            this.snapshot = this.file.read();
+            this.snapshotModified = modified;
+        }
+
+        return this.snapshot;
+    }
+
+    private static String key(URL repository, String path) {
+        String base = repository.toString();
+        return base.endsWith("/") ? base + path : base + '/' + path;
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps a {@link LibraryStore} from growing forever.
+ * <p>
+ * Stored jars are evicted least recently used first until the store fits its size cap, skipping the ones that are
+ * referenced or were used recently, since another process may still be loading them. A jar and the copies derived
+ * from it (relocated, repacked or shrunk) are kept or evicted together, as one of them in use needs the others to be
+ * rebuilt. Temp files left behind by
+ * crashed writers are removed once they are old enough and no writer currently holds the {@link StoreLock}.
+ * Old entries of the store's {@link NegativeCache} are pruned as well.
+ */
+public class StoreCollector {
+
+    private static final String RELOCATED = "-relocated.jar";
+    private static final Pattern DERIVED = Pattern.compile("(.+)-(?:stored|shrunk)-[0-9a-f]{12}\\.jar");
+
+    private final @NotNull LibraryStore store;
+
+    private final long maxSize;
+    private final long minIdleTime;
+    private final long tempFileAge;
+    private final long missAge;
+
+    public StoreCollector(@NotNull LibraryStore store, long maxSize, long minIdleTime, long tempFileAge, long missAge) {
+        this.store = store;
+        this.maxSize = maxSize;
+        this.minIdleTime = minIdleTime;
+        this.tempFileAge = tempFileAge;
+        this.missAge = missAge;
+    }
+
+    /**
+     * @param referenced the file names that must be kept regardless of their last use, e.g. the ones currently loaded
+     * @return what was removed, or {@link Result#SKIPPED} if the store is being written to
+     */
+    public @NotNull Result collect(@NotNull Collection<String> referenced) throws IOException {
+        StoreLock lock = this.store.getLock();
+        if (!lock.tryLockExclusive()) {
+            return Result.SKIPPED;
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+            int tempFiles = this.removeTempFiles(now);
+            this.store.getNegativeCache().prune(this.missAge);
+
+            Map<String, Group> groups = new HashMap<>();
+            long size = 0;
+
+            for (Artifact artifact : this.listArtifacts()) {
+                groups.computeIfAbsent(originalName(artifact.name), name -> new Group()).add(artifact, referenced);
+                size += artifact.size;
+            }
+
+            List<String> evicted = new ArrayList<>();
+            long freed = 0;
+
+            List<Group> candidates = new ArrayList<>(groups.values());
+            candidates.sort(Comparator.comparingLong(group -> group.lastUsed));
+
+            for (Group group : candidates) {
+                if (size <= this.maxSize) break;
+
+                if (group.referenced || now - group.lastUsed < this.minIdleTime) continue;
+
+                for (Artifact artifact : group.artifacts) {
+                    if (!deleteQuietly(artifact.path)) continue;
+
+                    size -= artifact.size;
+                    freed += artifact.size;
+                    evicted.add(artifact.name);
+                }
+            }
+
+            if (!evicted.isEmpty()) {
+                this.store.forget(new HashSet<>(evicted));
+            }
+
+            return new Result(evicted, freed, tempFiles, size);
+        } finally {
+            lock.unlockExclusive();
+        }
+    }
+
+    private List<Artifact> listArtifacts() throws IOException {
+        Properties usage = this.store.readUsage();
+        List<Artifact> artifacts = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.store.getDirectory(), "*.jar")) {
+            for (Path path : stream) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    // deleted by another process since it was listed
+                    continue;
+                }
+
+                if (!attributes.isRegularFile()) continue;
+
+                String name = path.getFileName().toString();
+
+                // jars stored before usage was tracked, or with a corrupt entry, count as used when they were written
+                long lastUsed = parseTime(usage.getProperty(name), attributes.lastModifiedTime().toMillis());
+                artifacts.add(new Artifact(path, name, attributes.size(), lastUsed));
+            }
+        }
+
+        return artifacts;
+    }
+
+    private static long parseTime(String value, long fallback) {
+        if (value == null) return fallback;
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * @return the name of the downloaded jar a stored jar was derived from, or the name itself if it was downloaded
+     */
+    static String originalName(String name) {
+        while (true) {
+            Matcher matcher = DERIVED.matcher(name);
+
+            if (name.endsWith(RELOCATED) && name.length() > RELOCATED.length()) {
+                name = name.substring(0, name.length() - RELOCATED.length());
+            } else if (matcher.matches()) {
+                name = matcher.group(1) + ".jar";
+            } else {
+                return name;
+            }
+        }
+    }
+
+    private int removeTempFiles(long now) throws IOException {
+        List<Path> candidates = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.store.getDirectory(), "*" + LibraryStore.TEMP_SUFFIX)) {
+            stream.forEach(candidates::add);
+        }
+
+        Path dataDirectory = this.store.getDataDirectory();
+        if (Files.isDirectory(dataDirectory)) {
+            Files.walkFileTree(dataDirectory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (file.getFileName().toString().endsWith(".tmp")) {
+                        candidates.add(file);
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // renamed or deleted by a writer while walking
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        int removed = 0;
+        for (Path path : candidates) {
+            long modified;
+            try {
+                modified = Files.getLastModifiedTime(path).toMillis();
+            } catch (IOException e) {
+                // already moved into place or deleted
+                continue;
+            }
+
+            // young temp files may belong to a writer that does not use the store lock
+            if (now - modified < this.tempFileAge) continue;
+
+            if (deleteQuietly(path)) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    private static boolean deleteQuietly(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // still open elsewhere (e.g. on Windows), try again next time
+            return false;
+        }
+    }
+
+    public static Builder builder(@NotNull LibraryStore store) {
+        return new Builder(store);
+    }
+
+    public static class Result {
+
+        public static final Result SKIPPED = new Result(Collections.emptyList(), 0, 0, -1);
+
+        private final @NotNull List<String> evicted;
+        private final long freedBytes;
+        private final int removedTempFiles;
+        private final long remainingSize;
+
+        public Result(@NotNull List<String> evicted, long freedBytes, int removedTempFiles, long remainingSize) {
+            this.evicted = Collections.unmodifiableList(evicted);
+            this.freedBytes = freedBytes;
+            this.removedTempFiles = removedTempFiles;
+            this.remainingSize = remainingSize;
+        }
+
+        public @NotNull List<String> getEvicted() {
+            return this.evicted;
+        }
+
+        public long getFreedBytes() {
+            return this.freedBytes;
+        }
+
+        public int getRemovedTempFiles() {
+            return this.removedTempFiles;
+        }
+
+        /**
+         * @return the size of the stored jars after collection, or -1 if collection was skipped
+         */
+        public long getRemainingSize() {
+            return this.remainingSize;
+        }
+
+        public boolean isSkipped() {
+            return this == SKIPPED;
+        }
+    }
+
+    /**
+     * A downloaded jar and the jars derived from it.
+     */
+    private static final class Group {
+
+        private final List<Artifact> artifacts = new ArrayList<>();
+        private long lastUsed = Long.MIN_VALUE;
+        private boolean referenced;
+
+        private void add(Artifact artifact, Collection<String> referenced) {
+            this.artifacts.add(artifact);
+            this.lastUsed = Math.max(this.lastUsed, artifact.lastUsed);
+            this.referenced |= referenced.contains(artifact.name);
+        }
+    }
+
+    private static final class Artifact {
+
+        private final Path path;
+        private final String name;
+        private final long size;
+        private final long lastUsed;
+
+        private Artifact(Path path, String name, long size, long lastUsed) {
+            this.path = path;
+            this.name = name;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    public static class Builder {
+
+        private final LibraryStore store;
+
+        private long maxSize = 512L * 1024 * 1024;
+        private long minIdleTime = TimeUnit.DAYS.toMillis(1);
+        private long tempFileAge = TimeUnit.HOURS.toMillis(1);
+        private long missAge = TimeUnit.DAYS.toMillis(1);
+
+        private Builder(@NotNull LibraryStore store) {
+            this.store = store;
+        }
+
+        /**
+         * The size, in bytes, the stored jars are trimmed down to.
+         */
+        public Builder maxSize(long maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * How long, in milliseconds, a jar must have gone unused before it can be evicted.
+         */
+        public Builder minIdleTime(long minIdleTime) {
+            this.minIdleTime = minIdleTime;
+            return this;
+        }
+
+        /**
+         * How old, in milliseconds, a temp file must be before it is considered orphaned.
+         */
+        public Builder tempFileAge(long tempFileAge) {
+            this.tempFileAge = tempFileAge;
+            return this;
+        }
+
+        /**
+         * How old, in milliseconds, a recorded miss must be before it is pruned from the negative cache.
+         * Keep it at least as long as the {@link gg.saki.izon.utils.DownloadSettings#getNegativeCacheTtl() TTL} in use.
+         */
+        public Builder missAge(long missAge) {
+            this.missAge = missAge;
+            return this;
+        }
+
+        public StoreCollector build() {
+            return new StoreCollector(this.store, this.maxSize, this.minIdleTime, this.tempFileAge, this.missAge);
+        }
+    }
+}
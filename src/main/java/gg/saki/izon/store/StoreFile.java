@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A properties file inside the store that may be shared by several processes.
+ * <p>
+ * Every update is a read-modify-write performed under an exclusive file lock, so concurrent writers don't lose each other's entries.
+ */
+public class StoreFile {
+
+    // file locks are held by the whole JVM, so threads must coordinate among themselves first
+    private static final Map<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    private final @NotNull Path file;
+    private final @NotNull Object monitor;
+
+    public StoreFile(@NotNull Path file) {
+        this.file = file;
+        this.monitor = MONITORS.computeIfAbsent(file.toAbsolutePath().normalize(), path -> new Object());
+    }
+
+    public @NotNull Properties read() throws IOException {
+        Properties properties = new Properties();
+        if (!Files.exists(this.file)) {
+            return properties;
+        }
+
+        synchronized (this.monitor) {
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+                FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+
+                try {
+                    properties.load(Channels.newInputStream(channel));
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+
+        return properties;
+    }
+
+    public void update(@NotNull Consumer<Properties> updater) throws IOException {
+        Files.createDirectories(this.file.getParent());
+
+        synchronized (this.monitor) {
+            this.locked(updater);
+        }
+    }
+
+    private void locked(Consumer<Properties> updater) throws IOException {
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+
+            try {
+                Properties properties = new Properties();
+                properties.load(Channels.newInputStream(channel));
+
+                updater.accept(properties);
+
+                channel.truncate(0);
+                channel.position(0);
+
+                OutputStream out = Channels.newOutputStream(channel);
+                properties.store(out, null);
+                out.flush();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    public @NotNull Path getFile() {
+        return this.file;
+    }
+}
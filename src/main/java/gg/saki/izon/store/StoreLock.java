@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A read-write lock over the whole store, shared by every thread and process using it.
+ * <p>
+ * Writers of new files hold it shared, so maintenance can only run once nobody is halfway through writing a file.
+ */
+public class StoreLock {
+
+    // file locks are held by the whole JVM, so threads share one file lock between them
+    private static final Map<Path, StoreLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final @NotNull Path file;
+    private final @NotNull ReentrantReadWriteLock local = new ReentrantReadWriteLock();
+
+    private int sharedHolders;
+    private @Nullable FileChannel sharedChannel;
+    private @Nullable FileLock sharedLock;
+
+    private @Nullable FileChannel exclusiveChannel;
+    private @Nullable FileLock exclusiveLock;
+
+    private StoreLock(@NotNull Path file) {
+        this.file = file;
+    }
+
+    static @NotNull StoreLock of(@NotNull Path file) {
+        return LOCKS.computeIfAbsent(file.toAbsolutePath().normalize(), StoreLock::new);
+    }
+
+    /**
+     * Blocks until the store can be written to. Must be paired with {@link #unlockShared()}.
+     */
+    public void lockShared() throws IOException {
+        this.local.readLock().lock();
+
+        try {
+            synchronized (this) {
+                if (this.sharedHolders == 0) {
+                    Files.createDirectories(this.file.getParent());
+
+                    FileChannel channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    try {
+                        this.sharedLock = channel.lock(0, Long.MAX_VALUE, true);
+                    } catch (IOException e) {
+                        channel.close();
+                        throw e;
+                    }
+
+                    this.sharedChannel = channel;
+                }
+
+                this.sharedHolders++;
+            }
+        } catch (IOException e) {
+            this.local.readLock().unlock();
+            throw e;
+        }
+    }
+
+    public void unlockShared() throws IOException {
+        try {
+            synchronized (this) {
+                if (--this.sharedHolders == 0) {
+                    try {
+                        this.sharedLock.release();
+                    } finally {
+                        this.sharedChannel.close();
+                        this.sharedLock = null;
+                        this.sharedChannel = null;
+                    }
+                }
+            }
+        } finally {
+            this.local.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the lock exclusively without waiting.
+     *
+     * @return whether the lock was acquired, in which case it must be released with {@link #unlockExclusive()}
+     */
+    public boolean tryLockExclusive() throws IOException {
+        if (!this.local.writeLock().tryLock()) {
+            return false;
+        }
+
+        try {
+            Files.createDirectories(this.file.getParent());
+
+            FileChannel channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+
+            if (lock == null) {
+                channel.close();
+                this.local.writeLock().unlock();
+                return false;
+            }
+
+            this.exclusiveChannel = channel;
+            this.exclusiveLock = lock;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            this.local.writeLock().unlock();
+            throw e;
+        }
+    }
+
+    public void unlockExclusive() throws IOException {
+        try {
+            this.exclusiveLock.release();
+        } finally {
+            this.exclusiveChannel.close();
+            this.exclusiveLock = null;
+            this.exclusiveChannel = null;
+
+            this.local.writeLock().unlock();
+        }
+    }
+}
@@ -24,9 +24,16 @@
 
 package gg.saki.izon.utils;
 
+import gg.saki.izon.download.ChecksumAlgorithm;
+import gg.saki.izon.download.RetryPolicy;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 public class DownloadSettings {
 
@@ -38,11 +45,32 @@ public class DownloadSettings {
 
     private final @NotNull String userAgent;
 
+    private final @NotNull RetryPolicy retryPolicy;
+    private final double hedgePercentile;
+
+    private final long metadataTtl;
+
+    private final @NotNull List<ChecksumAlgorithm> remoteChecksums;
+
+    private final long negativeCacheTtl;
+
+    private final boolean deltas;
+
     public DownloadSettings(int connectionTimeout, int readTimeout, int bufferSize, @NotNull String userAgent) {
+        this(connectionTimeout, readTimeout, bufferSize, userAgent, RetryPolicy.NONE, 0, TimeUnit.MINUTES.toMillis(10), Collections.emptyList(), 0, false);
+    }
+
+    private DownloadSettings(int connectionTimeout, int readTimeout, int bufferSize, @NotNull String userAgent, @NotNull RetryPolicy retryPolicy, double hedgePercentile, long metadataTtl, @NotNull List<ChecksumAlgorithm> remoteChecksums, long negativeCacheTtl, boolean deltas) {
         this.connectionTimeout = connectionTimeout;
         this.readTimeout = readTimeout;
         this.bufferSize = bufferSize;
         this.userAgent = userAgent;
+        this.retryPolicy = retryPolicy;
+        this.hedgePercentile = hedgePercentile;
+        this.metadataTtl = metadataTtl;
+        this.remoteChecksums = Collections.unmodifiableList(new ArrayList<>(remoteChecksums));
+        this.negativeCacheTtl = negativeCacheTtl;
+        this.deltas = deltas;
     }
 
     public int getConnectionTimeout() {
@@ -61,17 +89,64 @@ public class DownloadSettings {
         return this.userAgent;
     }
 
+    public @NotNull RetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    /**
+     * The observed latency percentile (between 0 and 1) after which a second, hedged request is started against the
+     * repository's first mirror, or 0 if hedging is disabled. Repositories without a mirror are never hedged.
+     */
+    public double getHedgePercentile() {
+        return this.hedgePercentile;
+    }
+
+    public boolean isHedged() {
+        return this.hedgePercentile > 0;
+    }
+
+    /**
+     * How long cached {@code maven-metadata.xml} files are trusted (in milliseconds) before being revalidated with the repository.
+     */
+    public long getMetadataTtl() {
+        return this.metadataTtl;
+    }
+
+    /**
+     * The checksum sidecars to fetch alongside each artifact, in order of preference.
+     * The first one the repository publishes is used to verify the download.
+     */
+    public @NotNull List<ChecksumAlgorithm> getRemoteChecksums() {
+        return this.remoteChecksums;
+    }
+
+    /**
+     * How long (in milliseconds) a repository that did not have an artifact is skipped for, or 0 (the default) to always
+     * ask it again.
+     */
+    public long getNegativeCacheTtl() {
+        return this.negativeCacheTtl;
+    }
+
+    /**
+     * Whether a library is first requested as a {@link gg.saki.izon.download.BinaryDelta binary delta} against another version
+     * of it already in the store, falling back to downloading it in full if the repository doesn't publish one.
+     */
+    public boolean isDeltas() {
+        return this.deltas;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         DownloadSettings that = (DownloadSettings) o;
-        return this.connectionTimeout == that.connectionTimeout && this.readTimeout == that.readTimeout && this.bufferSize == that.bufferSize && this.userAgent.equals(that.userAgent);
+        return this.connectionTimeout == that.connectionTimeout && this.readTimeout == that.readTimeout && this.bufferSize == that.bufferSize && this.userAgent.equals(that.userAgent) && this.retryPolicy.equals(that.retryPolicy) && Double.compare(that.hedgePercentile, this.hedgePercentile) == 0 && this.metadataTtl == that.metadataTtl && this.remoteChecksums.equals(that.remoteChecksums) && this.negativeCacheTtl == that.negativeCacheTtl && this.deltas == that.deltas;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(this.connectionTimeout, this.readTimeout, this.bufferSize, this.userAgent);
+        return Objects.hash(this.connectionTimeout, this.readTimeout, this.bufferSize, this.userAgent, this.retryPolicy, this.hedgePercentile, this.metadataTtl, this.remoteChecksums, this.negativeCacheTtl, this.deltas);
     }
 
     public static Builder builder() {
@@ -86,6 +161,17 @@ public class DownloadSettings {
 
         private String userAgent = "Izon";
 
+        private RetryPolicy retryPolicy = RetryPolicy.NONE;
+        private double hedgePercentile = 0;
+
+        private long metadataTtl = TimeUnit.MINUTES.toMillis(10);
+
+        private final List<ChecksumAlgorithm> remoteChecksums = new ArrayList<>();
+
+        private long negativeCacheTtl = 0;
+
+        private boolean deltas = false;
+
         private Builder() {
             // seal class to prevent external instantiation
         }
@@ -110,8 +196,50 @@ public class DownloadSettings {
             return this;
         }
 
+        public Builder retryPolicy(@NotNull RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * @param hedgePercentile between 0 and 1, 0 disables hedging
+         */
+        public Builder hedgePercentile(double hedgePercentile) {
+            if (!(hedgePercentile >= 0 && hedgePercentile <= 1)) {
+                throw new IllegalArgumentException("Hedge percentile must be between 0 and 1: " + hedgePercentile);
+            }
+
+            this.hedgePercentile = hedgePercentile;
+            return this;
+        }
+
+        public Builder metadataTtl(long metadataTtl) {
+            this.metadataTtl = metadataTtl;
+            return this;
+        }
+
+        public Builder remoteChecksum(@NotNull ChecksumAlgorithm algorithm) {
+            this.remoteChecksums.add(algorithm);
+            return this;
+        }
+
+        public Builder remoteChecksums(@NotNull Collection<ChecksumAlgorithm> algorithms) {
+            this.remoteChecksums.addAll(algorithms);
+            return this;
+        }
+
+        public Builder negativeCacheTtl(long negativeCacheTtl) {
+            this.negativeCacheTtl = negativeCacheTtl;
+            return this;
+        }
+
+        public Builder deltas(boolean deltas) {
+            this.deltas = deltas;
+            return this;
+        }
+
         public DownloadSettings build() {
-            return new DownloadSettings(this.connectionTimeout, this.readTimeout, this.bufferSize, this.userAgent);
+            return new DownloadSettings(this.connectionTimeout, this.readTimeout, this.bufferSize, this.userAgent, this.retryPolicy, this.hedgePercentile, this.metadataTtl, this.remoteChecksums, this.negativeCacheTtl, this.deltas);
         }
     }
 }
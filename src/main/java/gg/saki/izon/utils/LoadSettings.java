@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.utils;
+
+import java.util.Objects;
+
+public class LoadSettings {
+
+    public static final LoadSettings DEFAULT = LoadSettings.builder().build();
+
+    private final boolean inMemory;
+    private final boolean lazy;
+
+    private final boolean relocateOnDefine;
+    private final long relocationCacheSize;
+
+    private final boolean indexed;
+    private final boolean eager;
+    private final boolean stored;
+
+    public LoadSettings(boolean inMemory, boolean lazy) {
+        this(inMemory, lazy, false, 8L * 1024 * 1024, false, false, false);
+    }
+
+    private LoadSettings(boolean inMemory, boolean lazy, boolean relocateOnDefine, long relocationCacheSize, boolean indexed, boolean eager, boolean stored) {
+        this.inMemory = inMemory;
+        this.lazy = lazy;
+        this.relocateOnDefine = relocateOnDefine;
+        this.relocationCacheSize = relocationCacheSize;
+        this.indexed = indexed;
+        this.eager = eager;
+        this.stored = stored;
+    }
+
+    /**
+     * Whether downloaded libraries are kept in off-heap memory instead of being written to the save directory.
+     */
+    public boolean isInMemory() {
+        return this.inMemory;
+    }
+
+    /**
+     * Whether libraries are only downloaded the first time a class from one of their {@link gg.saki.izon.libraries.Library#getPackages() packages} is requested.
+     */
+    public boolean isLazy() {
+        return this.lazy;
+    }
+
+    /**
+     * Whether relocated libraries are served from the original jar and relocated class by class as they are defined,
+     * instead of writing a fully relocated copy upfront.
+     */
+    public boolean isRelocateOnDefine() {
+        return this.relocateOnDefine;
+    }
+
+    /**
+     * The maximum number of relocated class bytes kept in memory per library when {@link #isRelocateOnDefine() relocating on define}.
+     */
+    public long getRelocationCacheSize() {
+        return this.relocationCacheSize;
+    }
+
+    /**
+     * Whether stored libraries are served through one package-indexed source per class loader, instead of
+     * adding every jar to the class path, so lookups skip the jars that cannot contain the requested entry.
+     */
+    public boolean isIndexed() {
+        return this.indexed;
+    }
+
+    /**
+     * Whether stored jars are opened, and their central directory validated, while loading (in parallel for batches),
+     * so corrupt jars fail the load straight away and the first class lookups don't parse jars one by one.
+     */
+    public boolean isEager() {
+        return this.eager;
+    }
+
+    /**
+     * Whether stored libraries are loaded from an uncompressed copy kept next to the original jar,
+     * so class bytes are read straight from the file instead of being inflated first. The copy is written once per jar.
+     */
+    public boolean isStored() {
+        return this.stored;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LoadSettings that = (LoadSettings) o;
+        return this.inMemory == that.inMemory && this.lazy == that.lazy && this.relocateOnDefine == that.relocateOnDefine && this.relocationCacheSize == that.relocationCacheSize && this.indexed == that.indexed && this.eager == that.eager && this.stored == that.stored;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.inMemory, this.lazy, this.relocateOnDefine, this.relocationCacheSize, this.indexed, this.eager, this.stored);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private boolean inMemory = false;
+        private boolean lazy = false;
+        private boolean relocateOnDefine = false;
+        private long relocationCacheSize = 8L * 1024 * 1024;
+        private boolean indexed = false;
+        private boolean eager = false;
+        private boolean stored = false;
+
+        private Builder() {
+            // seal class to prevent external instantiation
+        }
+
+        public Builder inMemory(boolean inMemory) {
+            this.inMemory = inMemory;
+            return this;
+        }
+
+        public Builder lazy(boolean lazy) {
+            this.lazy = lazy;
+            return this;
+        }
+
+        public Builder relocateOnDefine(boolean relocateOnDefine) {
+            this.relocateOnDefine = relocateOnDefine;
+            return this;
+        }
+
+        public Builder relocationCacheSize(long relocationCacheSize) {
+            this.relocationCacheSize = relocationCacheSize;
+            return this;
+        }
+
+        public Builder indexed(boolean indexed) {
+            this.indexed = indexed;
+            return this;
+        }
+
+        public Builder eager(boolean eager) {
+            this.eager = eager;
+            return this;
+        }
+
+        public Builder stored(boolean stored) {
+            this.stored = stored;
+            return this;
+        }
+
+        public LoadSettings build() {
+            return new LoadSettings(this.inMemory, this.lazy, this.relocateOnDefine, this.relocationCacheSize, this.indexed, this.eager, this.stored);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassReferencesTest {
+
+    @Test
+    void collectsReferences() throws IOException {
+        Set<String> references = ClassReferences.of(classFile(Sample.class));
+
+        // class entries, descriptors and signatures
+        assertTrue(references.contains("java/util/concurrent/atomic/AtomicLong"));
+        assertTrue(references.contains("java/util/zip/CRC32"));
+        assertTrue(references.contains("java/util/List"));
+        assertTrue(references.contains("java/util/UUID"));
+
+        // a class only loaded by its name
+        assertTrue(references.contains("java/util/BitSet"));
+
+        // plain strings are left out
+        assertFalse(references.contains("checksum"));
+    }
+
+    @Test
+    void rejectsMalformedClassFiles() throws IOException {
+        byte[] classFile = classFile(Sample.class);
+
+        byte[] magic = classFile.clone();
+        magic[0] = 0;
+        assertThrows(IOException.class, () -> ClassReferences.of(magic));
+
+        // cut off in the middle of the constant pool
+        assertThrows(IOException.class, () -> ClassReferences.of(Arrays.copyOf(classFile, 32)));
+    }
+
+    private static byte[] classFile(Class<?> type) throws IOException {
+        String name = type.getName();
+
+        try (InputStream in = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+
+            return out.toByteArray();
+        }
+    }
+
+    @SuppressWarnings("unused")
+    static class Sample {
+
+        // 8 byte constants take two constant pool slots
+        private long seed = 0x1234_5678_9ABCL;
+        private double ratio = 0.123456789;
+
+        private final AtomicLong counter = new AtomicLong();
+        private List<UUID> ids;
+
+        long checksum(byte[] data) {
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            return crc.getValue() ^ this.seed;
+        }
+
+        Object load() throws ReflectiveOperationException {
+            return Class.forName("java.util.BitSet").getConstructor().newInstance();
+        }
+    }
+}
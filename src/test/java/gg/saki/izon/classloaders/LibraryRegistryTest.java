@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders;
+
+import gg.saki.izon.classloaders.impl.InstrumentationClassLoader;
+import gg.saki.izon.classloaders.url.IzonURLHandler;
+import gg.saki.izon.classloaders.url.MemoryJar;
+import gg.saki.izon.libraries.Library;
+import gg.saki.izon.libraries.Relocation;
+import gg.saki.izon.libraries.Repository;
+import gg.saki.izon.utils.IzonException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LibraryRegistryTest {
+
+    @Test
+    void loadsTheSameLibraryOnce() {
+        IzonClassLoader loader = loader();
+        Library library = library("1.0").build();
+
+        assertNull(LibraryRegistry.claim(loader, library));
+        LibraryRegistry.complete(loader, library, Library.Status.SUCCESS);
+
+        assertEquals(Library.Status.ALREADY_LOADED, LibraryRegistry.claim(loader, library));
+        assertEquals("1.0", LibraryRegistry.getLoadedVersion(loader, library));
+
+        // only the coordinates identify a library, not how it was asked for
+        Library deferred = library("1.0").priority(Library.Priority.DEFERRED).provides("org.example.foo").build();
+        assertEquals(Library.Status.ALREADY_LOADED, LibraryRegistry.claim(loader, deferred));
+    }
+
+    @Test
+    void throwsOnVersionConflicts() {
+        IzonClassLoader loader = loader();
+        Library library = library("1.0").build();
+
+        assertNull(LibraryRegistry.claim(loader, library));
+        LibraryRegistry.complete(loader, library, Library.Status.SUCCESS);
+
+        assertConflict(loader, library("2.0").build());
+        assertConflict(loader, library("1.0").relocate(new Relocation("org.example.foo", "shaded.foo", null, null)).build());
+
+        // other class loaders are unaffected
+        assertNull(LibraryRegistry.claim(loader(), library("2.0").build()));
+    }
+
+    @Test
+    void forgetsFailedLoads() {
+        IzonClassLoader loader = loader();
+        Library library = library("1.0").build();
+
+        assertNull(LibraryRegistry.claim(loader, library));
+        LibraryRegistry.complete(loader, library, Library.Status.DOWNLOAD_FAILED);
+
+        assertNull(LibraryRegistry.claim(loader, library("2.0").build()));
+    }
+
+    @Test
+    void sharesLoadsAcrossInstrumentationInstances(@TempDir Path directory) throws IOException {
+        IzonClassLoader first = new InstrumentationClassLoader(ClassLoader.getSystemClassLoader(), directory);
+        IzonClassLoader second = new InstrumentationClassLoader(ClassLoader.getSystemClassLoader(), directory);
+        Library library = Library.builder().gav("org.example:registry-shared:1.0").repository(Repository.MAVEN_CENTRAL).build();
+
+        URL source = IzonURLHandler.register(new MemoryJar(ByteBuffer.wrap(jar("registry/shared.txt"))));
+
+        try {
+            assertNull(LibraryRegistry.claim(first, library));
+            first.addURL(source);
+            LibraryRegistry.complete(first, library, Library.Status.SUCCESS);
+
+            // the second instance is told the library is loaded, so it must be able to see it
+            assertEquals(Library.Status.ALREADY_LOADED, LibraryRegistry.claim(second, library));
+            assertNotNull(second.getActualLoader().getResource("registry/shared.txt"));
+        } finally {
+            IzonURLHandler.unregister(source);
+        }
+    }
+
+    private static byte[] jar(String entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            out.putNextEntry(new ZipEntry(entry));
+            out.write(1);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void assertConflict(IzonClassLoader loader, Library library) {
+        IzonException exception = assertThrows(IzonException.class, () -> LibraryRegistry.claim(loader, library));
+        assertEquals(Library.Status.VERSION_CONFLICT, exception.getStatus());
+    }
+
+    private static IzonClassLoader loader() {
+        return new IzonClassLoader(new URLClassLoader(new URL[0], null)) {
+            @Override
+            public void addURL(URL url) {
+                // the registry never adds anything
+            }
+        };
+    }
+
+    private static Library.Builder library(String version) {
+        return Library.builder().gav("org.example:foo:" + version).repository(Repository.MAVEN_CENTRAL);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InstrumentationClassLoaderTest {
+
+    @Test
+    void appendsBatchesToTheSystemClassLoader(@TempDir Path directory) throws Exception {
+        // the test JVM allows attaching to itself
+        assertTrue(InstrumentationClassLoader.isSupported());
+
+        URL first = jar(directory, "gg.saki.izon.batchtest.first", "First").toUri().toURL();
+        URL second = jar(directory, "gg.saki.izon.batchtest.second", "Second").toUri().toURL();
+
+        Path batches = directory.resolve("batches");
+        new InstrumentationClassLoader(ClassLoader.getSystemClassLoader(), batches).addURLs(Arrays.asList(first, second));
+
+        ClassLoader system = ClassLoader.getSystemClassLoader();
+        for (String name : new String[]{"gg.saki.izon.batchtest.first.First", "gg.saki.izon.batchtest.second.Second"}) {
+            Class<?> type = Class.forName(name, false, system);
+
+            assertSame(system, type.getClassLoader());
+            assertEquals(name, type.getName());
+        }
+
+        // the batch jar is only needed until the class loader has read its Class-Path
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(batches)) {
+            assertFalse(stream.iterator().hasNext());
+        }
+    }
+
+    /**
+     * Compiles a single empty class into its own jar.
+     */
+    private static Path jar(Path directory, String packageName, String simpleName) throws IOException {
+        Path sources = Files.createDirectories(directory.resolve(simpleName));
+        Path source = sources.resolve(simpleName + ".java");
+        Files.write(source, ("package " + packageName + "; public class " + simpleName + " {}").getBytes("UTF-8"));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler);
+        assertEquals(0, compiler.run(null, null, null, "-d", sources.toString(), source.toString()));
+
+        String entry = packageName.replace('.', '/') + "/" + simpleName + ".class";
+        Path jar = directory.resolve(simpleName + ".jar");
+
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream stream = new JarOutputStream(out)) {
+            stream.putNextEntry(new JarEntry(entry));
+            stream.write(Files.readAllBytes(sources.resolve(entry)));
+        }
+
+        return jar;
+    }
+}
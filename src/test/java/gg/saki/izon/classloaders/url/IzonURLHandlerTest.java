@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders.url;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IzonURLHandlerTest {
+
+    private static final JarSource EMPTY = name -> null;
+
+    @Test
+    void releasesSourcesOfCollectedOwners() throws InterruptedException {
+        URLClassLoader owner = new URLClassLoader(new URL[0], null);
+        URL url = IzonURLHandler.register(EMPTY, owner);
+        assertNotNull(IzonURLHandler.getSource(url));
+
+        owner = null;
+
+        for (int i = 0; i < 50 && IzonURLHandler.getSource(url) != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+
+            // collected owners are expunged on the next registration
+            IzonURLHandler.unregister(IzonURLHandler.register(EMPTY));
+        }
+
+        assertNull(IzonURLHandler.getSource(url));
+    }
+
+    @Test
+    void keepsSourcesOfReachableOwners() {
+        URLClassLoader owner = new URLClassLoader(new URL[0], null);
+        URL url = IzonURLHandler.register(EMPTY, owner);
+
+        try {
+            System.gc();
+            IzonURLHandler.unregister(IzonURLHandler.register(EMPTY));
+
+            assertNotNull(IzonURLHandler.getSource(url));
+            assertNotNull(owner);
+        } finally {
+            IzonURLHandler.unregister(url);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.classloaders.url;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MemoryJarTest {
+
+    private static final byte[] HELLO = "hello".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void readsEntries() throws IOException {
+        MemoryJar jar = new MemoryJar(ByteBuffer.wrap(zip()));
+
+        assertEquals(2, jar.size());
+        assertArrayEquals(HELLO, jar.getEntry("a/hello.txt").readAllBytes());
+        assertArrayEquals(new byte[4096], jar.getEntry("a/zeros.bin").readAllBytes());
+    }
+
+    @Test
+    void rejectsOutOfBoundsLengths() throws IOException {
+        byte[] zip = zip();
+        int central = centralDirectory(zip);
+
+        // a name length running past the end of the buffer
+        byte[] name = zip.clone();
+        ByteBuffer.wrap(name).order(ByteOrder.LITTLE_ENDIAN).putShort(central + 28, (short) 0xFFFF);
+        assertThrows(ZipException.class, () -> new MemoryJar(ByteBuffer.wrap(name)));
+
+        byte[] comment = zip.clone();
+        ByteBuffer.wrap(comment).order(ByteOrder.LITTLE_ENDIAN).putShort(central + 32, (short) 0xFFFF);
+        assertThrows(ZipException.class, () -> new MemoryJar(ByteBuffer.wrap(comment)));
+
+        byte[] offset = zip.clone();
+        ByteBuffer end = ByteBuffer.wrap(offset).order(ByteOrder.LITTLE_ENDIAN);
+        end.putInt(offset.length - 22 + 16, 0x7FFFFFF0);
+        assertThrows(ZipException.class, () -> new MemoryJar(ByteBuffer.wrap(offset)));
+    }
+
+    @Test
+    void checksRecordedSizes() throws IOException {
+        byte[] zip = zip();
+        int central = centralDirectory(zip);
+
+        // the first entry is a/hello.txt
+        ByteBuffer.wrap(zip).order(ByteOrder.LITTLE_ENDIAN).putInt(central + 24, 2);
+        assertThrows(ZipException.class, () -> new MemoryJar(ByteBuffer.wrap(zip)).getEntry("a/hello.txt").readAllBytes());
+
+        ByteBuffer.wrap(zip).order(ByteOrder.LITTLE_ENDIAN).putInt(central + 24, 0xFFFFFFFF);
+        assertThrows(ZipException.class, () -> new MemoryJar(ByteBuffer.wrap(zip)).getEntry("a/hello.txt").readAllBytes());
+    }
+
+    @Test
+    void servesEntriesThroughUrls() throws IOException {
+        URL root = IzonURLHandler.register(new MemoryJar(ByteBuffer.wrap(zip())));
+
+        try {
+            try (InputStream in = new URL(root, "a/hello%2Etxt").openStream()) {
+                assertArrayEquals(HELLO, readAll(in));
+            }
+
+            assertThrows(MalformedURLException.class, () -> new URL(root, "a/hello%zz").openConnection());
+            assertThrows(MalformedURLException.class, () -> new URL(root, "a/hello%4").openConnection());
+        } finally {
+            IzonURLHandler.unregister(root);
+        }
+    }
+
+    private static byte[] zip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            out.putNextEntry(new ZipEntry("a/hello.txt"));
+            out.write(HELLO);
+            out.putNextEntry(new ZipEntry("a/zeros.bin"));
+            out.write(new byte[4096]);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static int centralDirectory(byte[] zip) {
+        // no archive comment, so the end record is the last 22 bytes
+        return ByteBuffer.wrap(zip).order(ByteOrder.LITTLE_ENDIAN).getInt(zip.length - 22 + 16);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+
+        for (int length; (length = in.read(buffer)) != -1; ) {
+            out.write(buffer, 0, length);
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.download;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryDeltaTest {
+
+    // magic, base and target SHA-256
+    private static final int LENGTH_OFFSET = 4 + 32 + 32;
+
+    @Test
+    void roundTrips() throws IOException {
+        byte[] base = random(1, 64 * 1024);
+        byte[] target = edit(base);
+
+        byte[] delta = BinaryDelta.create(base, target);
+
+        assertArrayEquals(target, BinaryDelta.apply(base, delta));
+        assertTrue(delta.length < target.length / 4, "delta of a small edit should be small, was " + delta.length);
+    }
+
+    @Test
+    void roundTripsEdgeCases() throws IOException {
+        byte[] base = random(2, 4096);
+
+        assertArrayEquals(base, BinaryDelta.apply(base, BinaryDelta.create(base, base)));
+        assertArrayEquals(new byte[0], BinaryDelta.apply(base, BinaryDelta.create(base, new byte[0])));
+        assertArrayEquals(base, BinaryDelta.apply(new byte[0], BinaryDelta.create(new byte[0], base)));
+
+        byte[] unrelated = random(3, 4096);
+        assertArrayEquals(unrelated, BinaryDelta.apply(base, BinaryDelta.create(base, unrelated)));
+    }
+
+    @Test
+    void roundTripsRepeatedRanges() throws IOException {
+        // the target copies the same base block many times over, outgrowing base and delta combined
+        byte[] base = random(4, 16);
+        byte[] target = new byte[16 * 1024];
+        for (int i = 0; i < target.length; i += base.length) {
+            System.arraycopy(base, 0, target, i, base.length);
+        }
+
+        assertArrayEquals(target, BinaryDelta.apply(base, BinaryDelta.create(base, target)));
+    }
+
+    @Test
+    void rejectsOtherBase() {
+        byte[] base = random(5, 4096);
+        byte[] delta = BinaryDelta.create(base, edit(base));
+
+        assertThrows(ChecksumException.class, () -> BinaryDelta.apply(random(6, 4096), delta));
+    }
+
+    @Test
+    void rejectsCorruptDeltas() {
+        byte[] base = random(7, 4096);
+        byte[] delta = BinaryDelta.create(base, edit(base));
+
+        assertThrows(IOException.class, () -> BinaryDelta.apply(base, new byte[0]));
+        assertThrows(IOException.class, () -> BinaryDelta.apply(base, Arrays.copyOf(delta, delta.length / 2)));
+
+        byte[] flipped = delta.clone();
+        flipped[flipped.length - 2] ^= 0x55;
+        assertThrows(IOException.class, () -> BinaryDelta.apply(base, flipped));
+    }
+
+    @Test
+    void rejectsOversizedTargetLength() {
+        byte[] base = random(8, 4096);
+        byte[] delta = BinaryDelta.create(base, edit(base));
+
+        // must fail on the header, before allocating the claimed target
+        ByteBuffer.wrap(delta).putInt(LENGTH_OFFSET, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> BinaryDelta.apply(base, delta));
+
+        ByteBuffer.wrap(delta).putInt(LENGTH_OFFSET, -1);
+        assertThrows(IOException.class, () -> BinaryDelta.apply(base, delta));
+    }
+
+    static byte[] random(long seed, int length) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Inserts, changes and appends a few bytes, like a new version of a jar with a handful of changed entries.
+     */
+    static byte[] edit(byte[] base) {
+        byte[] inserted = random(base.length, 100);
+        byte[] target = new byte[base.length + inserted.length + 10];
+
+        int middle = base.length / 3;
+        System.arraycopy(base, 0, target, 0, middle);
+        System.arraycopy(inserted, 0, target, middle, inserted.length);
+        System.arraycopy(base, middle, target, middle + inserted.length, base.length - middle);
+
+        for (int i = 0; i < 10; i++) {
+            target[target.length - 100 - i] ^= 0x7F;
+        }
+
+        return target;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.download;
+
+import com.sun.net.httpserver.HttpServer;
+import gg.saki.izon.libraries.Library;
+import gg.saki.izon.libraries.Repository;
+import gg.saki.izon.server.RepositoryServer;
+import gg.saki.izon.store.LibraryStore;
+import gg.saki.izon.store.NegativeCache;
+import gg.saki.izon.utils.DownloadSettings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Downloads from local servers standing in for remote repositories.
+ */
+class LibraryDownloaderTest {
+
+    private static final DownloadSettings SETTINGS = DownloadSettings.builder().deltas(true).build();
+
+    @Test
+    void rebuildsFromDelta(@TempDir Path directory) throws IOException {
+        byte[] base = BinaryDeltaTest.random(1, 32 * 1024);
+        byte[] target = BinaryDeltaTest.edit(base);
+
+        try (RepositoryServer server = serve(directory, base, target)) {
+            Artifact artifact = new LibraryDownloader().downloadDelta(library(server.toRepository(), "2.0"), "1.0", base, SETTINGS);
+
+            assertNotNull(artifact);
+            assertArrayEquals(target, artifact.getData());
+        }
+    }
+
+    @Test
+    void fallsBackWithoutUsableDelta(@TempDir Path directory) throws IOException {
+        byte[] base = BinaryDeltaTest.random(2, 32 * 1024);
+        byte[] target = BinaryDeltaTest.edit(base);
+
+        try (RepositoryServer server = serve(directory, base, target)) {
+            LibraryDownloader downloader = new LibraryDownloader();
+            Library library = library(server.toRepository(), "2.0");
+
+            // a base the repository doesn't have, and a local base that isn't the one the delta was computed against
+            assertNull(downloader.downloadDelta(library, "0.9", base, SETTINGS));
+            assertNull(downloader.downloadDelta(library, "1.0", BinaryDeltaTest.random(3, 1024), SETTINGS));
+
+            assertArrayEquals(target, downloader.download(library, SETTINGS).getData());
+        }
+    }
+
+    @Test
+    void givesUpOnRetryAfterBeyondMaxDelay() throws IOException {
+        DownloadSettings settings = DownloadSettings.builder().retryPolicy(RetryPolicy.builder().maxAttempts(5).initialDelay(10).maxDelay(100).build()).build();
+
+        try (StubRepository repository = new StubRepository(0)) {
+            repository.fail("3600");
+
+            long start = System.nanoTime();
+            HttpStatusException failure = assertThrows(HttpStatusException.class, () -> new LibraryDownloader().download(repository.library(), settings));
+
+            assertEquals(503, failure.getStatusCode());
+            assertEquals(1, repository.requests.get());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        }
+    }
+
+    @Test
+    void honoursShortRetryAfter() throws IOException {
+        DownloadSettings settings = DownloadSettings.builder().retryPolicy(RetryPolicy.builder().maxAttempts(3).initialDelay(10).maxDelay(1000).build()).build();
+
+        try (StubRepository repository = new StubRepository(0)) {
+            repository.fail("0");
+
+            assertArrayEquals(StubRepository.DATA, new LibraryDownloader().download(repository.library(), settings).getData());
+            assertEquals(2, repository.requests.get());
+        }
+    }
+
+    @Test
+    void failsOnUnusableSidecars() throws IOException {
+        DownloadSettings settings = DownloadSettings.builder().remoteChecksum(ChecksumAlgorithm.SHA256).build();
+
+        try (StubRepository repository = new StubRepository(0)) {
+            // not published, nothing to verify against
+            assertArrayEquals(StubRepository.DATA, new LibraryDownloader().download(repository.library(), settings).getData());
+
+            repository.sidecarStatus = 500;
+            assertThrows(IOException.class, () -> new LibraryDownloader().download(repository.library(), settings));
+
+            repository.sidecarStatus = 200;
+            repository.sidecar = "<html>Not Found</html>".getBytes(StandardCharsets.US_ASCII);
+            IOException malformed = assertThrows(IOException.class, () -> new LibraryDownloader().download(repository.library(), settings));
+            assertFalse(malformed instanceof ChecksumException);
+
+            repository.sidecar = (ChecksumAlgorithm.toHex(ChecksumAlgorithm.SHA256.digest(StubRepository.DATA)) + "  stub-1.0.jar").getBytes(StandardCharsets.US_ASCII);
+            assertEquals(1, new LibraryDownloader().download(repository.library(), settings).getDigests().size());
+        }
+    }
+
+    @Test
+    void hedgesOnlyAgainstMirrors() throws IOException {
+        DownloadSettings settings = DownloadSettings.builder().hedgePercentile(0.5).build();
+
+        try (StubRepository repository = new StubRepository(300)) {
+            LibraryDownloader downloader = downloader();
+            downloader.download(repository.library(), settings);
+
+            // without a mirror the slow primary is not requested a second time
+            assertEquals(1, repository.requests.get());
+        }
+
+        try (StubRepository repository = new StubRepository(300); StubRepository mirror = new StubRepository(0)) {
+            LibraryDownloader downloader = downloader();
+            Library library = Library.builder().gav(StubRepository.GAV).repository(new Repository(repository.url, null, null, Collections.singletonList(mirror.url))).build();
+
+            assertArrayEquals(StubRepository.DATA, downloader.download(library, settings).getData());
+            assertEquals(1, mirror.requests.get());
+        }
+    }
+
+    @Test
+    void forgetsMissesOnceFound(@TempDir Path directory) throws IOException {
+        NegativeCache misses = new NegativeCache(directory.resolve("missing.properties"));
+
+        try (StubRepository repository = new StubRepository(0)) {
+            Library library = repository.library();
+            misses.recordMiss(repository.url, library.getPath());
+
+            // asked without a TTL, the repository is tried and the stale miss dropped
+            new LibraryDownloader(misses).download(library, DownloadSettings.DEFAULT);
+            assertFalse(misses.isMissing(repository.url, library.getPath(), Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * @return a downloader with one slot per repository that has seen fast downloads, so it hedges after a millisecond
+     */
+    private static LibraryDownloader downloader() {
+        LibraryDownloader downloader = new LibraryDownloader();
+        downloader.setScheduler(DownloadScheduler.builder().maxConcurrentPerRepository(1).build());
+
+        for (int i = 0; i < 16; i++) {
+            downloader.getLatencies().record(1);
+        }
+
+        return downloader;
+    }
+
+    private static RepositoryServer serve(Path directory, byte[] base, byte[] target) throws IOException {
+        LibraryStore store = new LibraryStore(directory);
+        Files.createDirectories(directory);
+
+        Files.write(store.resolve(library(Repository.MAVEN_CENTRAL, "1.0")), base);
+        Files.write(store.resolve(library(Repository.MAVEN_CENTRAL, "2.0")), target);
+
+        return RepositoryServer.start(store, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+    }
+
+    private static Library library(Repository repository, String version) {
+        return Library.builder().gav("org.example:delta:" + version).repository(repository).build();
+    }
+
+    /**
+     * Serves a single artifact, optionally slowly or after a failure.
+     */
+    private static final class StubRepository implements AutoCloseable {
+
+        static final String GAV = "org.example:stub:1.0";
+        static final byte[] DATA = BinaryDeltaTest.random(9, 1024);
+
+        final AtomicInteger requests = new AtomicInteger();
+        final HttpServer server;
+        final URL url;
+
+        private volatile String retryAfter;
+
+        volatile int sidecarStatus = 404;
+        volatile byte[] sidecar = new byte[0];
+
+        StubRepository(long latency) throws IOException {
+            String path = '/' + Library.builder().gav(GAV).repository(Repository.MAVEN_CENTRAL).build().getPath();
+
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            this.server.setExecutor(Executors.newCachedThreadPool());
+            this.server.createContext("/", exchange -> {
+                try {
+                    if (exchange.getRequestURI().getPath().equals(path + ".sha256")) {
+                        exchange.sendResponseHeaders(this.sidecarStatus, this.sidecarStatus == 200 ? this.sidecar.length : -1);
+                        if (this.sidecarStatus == 200) exchange.getResponseBody().write(this.sidecar);
+                        return;
+                    }
+
+                    if (!exchange.getRequestURI().getPath().equals(path)) {
+                        exchange.sendResponseHeaders(404, -1);
+                        return;
+                    }
+
+                    this.requests.incrementAndGet();
+
+                    String retryAfter = this.retryAfter;
+                    if (retryAfter != null) {
+                        this.retryAfter = null;
+                        exchange.getResponseHeaders().set("Retry-After", retryAfter);
+                        exchange.sendResponseHeaders(503, -1);
+                        return;
+                    }
+
+                    Thread.sleep(latency);
+                    exchange.sendResponseHeaders(200, DATA.length);
+                    exchange.getResponseBody().write(DATA);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            });
+            this.server.start();
+
+            this.url = new URL("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ':' + this.server.getAddress().getPort() + '/');
+        }
+
+        /**
+         * Answers the next request with a 503 and the given {@code Retry-After} header.
+         */
+        void fail(String retryAfter) {
+            this.retryAfter = retryAfter;
+        }
+
+        Library library() {
+            return Library.builder().gav(GAV).repository(new Repository(this.url)).build();
+        }
+
+        @Override
+        public void close() {
+            this.server.stop(0);
+            ((ExecutorService) this.server.getExecutor()).shutdownNow();
+        }
+    }
+}
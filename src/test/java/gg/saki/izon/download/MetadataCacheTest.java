@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.download;
+
+import com.sun.net.httpserver.HttpServer;
+import gg.saki.izon.libraries.Library;
+import gg.saki.izon.libraries.Repository;
+import gg.saki.izon.utils.DownloadSettings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MetadataCacheTest {
+
+    private static final String PATH = "org/example/foo/maven-metadata.xml";
+    private static final byte[] METADATA = "<metadata><versioning><versions><version>1.0</version><version>1.1</version></versions></versioning></metadata>".getBytes(StandardCharsets.UTF_8);
+
+    // always revalidate
+    private static final DownloadSettings SETTINGS = DownloadSettings.builder().metadataTtl(0).build();
+
+    @Test
+    void servesStaleCopyOnServerErrors(@TempDir Path directory) throws IOException {
+        MetadataCache cache = new MetadataCache(directory, new LibraryDownloader());
+        StubServer server = new StubServer();
+
+        try {
+            assertArrayEquals(METADATA, cache.get(server.url, PATH, SETTINGS));
+
+            server.status = 500;
+            assertArrayEquals(METADATA, cache.get(server.url, PATH, SETTINGS));
+        } finally {
+            server.close();
+        }
+
+        // and when the repository is gone altogether
+        assertArrayEquals(METADATA, cache.get(server.url, PATH, SETTINGS));
+    }
+
+    @Test
+    void failsWithoutCachedCopy(@TempDir Path directory) throws IOException {
+        MetadataCache cache = new MetadataCache(directory, new LibraryDownloader());
+        StubServer server = new StubServer();
+
+        try {
+            server.status = 502;
+            assertThrows(HttpStatusException.class, () -> cache.get(server.url, PATH, SETTINGS));
+
+            server.status = 404;
+            assertEquals(null, cache.get(server.url, PATH, SETTINGS));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    void resolvesFromNextRepositoryOnErrors(@TempDir Path directory) throws IOException {
+        VersionResolver resolver = new VersionResolver(new MetadataCache(directory, new LibraryDownloader()));
+        StubServer broken = new StubServer();
+        StubServer working = new StubServer();
+
+        try {
+            broken.status = 500;
+
+            Library library = Library.builder().gav("org.example:foo:[1.0,)").repository(new Repository(broken.url)).fallback(new Repository(working.url)).build();
+            assertEquals("1.1", resolver.resolve(library, SETTINGS).getVersion());
+        } finally {
+            broken.close();
+            working.close();
+        }
+    }
+
+    @Test
+    void keepsRepositoriesOnOneHostApart(@TempDir Path directory) throws IOException {
+        MetadataCache cache = new MetadataCache(directory, new LibraryDownloader());
+        StubServer first = new StubServer();
+        StubServer second = new StubServer();
+
+        try {
+            assertArrayEquals(METADATA, cache.get(first.url, PATH, SETTINGS));
+
+            // nothing was ever cached for the second repository, so there is no stale copy to fall back on
+            second.status = 500;
+            assertThrows(HttpStatusException.class, () -> cache.get(second.url, PATH, SETTINGS));
+        } finally {
+            first.close();
+            second.close();
+        }
+
+        assertNotEquals(MetadataCache.repositoryKey(new URL("http://example.org/maven/")), MetadataCache.repositoryKey(new URL("https://example.org/maven/")));
+        assertEquals(MetadataCache.repositoryKey(new URL("https://example.org/maven/")), MetadataCache.repositoryKey(new URL("https://example.org:443/maven/")));
+    }
+
+    private static final class StubServer {
+
+        final HttpServer server;
+        final URL url;
+
+        volatile int status = 200;
+
+        StubServer() throws IOException {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            this.server.createContext("/", exchange -> {
+                try {
+                    if (this.status != 200 || !exchange.getRequestURI().getPath().equals('/' + PATH)) {
+                        exchange.sendResponseHeaders(this.status == 200 ? 404 : this.status, -1);
+                        return;
+                    }
+
+                    exchange.sendResponseHeaders(200, METADATA.length);
+                    exchange.getResponseBody().write(METADATA);
+                } finally {
+                    exchange.close();
+                }
+            });
+            this.server.start();
+
+            this.url = new URL("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ':' + this.server.getAddress().getPort() + '/');
+        }
+
+        void close() {
+            this.server.stop(0);
+        }
+    }
+}
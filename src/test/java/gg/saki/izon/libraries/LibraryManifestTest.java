@@ -0,0 +1,77 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LibraryManifestTest {
+
+    @Test
+    void readsWhatWasWritten() throws IOException {
+        Repository primary = Repository.builder().url("http://127.0.0.1:8080/maven/").mirror("http://127.0.0.1:8081/maven/").build();
+        Repository fallback = Repository.builder().url("http://127.0.0.1:8082/").build();
+
+        Library plain = Library.builder().gav("org.example:foo:1.0").repository(primary).build();
+        Library full = Library.builder()
+                .gav("org.example:bar:2.1")
+                .repository(primary)
+                .fallback(fallback)
+                .classifier("natives")
+                .checksum(new byte[32])
+                .relocate(new Relocation("org.example.bar", "shaded.bar", Collections.singletonList("org.example.bar.api.**"), null))
+                .provides("org.example.bar")
+                .priority(Library.Priority.DEFERRED)
+                .build();
+
+        LibraryManifest manifest = new LibraryManifest(Arrays.asList(plain, full));
+
+        assertEquals(manifest.getLibraries(), LibraryManifest.read(new ByteArrayInputStream(write(manifest))).getLibraries());
+    }
+
+    @Test
+    void rejectsUnknownPriorities() throws IOException {
+        byte[] bytes = write(new LibraryManifest(Collections.singletonList(Library.builder().gav("org.example:foo:1.0").repository(Repository.MAVEN_CENTRAL).build())));
+
+        // the priority is the last byte written
+        bytes[bytes.length - 1] = (byte) 0xFF;
+
+        assertThrows(IOException.class, () -> LibraryManifest.read(new ByteArrayInputStream(bytes)));
+    }
+
+    private static byte[] write(LibraryManifest manifest) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        manifest.write(out);
+        return out.toByteArray();
+    }
+}
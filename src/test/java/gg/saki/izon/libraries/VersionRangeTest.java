@@ -0,0 +1,64 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VersionRangeTest {
+
+    @Test
+    void ordersVersions() {
+        assertTrue(VersionRange.compareVersions("1.10", "1.9") > 0);
+        assertTrue(VersionRange.compareVersions("1.0-alpha", "1.0-beta") < 0);
+        assertTrue(VersionRange.compareVersions("1.0-rc1", "1.0") < 0);
+        assertTrue(VersionRange.compareVersions("1.0-sp1", "1.0") > 0);
+        assertTrue(VersionRange.compareVersions("1.0.1", "1.0-foo") > 0);
+
+        assertEquals(0, VersionRange.compareVersions("1", "1.0.0"));
+        assertEquals(0, VersionRange.compareVersions("1.0", "1.0-final"));
+        assertEquals(0, VersionRange.compareVersions("1.01", "1.1"));
+    }
+
+    @Test
+    void ordersSegmentsBeyondLongRange() {
+        // a segment like this used to overflow Long.parseLong
+        assertTrue(VersionRange.compareVersions("1.99999999999999999999", "1.9223372036854775807") > 0);
+        assertTrue(VersionRange.compareVersions("1.0-20230101120000123456789", "1.0-20230101120000123456790") < 0);
+        assertEquals(0, VersionRange.compareVersions("1.000000000000000000000000", "1"));
+    }
+
+    @Test
+    void selectsTheHighestMatch() {
+        VersionRange range = VersionRange.parse("[1.0,2.0)");
+
+        assertEquals("1.10", range.select(Arrays.asList("0.9", "1.0", "1.9", "1.10", "2.0")));
+        assertEquals("1.0", VersionRange.parse("[1.0]").select(Arrays.asList("1.0", "1.1")));
+    }
+}
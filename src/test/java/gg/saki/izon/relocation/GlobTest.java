@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.relocation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GlobTest {
+
+    @Test
+    void matchesLiterals() {
+        Glob glob = Glob.compile("com.example.Foo");
+
+        assertTrue(glob.matches("com/example/Foo"));
+        assertFalse(glob.matches("com/example/Foo$Bar"));
+        assertFalse(glob.matches("com/example/FooBar"));
+    }
+
+    @Test
+    void acceptsEscapedDots() {
+        assertTrue(Glob.compile("com{}example{}Foo").matches("com/example/Foo"));
+    }
+
+    @Test
+    void matchesWholeSubtrees() {
+        Glob glob = Glob.compile("com/example/**");
+
+        assertTrue(glob.matches("com/example/Foo"));
+        assertTrue(glob.matches("com/example/deep/nested/Foo"));
+        assertFalse(glob.matches("com/other/Foo"));
+    }
+
+    @Test
+    void keepsSingleWildcardsInsideAPackage() {
+        Glob glob = Glob.compile("com/example/*");
+
+        assertTrue(glob.matches("com/example/Foo"));
+        assertFalse(glob.matches("com/example/deep/Foo"));
+
+        Glob question = Glob.compile("com/example/Fo?");
+        assertTrue(question.matches("com/example/Foo"));
+        assertFalse(question.matches("com/example/Fo/"));
+        assertFalse(question.matches("com/example/Fooo"));
+    }
+
+    @Test
+    void matchesWildcardsInTheMiddle() {
+        Glob glob = Glob.compile("com/**/internal/*");
+
+        assertTrue(glob.matches("com/example/internal/Foo"));
+        assertTrue(glob.matches("com/a/b/internal/Foo"));
+        assertFalse(glob.matches("com/example/internal/deep/Foo"));
+        assertFalse(glob.matches("org/example/internal/Foo"));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.relocation;
+
+import gg.saki.izon.libraries.Relocation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the cost of {@link RelocationMatcher#remap(String)} as the number of relocation rules grows.
+ * <p>
+ * Run with {@code java -cp <test classpath> gg.saki.izon.relocation.RelocationMatcherBenchmark}. The cost per string
+ * should stay about flat, since the trie is walked once per candidate position whatever the number of rules.
+ */
+public final class RelocationMatcherBenchmark {
+
+    private static final int[] RULE_COUNTS = {1, 4, 16, 64, 256, 1024};
+    private static final int ITERATIONS = 200_000;
+
+    private static final String[] INPUTS = {
+            "com/google/common/collect/ImmutableList",
+            "(ILcom/google/common/base/Optional;Ljava/lang/String;)Lcom/google/common/collect/ImmutableMap;",
+            "Ljava/util/Map<Ljava/lang/String;Lcom/google/common/collect/ImmutableList<Ljava/lang/Integer;>;>;",
+            "java/lang/String",
+            "org/example/rule4/Foo",
+            "net.example.rule5.Service"
+    };
+
+    private RelocationMatcherBenchmark() {
+        // benchmark entry point
+    }
+
+    public static void main(String[] args) {
+        System.out.printf("%8s %14s%n", "rules", "ns per remap");
+
+        for (int count : RULE_COUNTS) {
+            RelocationMatcher matcher = RelocationMatcher.of(rules(count));
+
+            // warm up before measuring
+            run(matcher, ITERATIONS);
+
+            long start = System.nanoTime();
+            int checksum = run(matcher, ITERATIONS);
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("%8d %14.1f   (%d)%n", count, (double) elapsed / ((long) ITERATIONS * INPUTS.length), checksum);
+        }
+    }
+
+    private static List<Relocation> rules(int count) {
+        List<Relocation> rules = new ArrayList<>(count);
+        rules.add(Relocation.builder().pattern("com.google").relocatedPattern("libs.google").build());
+
+        // a spread of prefixes that share their first characters, like real rule sets do
+        String[] roots = {"org.example", "net.example", "io.example", "com.example"};
+        for (int i = 1; i < count; i++) {
+            String pattern = roots[i % roots.length] + ".rule" + i;
+            rules.add(Relocation.builder().pattern(pattern).relocatedPattern("libs." + pattern).build());
+        }
+
+        return rules;
+    }
+
+    private static int run(RelocationMatcher matcher, int iterations) {
+        int checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (String input : INPUTS) {
+                checksum += matcher.remap(input).length();
+            }
+        }
+
+        return checksum;
+    }
+}
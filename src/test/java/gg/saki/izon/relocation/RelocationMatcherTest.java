@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.relocation;
+
+import gg.saki.izon.libraries.Relocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RelocationMatcherTest {
+
+    private static final RelocationMatcher MATCHER = RelocationMatcher.of(Collections.singletonList(
+            Relocation.builder().pattern("com.google").relocatedPattern("gg.saki.libs.google").build()
+    ));
+
+    @Test
+    void remapsInternalAndBinaryNames() {
+        assertEquals("gg/saki/libs/google/Foo", MATCHER.remap("com/google/Foo"));
+        assertEquals("gg.saki.libs.google.Foo", MATCHER.remap("com.google.Foo"));
+        assertEquals("gg/saki/libs/google/Foo$Bar", MATCHER.remap("com/google/Foo$Bar"));
+    }
+
+    @Test
+    void remapsReferenceTypesInDescriptors() {
+        assertEquals("(Lgg/saki/libs/google/Foo;)V", MATCHER.remap("(Lcom/google/Foo;)V"));
+        assertEquals("()Lgg/saki/libs/google/Foo;", MATCHER.remap("()Lcom/google/Foo;"));
+        assertEquals("Lgg/saki/libs/google/Foo;", MATCHER.remap("Lcom/google/Foo;"));
+        assertEquals("[Lgg/saki/libs/google/Foo;", MATCHER.remap("[Lcom/google/Foo;"));
+        assertEquals("(Ljava/lang/String;Lgg/saki/libs/google/Foo;)V", MATCHER.remap("(Ljava/lang/String;Lcom/google/Foo;)V"));
+    }
+
+    @Test
+    void remapsReferenceTypesAfterPrimitiveCodes() {
+        assertEquals("(ILgg/saki/libs/google/Foo;)V", MATCHER.remap("(ILcom/google/Foo;)V"));
+        assertEquals("(JJLgg/saki/libs/google/Foo;)V", MATCHER.remap("(JJLcom/google/Foo;)V"));
+        assertEquals("(ZLgg/saki/libs/google/Foo;)V", MATCHER.remap("(ZLcom/google/Foo;)V"));
+        assertEquals("([ILgg/saki/libs/google/Foo;)V", MATCHER.remap("([ILcom/google/Foo;)V"));
+        assertEquals("(Ljava/lang/String;DLgg/saki/libs/google/Foo;)V", MATCHER.remap("(Ljava/lang/String;DLcom/google/Foo;)V"));
+        assertEquals("(BCFSLgg/saki/libs/google/Foo;)Lgg/saki/libs/google/Foo;", MATCHER.remap("(BCFSLcom/google/Foo;)Lcom/google/Foo;"));
+    }
+
+    @Test
+    void remapsReferenceTypesInSignatures() {
+        assertEquals("<T:Lgg/saki/libs/google/Foo;>(TT;)V", MATCHER.remap("<T:Lcom/google/Foo;>(TT;)V"));
+        assertEquals("Ljava/util/List<+Lgg/saki/libs/google/Foo;>;", MATCHER.remap("Ljava/util/List<+Lcom/google/Foo;>;"));
+        assertEquals("Ljava/util/Map<Ljava/lang/String;Lgg/saki/libs/google/Foo;>;", MATCHER.remap("Ljava/util/Map<Ljava/lang/String;Lcom/google/Foo;>;"));
+        assertEquals("()V^Lgg/saki/libs/google/FooException;", MATCHER.remap("()V^Lcom/google/FooException;"));
+    }
+
+    @Test
+    void leavesPartialMatchesAlone() {
+        assertSame("com/googlex/Foo", MATCHER.remap("com/googlex/Foo"));
+        assertSame("xcom/google/Foo", MATCHER.remap("xcom/google/Foo"));
+        assertSame("HELLOLcom/google/Foo", MATCHER.remap("HELLOLcom/google/Foo"));
+        assertSame("java/lang/String", MATCHER.remap("java/lang/String"));
+    }
+
+    @Test
+    void appliesIncludesAndExcludes() {
+        RelocationMatcher matcher = RelocationMatcher.of(Collections.singletonList(Relocation.builder()
+                .pattern("com.google")
+                .relocatedPattern("libs.google")
+                .include("com.google.common.**")
+                .exclude("com.google.common.Keep")
+                .build()));
+
+        assertEquals("libs/google/common/Foo", matcher.remap("com/google/common/Foo"));
+        assertSame("com/google/common/Keep", matcher.remap("com/google/common/Keep"));
+        assertSame("com/google/gson/Gson", matcher.remap("com/google/gson/Gson"));
+    }
+
+    @Test
+    void prefersTheLongestPattern() {
+        RelocationMatcher matcher = RelocationMatcher.of(Arrays.asList(
+                Relocation.builder().pattern("com.google").relocatedPattern("libs.google").build(),
+                Relocation.builder().pattern("com.google.gson").relocatedPattern("libs.gson").build()
+        ));
+
+        assertEquals("libs/gson/Gson", matcher.remap("com/google/gson/Gson"));
+        assertEquals("libs/google/common/Foo", matcher.remap("com/google/common/Foo"));
+        assertTrue(matcher.matches("com.google.gson.Gson"));
+        assertFalse(matcher.matches("org.example.Foo"));
+    }
+
+    @Test
+    void sharesMatchersPerRuleSet() {
+        Relocation relocation = Relocation.builder().pattern("org.example").relocatedPattern("libs.example").build();
+
+        assertSame(RelocationMatcher.of(Collections.singletonList(relocation)), RelocationMatcher.of(Collections.singletonList(relocation)));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.server;
+
+import gg.saki.izon.libraries.Library;
+import gg.saki.izon.libraries.Repository;
+import gg.saki.izon.store.LibraryStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RepositoryServerTest {
+
+    private static final String REQUEST = "GET /org/example/foo/1.0/foo-1.0.jar HTTP/1.1\r\nHost: localhost\r\n\r\n";
+
+    @Test
+    void releasesIdleConnectionsToWaitingOnes(@TempDir Path directory) throws IOException {
+        try (RepositoryServer server = start(directory); Socket idle = connect(server); Socket waiting = connect(server)) {
+            send(idle, REQUEST);
+            assertEquals("HTTP/1.1 404 Not Found", readStatus(idle));
+
+            // the only worker is held by the idle keep-alive connection until someone waits for it
+            send(waiting, REQUEST);
+            assertEquals("HTTP/1.1 404 Not Found", readStatus(waiting));
+        }
+    }
+
+    @Test
+    void rejectsConnectionsBeyondTheQueue(@TempDir Path directory) throws IOException {
+        List<Socket> sockets = new ArrayList<>();
+
+        try (RepositoryServer server = start(directory)) {
+            // one stalled request holds the worker, four more fill the queue
+            for (int i = 0; i < 5; i++) {
+                Socket socket = connect(server);
+                sockets.add(socket);
+                send(socket, "GET / HTTP/1.1\r\n");
+            }
+
+            Socket rejected = connect(server);
+            sockets.add(rejected);
+            assertEquals("HTTP/1.1 503 Service Unavailable", readStatus(rejected));
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    void servesLargeJarsOverKeepAlive(@TempDir Path directory) throws IOException, InterruptedException {
+        LibraryStore store = new LibraryStore(directory);
+        Path jar = store.resolve(Library.builder().gav("org.example:foo:1.0").repository(Repository.MAVEN_CENTRAL).build());
+        Files.createDirectories(jar.getParent());
+        Files.write(jar, new byte[16 * 1024 * 1024]);
+
+        try (RepositoryServer server = RepositoryServer.start(store, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1); Socket socket = connect(server)) {
+            for (int i = 0; i < 2; i++) {
+                send(socket, REQUEST);
+
+                // let the socket buffers fill up, so the server has to wait for the client to read
+                Thread.sleep(100);
+                assertEquals("HTTP/1.1 200 OK", readStatus(socket));
+            }
+        }
+    }
+
+    private static RepositoryServer start(Path directory) throws IOException {
+        return RepositoryServer.start(new LibraryStore(directory), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+    }
+
+    private static Socket connect(RepositoryServer server) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getAddress().getPort());
+        socket.setSoTimeout(10_000);
+        return socket;
+    }
+
+    private static void send(Socket socket, String request) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Reads a whole response, returning its status line.
+     */
+    private static String readStatus(Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        StringBuilder head = new StringBuilder();
+
+        while (head.indexOf("\r\n\r\n") == -1) {
+            int b = in.read();
+            if (b == -1) throw new IOException("Connection closed");
+            head.append((char) b);
+        }
+
+        int start = head.indexOf("Content-Length: ") + "Content-Length: ".length();
+        int length = Integer.parseInt(head.substring(start, head.indexOf("\r\n", start)));
+        byte[] buffer = new byte[8192];
+        while (length > 0) {
+            int read = in.read(buffer, 0, Math.min(buffer.length, length));
+            if (read == -1) throw new IOException("Connection closed");
+            length -= read;
+        }
+
+        return head.substring(0, head.indexOf("\r\n"));
+    }
+}
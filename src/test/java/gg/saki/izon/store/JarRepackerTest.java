@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JarRepackerTest {
+
+    @Test
+    void storesEveryEntryUncompressed(@TempDir Path directory) throws IOException {
+        Path jar = jar(directory.resolve("library.jar"));
+        Path repacked = directory.resolve("repacked.jar");
+
+        try (InputStream in = Files.newInputStream(jar); OutputStream out = Files.newOutputStream(repacked)) {
+            JarRepacker.repack(in, out);
+        }
+
+        try (ZipFile original = new ZipFile(jar.toFile()); ZipFile copy = new ZipFile(repacked.toFile())) {
+            assertEquals(names(original), names(copy));
+
+            for (ZipEntry entry : Collections.list(original.entries())) {
+                ZipEntry stored = copy.getEntry(entry.getName());
+                byte[] data = read(copy, stored);
+
+                assertEquals(ZipEntry.STORED, stored.getMethod());
+                assertEquals(entry.getCrc(), stored.getCrc());
+                assertEquals(stored.getSize(), stored.getCompressedSize());
+                assertArrayEquals(read(original, entry), data);
+
+                CRC32 crc = new CRC32();
+                crc.update(data, 0, data.length);
+                assertEquals(crc.getValue(), stored.getCrc());
+            }
+        }
+    }
+
+    @Test
+    void writesOneCopyPerContent(@TempDir Path directory) throws IOException {
+        LibraryStore store = new LibraryStore(directory);
+        Path jar = jar(directory.resolve("library-1.0.jar"));
+        JarRepacker repacker = new JarRepacker(store);
+
+        Path repacked = repacker.repack(jar);
+        assertEquals(directory, repacked.getParent());
+        assertTrue(repacked.getFileName().toString().startsWith("library-1.0-stored-"));
+
+        // the digest is recorded, and the existing copy is handed out again
+        long modified = Files.getLastModifiedTime(repacked).toMillis();
+        assertEquals(repacked, repacker.repack(jar));
+        assertEquals(modified, Files.getLastModifiedTime(repacked).toMillis());
+        assertNotNull(store.getDigest(jar.getFileName().toString(), "SHA-256"));
+    }
+
+    private static Path jar(Path file) throws IOException {
+        Random random = new Random(1);
+
+        try (OutputStream stream = Files.newOutputStream(file); ZipOutputStream out = new ZipOutputStream(stream)) {
+            out.putNextEntry(new ZipEntry("org/"));
+            out.putNextEntry(new ZipEntry("org/example/"));
+
+            for (int i = 0; i < 8; i++) {
+                // compressible and incompressible entries alike
+                byte[] data = new byte[1024 * (i + 1)];
+                if (i % 2 == 0) random.nextBytes(data);
+
+                out.putNextEntry(new ZipEntry("org/example/Class" + i + ".class"));
+                out.write(data);
+            }
+
+            out.putNextEntry(new ZipEntry("META-INF/empty"));
+        }
+
+        return file;
+    }
+
+    private static List<String> names(ZipFile zip) {
+        List<String> names = new ArrayList<>();
+        for (ZipEntry entry : Collections.list(zip.entries())) names.add(entry.getName());
+        return names;
+    }
+
+    private static byte[] read(ZipFile zip, ZipEntry entry) throws IOException {
+        try (InputStream in = zip.getInputStream(entry)) {
+            byte[] data = new byte[(int) entry.getSize()];
+
+            int offset = 0;
+            while (offset < data.length) {
+                int length = in.read(data, offset, data.length - offset);
+                if (length == -1) break;
+                offset += length;
+            }
+
+            return data;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import gg.saki.izon.libraries.Library;
+import gg.saki.izon.libraries.Repository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LibraryStoreTest {
+
+    @Test
+    void findsOtherVersions(@TempDir Path directory) throws IOException {
+        LibraryStore store = new LibraryStore(directory);
+
+        Library current = library("org.example:foo:2.0", null);
+        Library previous = library("org.example:foo:1.0", null);
+
+        store(store, previous);
+        store(store, current);
+        store(store, library("org.example:foo:1.0", "linux"));
+        store(store, library("org.example:foo-bar:1.0", null));
+
+        assertEquals(Collections.singletonMap("1.0", store.resolve(previous)), store.findVersions(current));
+    }
+
+    @Test
+    void findsVersionsOfClassifier(@TempDir Path directory) throws IOException {
+        LibraryStore store = new LibraryStore(directory);
+
+        Library linux = library("org.example:foo:1.0", "linux");
+        store(store, library("org.example:foo:1.0", null));
+        store(store, linux);
+
+        Map<String, Path> versions = store.findVersions(library("org.example:foo:2.0", "linux"));
+        assertEquals(Collections.singletonMap("1.0", store.resolve(linux)), versions);
+    }
+
+    @Test
+    void skipsMissingJars(@TempDir Path directory) throws IOException {
+        LibraryStore store = new LibraryStore(directory);
+
+        Library previous = library("org.example:foo:1.0", null);
+        store(store, previous);
+        Files.delete(store.resolve(previous));
+
+        assertEquals(Collections.emptyMap(), store.findVersions(library("org.example:foo:2.0", null)));
+    }
+
+    private static void store(LibraryStore store, Library library) throws IOException {
+        Files.createDirectories(store.getDirectory());
+        Files.write(store.resolve(library), new byte[]{1, 2, 3});
+        store.recordCoordinates(library);
+    }
+
+    private static Library library(String gav, String classifier) {
+        Library.Builder builder = Library.builder().gav(gav).repository(Repository.MAVEN_CENTRAL);
+        if (classifier != null) builder.classifier(classifier);
+        return builder.build();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import gg.saki.izon.download.ChecksumAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NativeCacheTest {
+
+    private static final byte[] LINUX = random(1, 4096);
+    private static final byte[] WINDOWS = random(2, 2048);
+
+    @Test
+    void extractsOnlyNatives(@TempDir Path directory) throws IOException {
+        Path jar = jar(directory.resolve("natives.jar"), "linux-x86_64/libfoo.so", LINUX, "windows-x86_64/foo.dll", WINDOWS, "org/example/Foo.class", new byte[16]);
+        NativeLibrary natives = new NativeCache(directory.resolve("natives")).extract(jar, sha256(jar));
+
+        assertEquals(new HashSet<>(Arrays.asList("linux-x86_64/libfoo.so", "windows-x86_64/foo.dll")), natives.getFiles().keySet());
+        assertArrayEquals(LINUX, Files.readAllBytes(natives.getFile("linux-x86_64/libfoo.so")));
+        assertArrayEquals(WINDOWS, Files.readAllBytes(natives.getFile("windows-x86_64/foo.dll")));
+        assertFalse(Files.exists(natives.getDirectory().resolve("org/example/Foo.class")));
+    }
+
+    @Test
+    void reusesIntactExtractions(@TempDir Path directory) throws IOException {
+        Path jar = jar(directory.resolve("natives.jar"), "linux-x86_64/libfoo.so", LINUX);
+        NativeCache cache = new NativeCache(directory.resolve("natives"));
+
+        Path file = cache.extract(jar, sha256(jar)).getFile("linux-x86_64/libfoo.so");
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        assertEquals(file, cache.extract(jar, sha256(jar)).getFile("linux-x86_64/libfoo.so"));
+        assertEquals(modified, Files.getLastModifiedTime(file).toMillis());
+
+        // a tampered file no longer matches its recorded digest, so the jar is extracted again
+        Files.write(file, new byte[]{1, 2, 3});
+        assertArrayEquals(LINUX, Files.readAllBytes(cache.extract(jar, sha256(jar)).getFile("linux-x86_64/libfoo.so")));
+    }
+
+    @Test
+    void rejectsEntriesEscapingTheExtraction(@TempDir Path directory) throws IOException {
+        Path jar = jar(directory.resolve("natives.jar"), "../../evil.so", LINUX);
+
+        assertThrows(IOException.class, () -> new NativeCache(directory.resolve("natives")).extract(jar, sha256(jar)));
+        assertFalse(Files.exists(directory.resolve("evil.so")));
+    }
+
+    private static Path jar(Path file, Object... entries) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file); ZipOutputStream out = new ZipOutputStream(stream)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                out.putNextEntry(new ZipEntry((String) entries[i]));
+                out.write((byte[]) entries[i + 1]);
+            }
+        }
+
+        return file;
+    }
+
+    private static byte[] random(long seed, int length) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] sha256(Path file) throws IOException {
+        return ChecksumAlgorithm.SHA256.digest(Files.readAllBytes(file));
+    }
+}
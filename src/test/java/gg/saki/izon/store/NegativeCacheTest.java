@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NegativeCacheTest {
+
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+    private static final String PATH = "org/example/foo/1.0/foo-1.0.jar";
+
+    @Test
+    void remembersMissesForTheirTtl(@TempDir Path directory) throws IOException {
+        NegativeCache cache = new NegativeCache(directory.resolve("missing.properties"));
+        URL repository = new URL("https://repo.example.com/maven2/");
+
+        assertFalse(cache.isMissing(repository, PATH, TTL));
+
+        cache.recordMiss(repository, PATH);
+        assertTrue(cache.isMissing(repository, PATH, TTL));
+        assertFalse(cache.isMissing(repository, PATH, 0));
+
+        cache.clear(repository, PATH);
+        assertFalse(cache.isMissing(repository, PATH, TTL));
+    }
+
+    @Test
+    void prunesOldAndCorruptEntries(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("missing.properties");
+        Files.write(file, ("https\\://old.example.com/" + PATH + "=0\n"
+                + "https\\://corrupt.example.com/" + PATH + "=yesterday\n").getBytes(StandardCharsets.ISO_8859_1));
+
+        NegativeCache cache = new NegativeCache(file);
+        URL recent = new URL("https://recent.example.com/");
+        cache.recordMiss(recent, PATH);
+
+        assertFalse(cache.isMissing(new URL("https://corrupt.example.com/"), PATH, TTL));
+
+        cache.prune(TTL);
+
+        String remaining = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        assertTrue(remaining.contains("recent.example.com"));
+        assertFalse(remaining.contains("old.example.com"));
+        assertFalse(remaining.contains("corrupt.example.com"));
+    }
+}
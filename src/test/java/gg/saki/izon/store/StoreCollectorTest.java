@@ -0,0 +1,82 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 SakiPowered <https://github.com/SakiPowered>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package gg.saki.izon.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StoreCollectorTest {
+
+    @Test
+    void findsOriginalNames() {
+        assertEquals("org-example-foo-1.0.jar", StoreCollector.originalName("org-example-foo-1.0.jar"));
+        assertEquals("org-example-foo-1.0.jar", StoreCollector.originalName("org-example-foo-1.0.jar-relocated.jar"));
+        assertEquals("org-example-foo-1.0.jar", StoreCollector.originalName("org-example-foo-1.0-stored-0123456789ab.jar"));
+        assertEquals("org-example-foo-1.0.jar", StoreCollector.originalName("org-example-foo-1.0.jar-relocated-shrunk-0123456789ab.jar"));
+        assertEquals("org-example-foo-stored-1.0.jar", StoreCollector.originalName("org-example-foo-stored-1.0.jar"));
+    }
+
+    @Test
+    void keepsOriginalsOfReferencedCopies(@TempDir Path directory) throws IOException {
+        LibraryStore store = new LibraryStore(directory);
+        Files.createDirectories(directory);
+
+        for (String name : Arrays.asList("foo-1.0.jar", "foo-1.0.jar-relocated.jar", "bar-1.0.jar", "bar-1.0.jar-relocated.jar")) {
+            Files.write(directory.resolve(name), new byte[1024]);
+        }
+
+        StoreCollector collector = StoreCollector.builder(store).maxSize(0).minIdleTime(0).build();
+        StoreCollector.Result result = collector.collect(Collections.singleton("foo-1.0.jar-relocated.jar"));
+
+        assertEquals(new HashSet<>(Arrays.asList("bar-1.0.jar", "bar-1.0.jar-relocated.jar")), new HashSet<>(result.getEvicted()));
+        assertTrue(Files.exists(directory.resolve("foo-1.0.jar")));
+        assertTrue(Files.exists(directory.resolve("foo-1.0.jar-relocated.jar")));
+        assertFalse(Files.exists(directory.resolve("bar-1.0.jar")));
+    }
+
+    @Test
+    void skipsCorruptUsageEntries(@TempDir Path directory) throws IOException {
+        LibraryStore store = new LibraryStore(directory);
+        Files.createDirectories(store.getDataDirectory());
+        Files.write(directory.resolve("foo-1.0.jar"), new byte[1024]);
+        Files.write(store.getDataDirectory().resolve("usage.properties"), "foo-1.0.jar=not-a-time\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        StoreCollector collector = StoreCollector.builder(store).maxSize(0).minIdleTime(0).build();
+
+        assertEquals(Collections.singletonList("foo-1.0.jar"), collector.collect(Collections.emptySet()).getEvicted());
+    }
+}